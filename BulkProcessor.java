@@ -0,0 +1,188 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run a task on each file of a batch, one thread per file, at most maxConcurrency files at once
+ * <br> threads are virtual threads when the JVM has them (Java 21+), else a fixed pool of maxConcurrency platform threads
+ * <br> files are coordinated as usual by FileLockRegistry, whose locks park the waiting thread without pinning its carrier thread
+ * <br> a failing file does not stop the others, its exception or error is kept in the returned Result
+ */
+public final class BulkProcessor {
+
+	private static volatile int defaultMaxConcurrency = 64;
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor(), null before Java 21
+	 */
+	private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * work done on one file
+	 */
+	public interface FileTask {
+		void process(File file) throws IOException;
+	}
+
+	/**
+	 * outcome of a batch
+	 */
+	public static final class Result {
+
+		private final int fileCount;
+		private final int succeededCount;
+		private final Map<File,Throwable> failures;
+
+		private Result(int fileCount, int succeededCount, Map<File,Throwable> failures) {
+			this.fileCount = fileCount;
+			this.succeededCount = succeededCount;
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		public int getFileCount() {
+			return fileCount;
+		}
+
+		public int getSucceededCount() {
+			return succeededCount;
+		}
+
+		/**
+		 * @return file -> exception thrown by the task, in the order the files were given
+		 */
+		public Map<File,Throwable> getFailures() {
+			return failures;
+		}
+
+		public boolean isSuccessful() {
+			return succeededCount == fileCount;
+		}
+
+		@Override
+		public String toString() {
+			return succeededCount + "/" + fileCount + " files processed, " + failures.size() + " failed";
+		}
+	}
+
+	private BulkProcessor() {
+	}
+
+	/**
+	 * @see process(Collection, int, FileTask)
+	 */
+	public static Result process(Collection<File> files, FileTask task) throws IOException {
+		return process(files, defaultMaxConcurrency, task);
+	}
+
+	/**
+	 * run task on every file and wait for all of them
+	 * <br> e.g. process(referenceFiles, 32, file -> CustomProperties.generateChinesePropertiesFile("messages_zh.properties", file))
+	 * @param files
+	 * @param maxConcurrency number of files processed at the same time
+	 * @param task called once per file, from its own thread
+	 * @return the files that failed with their error
+	 * @throws IOException if interrupted while waiting, the running tasks are interrupted too
+	 */
+	public static Result process(Collection<File> files, int maxConcurrency, FileTask task) throws IOException {
+		if(maxConcurrency < 1){
+			throw new IllegalArgumentException("[CustomProperties] - max concurrency must be positive : " + maxConcurrency);
+		}
+		List<File> toProcess = new ArrayList<File>(files);
+		Throwable[] errors = new Throwable[toProcess.size()];
+		AtomicInteger succeeded = new AtomicInteger();
+		//a permit per running file, released when its task ends, which also publishes its error to this thread
+		Semaphore permits = new Semaphore(maxConcurrency);
+		ExecutorService executor = newExecutor(Math.min(maxConcurrency, Math.max(toProcess.size(), 1)));
+		try{
+			for(int i = 0; i < errors.length; i++){
+				int index = i;
+				File file = toProcess.get(index);
+				permits.acquire();
+				executor.execute(() -> {
+					try{
+						task.process(file);
+						succeeded.incrementAndGet();
+					}catch(Throwable e){
+						//errors too, a file must never fall out of the totals
+						errors[index] = e;
+					}finally{
+						permits.release();
+					}
+				});
+			}
+			permits.acquire(maxConcurrency);
+		}catch(InterruptedException e){
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("[CustomProperties] - Interrupted while processing " + toProcess.size() + " files", e);
+		}finally{
+			executor.shutdown();
+		}
+		Map<File,Throwable> failures = new LinkedHashMap<File,Throwable>();
+		for(int i = 0; i < errors.length; i++){
+			if(errors[i] != null){
+				failures.put(toProcess.get(i), errors[i]);
+			}
+		}
+		return new Result(toProcess.size(), succeeded.get(), failures);
+	}
+
+	/**
+	 * @return true if files are processed by virtual threads
+	 */
+	public static boolean isUsingVirtualThreads() {
+		return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	public static int getDefaultMaxConcurrency() {
+		return defaultMaxConcurrency;
+	}
+
+	public static void setDefaultMaxConcurrency(int defaultMaxConcurrency) {
+		if(defaultMaxConcurrency < 1){
+			throw new IllegalArgumentException("[CustomProperties] - max concurrency must be positive : " + defaultMaxConcurrency);
+		}
+		BulkProcessor.defaultMaxConcurrency = defaultMaxConcurrency;
+	}
+
+	private static ExecutorService newExecutor(int platformThreads) {
+		if(NEW_VIRTUAL_THREAD_EXECUTOR != null){
+			try{
+				return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+			}catch(IllegalAccessException | InvocationTargetException e){
+				//checked when the method was looked up, can not happen
+			}
+		}
+		return Executors.newFixedThreadPool(platformThreads, runnable -> {
+			Thread thread = new Thread(runnable, "CustomProperties-BulkProcessor-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static Method findVirtualThreadExecutor() {
+		try{
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			//a preview API before Java 21, throws unless preview features are enabled
+			((ExecutorService) method.invoke(null)).shutdown();
+			return method;
+		}catch(NoSuchMethodException | IllegalAccessException | InvocationTargetException e){
+			return null;
+		}
+	}
+}
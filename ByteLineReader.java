@@ -0,0 +1,136 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * Read a file line by line on raw bytes, for single byte encodings such as ISO-8859-1
+ * <br> the file is read by large chunks through a direct buffer, lines are given to the handler as byte ranges, no String is built here
+ * <br> line terminators are the same as BufferedReader.readLine(): \n, \r or \r\n
+ */
+final class ByteLineReader {
+
+	/**
+	 * receive each line as the range [start, end) of bytes, the array is reused after the call returns
+	 */
+	interface LineHandler {
+		void onLine(byte[] bytes, int start, int end) throws IOException;
+	}
+
+	static final int CHUNK_SIZE = 1 << 20;
+
+	private ByteLineReader() {
+	}
+
+	/**
+	 * @param file
+	 * @param handler
+	 * @return number of lines read
+	 * @throws IOException
+	 */
+	static int read(File file, LineHandler handler) throws IOException {
+		return read(file, handler, null);
+	}
+
+	/**
+	 * @param file
+	 * @param handler
+	 * @param checksum updated with every byte read, may be null
+	 * @return number of lines read
+	 * @throws IOException
+	 */
+	static int read(File file, LineHandler handler, Checksum checksum) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			return read(channel, handler, checksum);
+		}
+	}
+
+	/**
+	 * @param channel read up to its end, not closed
+	 * @param handler
+	 * @param checksum updated with every byte read, may be null
+	 * @return number of lines read
+	 * @throws IOException
+	 */
+	static int read(ReadableByteChannel channel, LineHandler handler, Checksum checksum) throws IOException {
+		int lines = 0;
+		ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		byte[] bytes = new byte[CHUNK_SIZE];
+		int length = 0;
+		int lineStart = 0;
+		int position = 0;
+		boolean endOfFile = false;
+		while(true){
+			while((position = lineEnd(bytes, position, length)) < length){
+				if(bytes[position] == '\n'){
+					handler.onLine(bytes, lineStart, position);
+					lines++;
+					lineStart = ++position;
+				}else{
+					if(position + 1 < length){
+						handler.onLine(bytes, lineStart, position);
+						lines++;
+						position += bytes[position + 1] == '\n' ? 2 : 1;
+						lineStart = position;
+					}else if(endOfFile){
+						handler.onLine(bytes, lineStart, position);
+						lines++;
+						lineStart = ++position;
+					}else{
+						//need the next byte to know if it is \r\n
+						break;
+					}
+				}
+			}
+			if(endOfFile){
+				break;
+			}
+			//keep the unfinished line at the beginning and read the next chunk after it
+			length -= lineStart;
+			position -= lineStart;
+			System.arraycopy(bytes, lineStart, bytes, 0, length);
+			lineStart = 0;
+			chunk.clear();
+			int read = channel.read(chunk);
+			if(read == -1){
+				endOfFile = true;
+				continue;
+			}
+			if(length + read > bytes.length){
+				byte[] bigger = new byte[Math.max(bytes.length * 2, length + read)];
+				System.arraycopy(bytes, 0, bigger, 0, length);
+				bytes = bigger;
+			}
+			chunk.flip();
+			chunk.get(bytes, length, read);
+			if(checksum != null){
+				checksum.update(bytes, length, read);
+			}
+			length += read;
+		}
+		if(lineStart < length){
+			handler.onLine(bytes, lineStart, length);
+			lines++;
+		}
+		return lines;
+	}
+
+	/**
+	 * @return offset of the first \n or \r from position, end if there is none
+	 */
+	private static int lineEnd(byte[] bytes, int position, int end) {
+		while(position < end){
+			byte b = bytes[position];
+			if(b == '\n' || b == '\r'){
+				return position;
+			}
+			position++;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,225 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translation coverage of every locale of a bundle, see CustomPropertiesBundle.analyze(File, File)
+ * <br> a key x locale matrix telling whether each key of the reference file is missing, empty or present in each locale file,
+ * with the findKeysToTranslate() and findBadKeys() results of each locale
+ */
+public final class CoverageReport {
+
+	/**
+	 * state of a reference key in a locale file
+	 */
+	public enum Status {
+		/**
+		 * the key is not in the locale file
+		 */
+		MISSING,
+		/**
+		 * the key is in the locale file without value
+		 */
+		EMPTY,
+		/**
+		 * the key is in the locale file with a value
+		 */
+		PRESENT
+	}
+
+	private static final Status[] STATUSES = Status.values();
+
+	private final File referenceFile;
+
+	private final List<String> keys;
+
+	private final Map<String,Integer> keyIndex;
+
+	private final List<String> locales;
+
+	private final Map<String,Integer> localeIndex;
+
+	/**
+	 * locale -> Status ordinal of each key, in key order
+	 */
+	private final byte[][] statuses;
+
+	private final List<List<PropertiesDifferent>> keysToTranslate;
+
+	private final List<List<PropertiesDifferent>> badKeys;
+
+	/**
+	 * result of the analysis of one locale file
+	 */
+	static final class LocaleCoverage {
+		final byte[] statuses;
+		final List<PropertiesDifferent> keysToTranslate;
+		final List<PropertiesDifferent> badKeys;
+
+		/**
+		 * @param keys of the reference file, see keysOf(ReferenceContent)
+		 * @param properties the loaded locale file
+		 */
+		LocaleCoverage(List<String> keys, CustomProperties properties) {
+			Map<String,String> values = properties.getPropertiesView();
+			statuses = new byte[keys.size()];
+			for(int i = 0; i < statuses.length; i++){
+				String value = values.get(keys.get(i));
+				Status status = value == null ? Status.MISSING : value.isEmpty() ? Status.EMPTY : Status.PRESENT;
+				statuses[i] = (byte) status.ordinal();
+			}
+			keysToTranslate = Collections.unmodifiableList(properties.findKeysToTranslate());
+			badKeys = Collections.unmodifiableList(properties.findBadKeys());
+		}
+	}
+
+	/**
+	 * @param referenceFile
+	 * @param keys see keysOf(ReferenceContent)
+	 * @param locales sorted locale names
+	 * @param coverages of each locale, in the same order
+	 */
+	CoverageReport(File referenceFile, List<String> keys, List<String> locales, LocaleCoverage[] coverages) {
+		this.referenceFile = referenceFile;
+		this.keys = Collections.unmodifiableList(keys);
+		this.keyIndex = indexOf(keys);
+		this.locales = Collections.unmodifiableList(locales);
+		this.localeIndex = indexOf(locales);
+		this.statuses = new byte[coverages.length][];
+		this.keysToTranslate = new ArrayList<List<PropertiesDifferent>>(coverages.length);
+		this.badKeys = new ArrayList<List<PropertiesDifferent>>(coverages.length);
+		for(int i = 0; i < coverages.length; i++){
+			statuses[i] = coverages[i].statuses;
+			keysToTranslate.add(coverages[i].keysToTranslate);
+			badKeys.add(coverages[i].badKeys);
+		}
+	}
+
+	/**
+	 * @param referenceContent
+	 * @return the distinct keys of the properties lines of the reference file, in line order
+	 */
+	static List<String> keysOf(ReferenceContent referenceContent) {
+		Map<String,Boolean> keys = new LinkedHashMap<String,Boolean>();
+		for(int i = 0; i < referenceContent.size(); i++){
+			if(referenceContent.isProperties(i)){
+				keys.putIfAbsent(referenceContent.getKey(i), Boolean.TRUE);
+			}
+		}
+		return new ArrayList<String>(keys.keySet());
+	}
+
+	private static Map<String,Integer> indexOf(List<String> names) {
+		Map<String,Integer> index = new HashMap<String,Integer>(names.size() * 2);
+		for(int i = 0; i < names.size(); i++){
+			index.put(names.get(i), i);
+		}
+		return index;
+	}
+
+	public File getReferenceFile() {
+		return referenceFile;
+	}
+
+	/**
+	 * @return unmodifiable keys of the reference file, in line order: the rows of the matrix
+	 */
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * @return unmodifiable locale names, sorted: the columns of the matrix
+	 */
+	public List<String> getLocales() {
+		return locales;
+	}
+
+	/**
+	 * @param key
+	 * @param locale
+	 * @return the status of the key in the locale file, null if the key is not in the reference file or the locale not in the bundle
+	 */
+	public Status getStatus(String key, String locale) {
+		Integer row = keyIndex.get(key);
+		Integer column = localeIndex.get(locale);
+		if(row == null || column == null){
+			return null;
+		}
+		return STATUSES[statuses[column][row]];
+	}
+
+	/**
+	 * @param key
+	 * @return locale -> status of the key, in locale order, an empty map if the key is not in the reference file
+	 */
+	public Map<String,Status> getStatuses(String key) {
+		Map<String,Status> row = new LinkedHashMap<String,Status>();
+		Integer index = keyIndex.get(key);
+		if(index != null){
+			for(int i = 0; i < locales.size(); i++){
+				row.put(locales.get(i), STATUSES[statuses[i][index]]);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * @param locale
+	 * @param status
+	 * @return number of reference keys having this status in the locale file, 0 if the locale is not in the bundle
+	 */
+	public int count(String locale, Status status) {
+		Integer column = localeIndex.get(locale);
+		if(column == null){
+			return 0;
+		}
+		int count = 0;
+		for(byte value : statuses[column]){
+			if(value == status.ordinal()){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param locale
+	 * @return unmodifiable result of findKeysToTranslate() on the locale file, null if the locale is not in the bundle
+	 */
+	public List<PropertiesDifferent> getKeysToTranslate(String locale) {
+		Integer column = localeIndex.get(locale);
+		return column == null ? null : keysToTranslate.get(column);
+	}
+
+	/**
+	 * @param locale
+	 * @return unmodifiable result of findBadKeys() on the locale file, null if the locale is not in the bundle
+	 */
+	public List<PropertiesDifferent> getBadKeys(String locale) {
+		Integer column = localeIndex.get(locale);
+		return column == null ? null : badKeys.get(column);
+	}
+
+	/**
+	 * one line per locale: locale, then the count of keys for each status
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for(String locale : locales){
+			builder.append(locale);
+			for(Status status : STATUSES){
+				builder.append(' ').append(status).append('=').append(count(locale, status));
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+}
@@ -1,28 +1,38 @@
 package com.saintgobain.sg4pTool.beans.properties;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
 
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
 
@@ -31,7 +41,7 @@ import org.apache.commons.lang3.StringUtils;
  * Class to treat property files as a List, the main focus is to deal with property files with order and write in UTF-8 Encoding
  * <br> Also handle multi Thread read/write at same time on same file with a synchronized queue system
  * <br> Also have a little versioning  system
- * <br> conserve duplicate keys(even you are not supposed to have), but can modify only the last occurrence
+ * <br> conserve duplicate keys(even you are not supposed to have), insertOrUpdate modifies the last occurrence, modifyOccurrence any of them, dedupe() removes them
  * <br> Please save after all modifications, and refresh() to reload from file if you keep working on the same file
  * @author Xuhao 
  */
@@ -51,16 +61,111 @@ public class CustomProperties{
 	public static final String VERSIONING_TEMP_FOLDER_NAME = "temp";
 	
 	/**
-	 * to handle file writing concurrency
+	 * how saveToFile writes a file
 	 */
-	private static Map<String,ConcurrentLinkedQueue<Integer>> fileWritingQueueFifo = new HashMap<String,ConcurrentLinkedQueue<Integer>>();
+	public enum SaveMode {
+		/**
+		 * truncate and write the file in place, only safe between threads of this JVM
+		 */
+		IN_PLACE,
+		/**
+		 * write a temp file, force it to disk and rename it over the file, under an OS file lock
+		 * <br> safe between processes, readers never see a partial file
+		 */
+		ATOMIC
+	}
 	
-	private static Map<String,Boolean> isFileWriting = new HashMap<String,Boolean>();
+	private static volatile SaveMode defaultSaveMode = SaveMode.IN_PLACE;
 	
 	/**
-	 * provide a distinct id for each writing operation in queue
+	 * how files are read when loading
 	 */
-	private static int writingIdSequance = 0;
+	public enum LoadMode {
+		/**
+		 * decode the file through a BufferedReader, then parse each decoded line
+		 */
+		READER,
+		/**
+		 * read raw ISO-8859-1 bytes by large chunks and parse them directly, keys and values are built from byte ranges
+		 * <br> lines with a backslash are decoded and unescaped as in READER mode, much faster on big files
+		 */
+		NIO,
+		/**
+		 * read the lines already unescaped from a binary copy of the file, temp/filename.parsed, memory mapped
+		 * <br> the copy is written by the first load, as NIO reads the file, and written again by the first load after the file changed
+		 * @see ParsedSidecar
+		 */
+		PARSED
+	}
+	
+	private static volatile LoadMode defaultLoadMode = LoadMode.READER;
+	
+	/**
+	 * what refresh() does when the files did not change, RELOAD by default
+	 * <br> CHECK and WATCH do not see the changes made directly on the collections returned by getProperties() or getContentList(),
+	 * only opt in when those are not modified
+	 */
+	public enum RefreshMode {
+		/**
+		 * always read and parse both files again
+		 */
+		RELOAD,
+		/**
+		 * compare modification time and size of both files with the loaded ones (and their checksum when the time alone can not be trusted),
+		 * read and parse them again only if one changed or this instance was modified
+		 */
+		CHECK,
+		/**
+		 * both files are watched by a WatchService which marks the instance stale when one changes, refresh() does not touch the disk until then
+		 * <br> falls back to CHECK when the file system can not be watched
+		 */
+		WATCH
+	}
+	
+	private static volatile RefreshMode defaultRefreshMode = RefreshMode.RELOAD;
+	
+	private static volatile boolean defaultSearchIndex = false;
+	
+	/**
+	 * how loaded files are kept in memory
+	 */
+	public enum MemoryMode {
+		/**
+		 * the content lines and the properties each keep their own strings
+		 */
+		STANDARD,
+		/**
+		 * keys of the file to write are the instances of the reference file (shared by every locale loaded with the same ReferenceContent),
+		 * and loaded "key=value" content lines only keep the value of properties, the line being built when requested
+		 * <br> files are always read as LoadMode.NIO reads them, or from their parsed copy with LoadMode.PARSED
+		 */
+		COMPACT
+	}
+	
+	private static volatile MemoryMode defaultMemoryMode = MemoryMode.STANDARD;
+	
+	/**
+	 * what applyAll did for one difference
+	 */
+	public enum ApplyResult {
+		/**
+		 * the key did not exist, it is inserted after theKeyBeforeThis
+		 */
+		INSERTED,
+		/**
+		 * the key existed, its last occurrence is modified
+		 */
+		UPDATED,
+		/**
+		 * the value is empty or null, nothing is done
+		 */
+		IGNORED
+	}
+	
+	/**
+	 * anchor of lines inserted at the beginning of the file by applyAll, when theKeyBeforeThis does not exist
+	 */
+	private static final Object FIRST_LINE_ANCHOR = new Object();
 	
 	/**
 	 * the file source
@@ -73,9 +178,9 @@ public class CustomProperties{
 	private File structureReferenceFile;
 	
 	/**
-	 * used when insert/saving the file
+	 * used when insert/saving the file, indexed by key so insert/update does not rescan the whole list
 	 */
-	private List<String> contentList;
+	private IndexedContentList contentList;
 	
 	/**
 	 * The reference file content, only use to compare and to get reference value
@@ -83,25 +188,78 @@ public class CustomProperties{
 	private List<String> referenceContentList;
 	
 	/**
-	 * only for versioning purpose when saving
+	 * parsed reference file, with its key index, may be shared with other instances
+	 */
+	private ReferenceContent referenceContent;
+	
+	/**
+	 * true if referenceContent was given at construction, so is kept by refresh()
 	 */
-	private StringBuilder oldContent;
+	private boolean sharedReferenceContent;
+	
+	/**
+	 * the file as it was when loaded, to skip refresh() when it did not change
+	 */
+	private FileState fileState;
+	
+	/**
+	 * true if this instance was changed since loaded, refresh() then always reloads to drop the changes
+	 */
+	private boolean modified;
+	
+	/**
+	 * true if watched by FileChangeWatcher
+	 */
+	private boolean watched;
+	
+	/**
+	 * set by FileChangeWatcher when a watched file changed
+	 */
+	private final AtomicBoolean stale = new AtomicBoolean();
+	
+	/**
+	 * only for versioning purpose when saving, the file as loaded: read again from the file when first requested,
+	 * or from the copy OldContentKeeper keeps right before this JVM overwrites the file
+	 */
+	private OldContentKeeper.OldContent oldContent;
+	
+	/**
+	 * true if loaded in MemoryMode.COMPACT
+	 */
+	private boolean compact;
 
 	/**
 	 * properties map, insert/saving/compare
 	 */
 	private LinkedHashMap<String,String> properties;
 	
+	/**
+	 * value -> keys of properties, built on the first lookup by value then kept up to date, null until then
+	 * <br> volatile so that the copy of a snapshot can build it on a lookup from any thread
+	 */
+	private volatile ValueIndex valueIndex;
+	
+	/**
+	 * true once properties was handed out by getProperties() or taken from setProperties(), it may then be changed behind this object:
+	 * lookups by value scan it instead of using valueIndex
+	 */
+	private volatile boolean propertiesShared;
+	
 	/**
 	 * duplicated key , the Integer part of map is it's count
 	 */
 	private Map<String,Integer> duplicatedKeys;
 	
 	/**
-	 * only used in initialization to load duplicated keys, to not erase duplicated key informations, the number in map indicate values's order, smallest number means the values is the last one
+	 * values of each duplicated key of the file as loaded, the last one first, kept after initialization
 	 */
 	private Map<String,Deque<String>> duplicatedValues;
 	
+	/**
+	 * last snapshot published by publishSnapshot(), null until then
+	 */
+	private volatile CustomPropertiesSnapshot snapshot;
+	
 	/**
 	 * 
 	 * @param fileDir : the file to write
@@ -126,47 +284,150 @@ public class CustomProperties{
 		initialize(localFile,localRefFile);
 	}
 	
+	/**
+	 * use an already parsed reference file, shared with other instances and kept on refresh()
+	 * @param file : the file to write
+	 * @param referenceContent : the parsed reference file
+	 * @throws IOException
+	 */
+	CustomProperties(File file, ReferenceContent referenceContent) throws IOException{
+		this.referenceContent = referenceContent;
+		this.sharedReferenceContent = true;
+		initialize(file,referenceContent.getFile());
+	}
+	
+	/**
+	 * copy of source for a CustomPropertiesSnapshot, sharing its reference content and its strings
+	 * <br> never modified once published, apart from its value index built on the first lookup by value
+	 * @param source
+	 */
+	private CustomProperties(CustomProperties source) {
+		this.file = source.file;
+		this.structureReferenceFile = source.structureReferenceFile;
+		this.referenceContent = source.referenceContent;
+		this.referenceContentList = Collections.unmodifiableList(source.referenceContent.getLines());
+		this.sharedReferenceContent = true;
+		this.fileState = source.fileState;
+		this.oldContent = new OldContentKeeper.OldContent(source.file, source.fileState);
+		this.compact = source.compact;
+		this.contentList = source.contentList.copy();
+		this.properties = new LinkedHashMap<String,String>(source.properties);
+		this.duplicatedKeys = new LinkedHashMap<String,Integer>(source.duplicatedKeys);
+		this.duplicatedValues = new HashMap<String,Deque<String>>(source.duplicatedValues.size() * 2);
+		for(Map.Entry<String,Deque<String>> values : source.duplicatedValues.entrySet()){
+			this.duplicatedValues.put(values.getKey(), new ArrayDeque<String>(values.getValue()));
+		}
+	}
+	
 	/**
 	 * refresh this object from file
+	 * <br> with RefreshMode.CHECK or WATCH, does nothing if neither the file nor the reference file changed since loaded and this object was not modified,
+	 * changes made directly on the collections returned by getters are then not tracked
 	 * @throws IOException
+	 * @see RefreshMode
 	 */
 	public void refresh() throws IOException{
+		if(defaultRefreshMode != RefreshMode.RELOAD && !modified && isUpToDate()){
+			return;
+		}
 		initialize(file,structureReferenceFile);
 	}
-
+	
+	/**
+	 * @return true if neither the file nor the reference file changed since loaded
+	 * @throws IOException
+	 */
+	private boolean isUpToDate() throws IOException{
+		if(watched && defaultRefreshMode == RefreshMode.WATCH){
+			return !stale.get();
+		}
+		if(!fileState.isUpToDate(file)){
+			return false;
+		}
+		if(sharedReferenceContent){
+			return true;
+		}
+		FileState referenceState = referenceContent.getState();
+		return referenceState != null && referenceState.isUpToDate(structureReferenceFile);
+	}
+	
+	@SuppressWarnings("try")
 	private void initialize(File file, File structureReferenceFile) throws IOException{
+		long start = CustomPropertiesMetrics.start();
 		this.file = file;
 		this.structureReferenceFile = structureReferenceFile;
-		//from structureReferenceFile
-		contentList = new ArrayList<String>();
-		oldContent = new StringBuilder();
-		referenceContentList = new ArrayList<String>();
+		//watch before reading, so that a change during the load is not missed
+		watched = defaultRefreshMode == RefreshMode.WATCH
+				&& FileChangeWatcher.watch(stale, file, sharedReferenceContent ? null : structureReferenceFile);
+		stale.set(false);
+		compact = defaultMemoryMode == MemoryMode.COMPACT;
+		//from structureReferenceFile, first so that keys of the file to write can be interned
+		contentList = new IndexedContentList(PropertiesLineParser::key);
+		if(defaultSearchIndex){
+			contentList.enableSubstringIndex();
+		}
+		if(sharedReferenceContent){
+			referenceContentList = Collections.unmodifiableList(referenceContent.getLines());
+		}else if(ReferenceContentCache.isEnabled()){
+			//shared with every instance using this reference file
+			referenceContent = ReferenceContentCache.get(structureReferenceFile, defaultLoadMode);
+			referenceContentList = Collections.unmodifiableList(referenceContent.getLines());
+		}else{
+			referenceContent = ReferenceContent.load(structureReferenceFile, defaultLoadMode);
+			referenceContentList = referenceContent.getLines();
+		}
 		//from file to write
 		properties = new LinkedHashMap<String,String>();
-		setDuplicatedKeys(new LinkedHashMap<String,Integer>());
+		valueIndex = null;
+		propertiesShared = false;
+		duplicatedKeys = new LinkedHashMap<String,Integer>();
 		duplicatedValues = new HashMap<String,Deque<String>>();
-		while(isFileWriting.containsKey(file.getAbsolutePath()) && isFileWriting.get(file.getAbsolutePath())){
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				throw new IOException("Failed waiting file write finish before raeding", e);
-			}
+		//wait file write finish before reading, files saved with SaveMode.ATOMIC by other processes are replaced in one rename so never read partially
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file)){
+			initializeProperties();
 		}
-		initializeProperties();
-		initializeReferenceContent();
+		loadContent();
+		oldContent = new OldContentKeeper.OldContent(file, fileState);
+		OldContentKeeper.register(oldContent);
+		modified = false;
+		CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.LOAD, start, contentList.size(), fileState.getLength());
 	}
 
 	private void initializeProperties() throws IOException {
+		if(defaultLoadMode == LoadMode.PARSED){
+			fileState = ParsedSidecar.read(this.file, (line, separatorIndex) -> {
+				if(PropertiesLineParser.isProperties(line, separatorIndex)){
+					loadProperty(PropertiesLineParser.key(line, separatorIndex), PropertiesLineParser.value(line, separatorIndex));
+				}
+			});
+			return;
+		}
+		long lastModified = this.file.lastModified();
+		long length = this.file.length();
+		long loadedAt = System.currentTimeMillis();
+		CRC32 checksum = new CRC32();
+		readProperties(checksum);
+		fileState = new FileState(lastModified, length, checksum.getValue(), loadedAt);
+	}
+	
+	private void readProperties(Checksum checksum) throws IOException {
+		if(defaultLoadMode == LoadMode.NIO || compact){
+			try{
+				ByteLineReader.read(this.file, this::loadProperties, checksum);
+			}catch(IOException e){
+				throw new IOException("[CustomProperties] - Error while initializing writing file : " + this.file.getAbsolutePath(), e);
+			}
+			return;
+		}
 		int i = 1;
 		String temp = null;
 		try(FileInputStream input = new FileInputStream(this.file);
-			BufferedReader in = new BufferedReader(new InputStreamReader(input, OFFICIAL_READ_ENCODING));){
+			BufferedReader in = new BufferedReader(new InputStreamReader(new CheckedInputStream(input, checksum), OFFICIAL_READ_ENCODING));){
 			
 			//read the entire file with UTF-8 encoding
-			while(in.ready()){
+			while((temp = in.readLine()) != null){
 				//load the line
-				temp = in.readLine();
-				loadProperties(StringEscapeUtils.unescapeJava(temp));
+				loadProperties(PropertiesLineParser.unescape(temp));
 				//construct the string
 				i++;
 			}
@@ -176,43 +437,40 @@ public class CustomProperties{
 		}
 	}
 	
-	private void initializeReferenceContent() throws IOException {
-		int i = 1;
-		String temp = null;
-		try(FileInputStream refInput = new FileInputStream(this.structureReferenceFile);
-			BufferedReader refIn = new BufferedReader(new InputStreamReader(refInput, OFFICIAL_READ_ENCODING))){
-			//read the entire file with UTF-8 encoding
-			while(refIn.ready()){
-				//load the line
-				temp = refIn.readLine();
-				loadContent(StringEscapeUtils.unescapeJava(temp));
-				//construct the string
-				i++;
-			}
-			
-		}catch(IOException e){
-			throw new IOException("[CustomProperties] - Error on line " + i + " : "+ temp +" while initializing reference file", e);
-		}
-	}
-
 	/**
 	 * load every content into the content list from reference file
-	 * @param temp
 	 */
-	private void loadContent(String temp) {
-		String key;
-		if(isProperties(temp) && properties.containsKey(key = getKeyFromString(temp))){
-			//if is the same row to the last index of duplciate key
-			if(duplicatedKeys.containsKey(key)){
-				// if there is no duplicated key count left, it is the last duplicated key so
-				contentList.add(key + "=" + duplicatedValues.get(key).pollLast());
+	private void loadContent() {
+		List<String> referenceLines = referenceContent.getLines();
+		List<String> content = new ArrayList<String>(referenceLines.size());
+		List<String> keys = new ArrayList<String>(referenceLines.size());
+		//in compact mode, lines given by their value, shared with properties
+		BitSet valueOnly = compact ? new BitSet(referenceLines.size()) : null;
+		//duplicated key -> its next value in file order, duplicatedValues itself is not consumed
+		Map<String,Iterator<String>> duplicatedCursors = new HashMap<String,Iterator<String>>();
+		for(int i = 0; i < referenceLines.size(); i++){
+			String key = referenceContent.getKey(i);
+			if(referenceContent.isProperties(i) && properties.containsKey(key)){
+				String value;
+				//the n-th line of a duplicated key gets its n-th value
+				if(duplicatedKeys.containsKey(key)){
+					Iterator<String> cursor = duplicatedCursors.computeIfAbsent(key, k -> duplicatedValues.get(k).descendingIterator());
+					value = cursor.hasNext() ? cursor.next() : null;
+				}else{
+					value = properties.get(key);
+				}
+				if(compact){
+					content.add(value);
+					valueOnly.set(i);
+				}else{
+					content.add(key + "=" + value);
+				}
 			}else{
-				contentList.add(key + "=" + properties.get(key));
-			}		
-		}else{
-			contentList.add(temp);
+				content.add(referenceLines.get(i));
+			}
+			keys.add(key);
 		}
-		referenceContentList.add(temp);
+		contentList.rebuild(content, keys.iterator(), valueOnly);
 	}
 
 	/**
@@ -221,64 +479,78 @@ public class CustomProperties{
 	 * @return
 	 */
 	public boolean isProperties(String temp) {
-		String localTemp = temp.trim();
-		if(localTemp.startsWith("#") || localTemp.startsWith("/-") || localTemp.startsWith(PROPERTIES_SEPARATOR)){
-			return Boolean.FALSE;
-		}
-		return localTemp.contains(PROPERTIES_SEPARATOR);
+		return PropertiesLineParser.isProperties(temp);
 	}
 	
+	/**
+	 * load a line of the file to write given as ISO-8859-1 bytes, without decoding the whole line when there is nothing to unescape
+	 */
+	private void loadProperties(byte[] bytes, int start, int end) {
+		int separatorIndex = PropertiesLineParser.separatorIndex(bytes, start, end);
+		if(separatorIndex == PropertiesLineParser.ESCAPED){
+			loadProperties(PropertiesLineParser.unescape(bytes, start, end));
+			return;
+		}
+		if(PropertiesLineParser.isProperties(bytes, start, separatorIndex)){
+			loadProperty(new String(bytes, start, separatorIndex - start, OFFICIAL_READ_ENCODING),
+					new String(bytes, separatorIndex + 1, end - separatorIndex - 1, OFFICIAL_READ_ENCODING));
+		}
+	}
+
 	/**
 	 * load properties exit in file to write
 	 * @param temp
 	 */
 	private void loadProperties(String temp) {
-		//save the old content for versioning
-		oldContent.append(temp).append("\n");
 		//construct lists
-		String[] splited = temp.split(PROPERTIES_SEPARATOR);
-		String key = getKeyFromString(temp);
-		String value = getValueFromString(temp);
-		if(isProperties(temp)){
-			//properties
-			if(splited.length >= 1){
-				if(properties.containsKey(key)){
-					duplicatedKeys.put(key, duplicatedKeys.getOrDefault(key, 1) + 1);
-					//if is a duplicated key, save it's value in duplicatedValues
-					Deque<String> tempDeque = duplicatedValues.get(key);
-					if(tempDeque != null){
-						//add one duplicated key's value
-						tempDeque.push(value);
-					}else{
-						tempDeque = new ArrayDeque<String>();
-						//save the first duplicated key value
-						tempDeque.push(properties.get(key));
-						//save the second
-						tempDeque.push(value);
-						duplicatedValues.put(key, tempDeque);
-					}
-				}
-				properties.put(key, value);
+		int separatorIndex = PropertiesLineParser.separatorIndex(temp);
+		if(PropertiesLineParser.isProperties(temp, separatorIndex)){
+			loadProperty(PropertiesLineParser.key(temp, separatorIndex), PropertiesLineParser.value(temp, separatorIndex));
+		}
+	}
+
+	/**
+	 * load one properties of the file to write
+	 * @param key
+	 * @param value
+	 */
+	private void loadProperty(String key, String value) {
+		if(compact){
+			key = referenceContent.internKey(key);
+		}
+		if(properties.containsKey(key)){
+			duplicatedKeys.put(key, duplicatedKeys.getOrDefault(key, 1) + 1);
+			//if is a duplicated key, save it's value in duplicatedValues
+			Deque<String> tempDeque = duplicatedValues.get(key);
+			if(tempDeque != null){
+				//add one duplicated key's value
+				tempDeque.push(value);
 			}else{
-				//is a buggy line, just skip it
+				tempDeque = new ArrayDeque<String>();
+				//save the first duplicated key value
+				tempDeque.push(properties.get(key));
+				//save the second
+				tempDeque.push(value);
+				duplicatedValues.put(key, tempDeque);
 			}
 		}
+		properties.put(key, value);
 	}
 
+	/**
+	 * @param content
+	 * @return everything after the first separator, "" if there is no separator
+	 */
 	public String getValueFromString(String content) {
-		String[] splited = content.split(PROPERTIES_SEPARATOR);
-		String value = "";
-		StringBuilder valueBuilder = new StringBuilder();
-		for(int i=1; i<splited.length; i++){
-			valueBuilder.append(splited[i]);
-		}
-		value = valueBuilder.toString();
-		return value;
+		return PropertiesLineParser.value(content);
 	}
 
+	/**
+	 * @param content
+	 * @return everything before the first separator, the whole line if there is no separator
+	 */
 	public String getKeyFromString(String content) {
-		String[] splited = content.split(PROPERTIES_SEPARATOR);
-		return splited[0];
+		return PropertiesLineParser.key(content);
 	}
 
 	public File getFile() {
@@ -287,6 +559,7 @@ public class CustomProperties{
 
 	public void setFile(File file) {
 		this.file = file;
+		this.modified = true;
 	}
 	
 	public Map<String,Integer> getDuplicatedKeys() {
@@ -295,18 +568,36 @@ public class CustomProperties{
 
 	protected void setDuplicatedKeys(Map<String,Integer> duplicatedKeys) {
 		this.duplicatedKeys = duplicatedKeys;
+		this.modified = true;
 	}
 
+	/**
+	 * is suppose to be read only, use insertOrUpdate or setProperties instead
+	 * <br> the map may be changed by the caller, so getKeysByValue and containsValue scan it from now on instead of using their index, until the file is loaded again
+	 * @return
+	 */
 	public LinkedHashMap<String,String> getProperties() {
+		propertiesShared = true;
+		valueIndex = null;
 		return properties;
 	}
 	
+	/**
+	 * @return read only view of the properties, which keeps the value index in use
+	 */
+	Map<String,String> getPropertiesView() {
+		return Collections.unmodifiableMap(properties);
+	}
+	
 	/**
 	 * is suppose to be read only in most case, do not change this unless you know what you are doing
 	 * @param structureReferenceFile
 	 */
 	public void setProperties(LinkedHashMap<String,String> properties) {
 		this.properties = properties;
+		this.propertiesShared = true;
+		this.valueIndex = null;
+		this.modified = true;
 	}
 	
 	public File getStructureReferenceFile() {
@@ -319,6 +610,8 @@ public class CustomProperties{
 	 */
 	public void setStructureReferenceFile(File structureReferenceFile) {
 		this.structureReferenceFile = structureReferenceFile;
+		this.modified = true;
+		this.sharedReferenceContent = false;
 	}
 	
 	/**
@@ -344,28 +637,47 @@ public class CustomProperties{
 	}
 
 	protected void setContentList(List<String> contentList) {
-		this.contentList = contentList;
+		boolean searchIndex = this.contentList != null && this.contentList.isSubstringIndexEnabled();
+		this.contentList = new IndexedContentList(PropertiesLineParser::key, contentList);
+		if(searchIndex){
+			this.contentList.enableSubstringIndex();
+		}
+		this.modified = true;
 	}
 	
 
+	/**
+	 * is suppose to be read only, the reference index is not updated by changes on this list, use setReferenceContentList instead
+	 * @return
+	 */
 	public List<String> getReferenceContentList() {
 		return referenceContentList;
 	}
 
 	protected void setReferenceContentList(List<String> referenceContentList) {
 		this.referenceContentList = referenceContentList;
+		this.modified = true;
+		this.referenceContent = ReferenceContent.of(structureReferenceFile, referenceContentList);
+		this.sharedReferenceContent = false;
 	}
 	
 
+	/**
+	 * read from the file when first requested, kept before the file is overwritten by a save of this JVM
+	 * @throws UncheckedIOException if the file cannot be read, or was changed by another process since loaded so its old content is lost
+	 */
 	protected StringBuilder getOldContent() {
-		return oldContent;
+		return oldContent.get();
 	}
 
 	protected void setOldContent(StringBuilder oldContent) {
-		this.oldContent = oldContent;
+		this.oldContent.set(oldContent);
+		this.modified = true;
 	}
+
 	/**
-	 * only used in initialization to load duplicated keys, to not erase duplicated key informations, the number in map indicate values's order, smallest number means the values is the last one
+	 * values of each duplicated key of the file as loaded, the last one first, not updated by later changes
+	 * <br> use getOccurrenceValue(String, int) for the current value of each line
 	 */
 	public Map<String,Deque<String>> getDuplicatedValues() {
 		return duplicatedValues;
@@ -373,6 +685,7 @@ public class CustomProperties{
 
 	protected void setDuplicatedValues(Map<String,Deque<String>> duplicatedValues) {
 		this.duplicatedValues = duplicatedValues;
+		this.modified = true;
 	}
 	
 	protected List<String> getContentListValue() {
@@ -409,7 +722,10 @@ public class CustomProperties{
 	}
 	
 	public boolean containsValue(String value){
-		return properties.containsValue(value);
+		if(propertiesShared){
+			return properties.containsValue(value);
+		}
+		return getValueIndex().containsValue(value);
 	}
 	
 	/**
@@ -431,30 +747,16 @@ public class CustomProperties{
 	 * @return null if key not exist
 	 */
 	public String getReferenceValueByKey(String key){
-		String result = null;
-		int index = getReferenceContentListKey().lastIndexOf(key);
-		if(index != -1)
-		{
-			String content = referenceContentList.get(index);
-			result = getValueFromString(content);
-		}
-		return result;
+		return referenceContent.getValue(key);
 	}
 	
 	/**
 	 * 
 	 * @param value
-	 * @return a empty list if no key found for this value
+	 * @return the key of each properties line of the reference file having this value, in line order, a empty list if no key found for this value
 	 */
 	public List<String> getKeysByReferenceValue(String value){
-		List<String> keys = new ArrayList<String>();
-		for(String content : referenceContentList){
-			String contentValue = getValueFromString(content);
-			if(contentValue != null && contentValue.equals(value)){
-				keys.add(contentValue);
-			}
-		}
-		return keys;
+		return referenceContent.getKeysByValue(value);
 	}
 	
 	/**
@@ -463,13 +765,53 @@ public class CustomProperties{
 	 * @return a empty list if no key found for this value
 	 */
 	public List<String> getKeysByValue(String value){
-		List<String> keys = new ArrayList<String>();
-		for(Entry<String, String> prop : properties.entrySet()){
-			if(prop.getValue()!= null && prop.getValue().equals(value)){
-				keys.add(prop.getKey());
+		if(value == null){
+			return new ArrayList<String>();
+		}
+		if(propertiesShared){
+			List<String> keys = new ArrayList<String>();
+			for(Map.Entry<String,String> property : properties.entrySet()){
+				if(value.equals(property.getValue())){
+					keys.add(property.getKey());
+				}
+			}
+			return keys;
+		}
+		return getValueIndex().getKeys(value);
+	}
+	
+	private ValueIndex getValueIndex(){
+		ValueIndex index = valueIndex;
+		if(index == null){
+			synchronized(this){
+				index = valueIndex;
+				if(index == null){
+					valueIndex = index = new ValueIndex(properties);
+				}
 			}
 		}
-		return keys;
+		return index;
+	}
+	
+	/**
+	 * copy the current content into a new snapshot and publish it, readers of getSnapshot() get it from now on
+	 * <br> to be called by the thread modifying this object, after a change or a batch of changes, O(n) in time and memory
+	 * @return the published snapshot
+	 * @see CustomPropertiesSnapshot
+	 */
+	public CustomPropertiesSnapshot publishSnapshot(){
+		CustomPropertiesSnapshot previous = snapshot;
+		CustomPropertiesSnapshot published = new CustomPropertiesSnapshot(new CustomProperties(this), previous == null ? 1L : previous.getVersion() + 1);
+		snapshot = published;
+		return published;
+	}
+	
+	/**
+	 * without locking, from any thread, even while this object is being modified
+	 * @return the last snapshot published by publishSnapshot(), null if none was published since this object was created
+	 */
+	public CustomPropertiesSnapshot getSnapshot(){
+		return snapshot;
 	}
 	
 	/**
@@ -478,21 +820,40 @@ public class CustomProperties{
 	 * @return
 	 */
 	public List<PropertiesDifferent> findKeysToTranslate(){
+		long start = CustomPropertiesMetrics.start();
+		List<PropertiesDifferent> result = findKeysToTranslate(contentList.nodes());
+		CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.FIND_KEYS_TO_TRANSLATE, start, contentList.size(), 0L);
+		return result;
+	}
+	
+	/**
+	 * @param nodes of the content list, in line order
+	 * @return the keys to translate among these lines
+	 */
+	private List<PropertiesDifferent> findKeysToTranslate(Iterable<IndexedContentList.Node> nodes){
 		List<PropertiesDifferent> result = new ArrayList<PropertiesDifferent>();
-		String oldKey = "";
-		for(int i=0; i<contentList.size(); i++){
-			String content = contentList.get(i);
-			String key = getKeyFromString(content);
-			if(isProperties(content) && !properties.containsKey(key)){
-				String referenceValue = getValueFromString(content);
-				PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,"",oldKey);
+		for(IndexedContentList.Node node : nodes){
+			String content = node.line();
+			int separatorIndex = PropertiesLineParser.separatorIndex(content);
+			String key = PropertiesLineParser.key(content, separatorIndex);
+			if(PropertiesLineParser.isProperties(content, separatorIndex) && !properties.containsKey(key)){
+				String referenceValue = PropertiesLineParser.value(content, separatorIndex);
+				PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,"",previousKey(node));
 				result.add(diffProp);
 			}
-			oldKey = key;
 		}
 		return result;
 	}
 	
+	/**
+	 * @param node
+	 * @return the key of the line before this node, "" for the first line
+	 */
+	private static String previousKey(IndexedContentList.Node node){
+		IndexedContentList.Node previous = IndexedContentList.previous(node);
+		return previous == null ? "" : previous.key;
+	}
+	
 	/**
 	 * find bad keys for other properties file, include keys to translate, bad keys are defined in function: 
 	 * @param other
@@ -500,6 +861,7 @@ public class CustomProperties{
 	 * @see com.saintgobain.sg4pTool.beans.properties.isBadKey(String key)
 	 */
 	public List<PropertiesDifferent> findBadKeys(){
+		long start = CustomPropertiesMetrics.start();
 		List<PropertiesDifferent> result = new ArrayList<PropertiesDifferent>();
 		String oldKey = "";
 		for(Entry<String, String> prop : properties.entrySet()){
@@ -510,6 +872,7 @@ public class CustomProperties{
 			}
 			oldKey = key;
 		}
+		CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.FIND_BAD_KEYS, start, properties.size(), 0L);
 		return result;
 	}
 	
@@ -538,14 +901,12 @@ public class CustomProperties{
 	public boolean insertOrUpdate(String referenceKey, String key, String value) throws IOException{
 		if(value != null && !value.isEmpty()){
 			//into content list
-			List<String> keyList = getContentListKey();
-			
-			int index = keyList.lastIndexOf(key);
+			int index = contentList.lastIndexOfKey(key);
 			if(index != -1){
 				modifyByKey(index,key,value);
 			}else{
 				//insert after the current index
-				int indexToInsert = keyList.lastIndexOf(referenceKey) + 1;
+				int indexToInsert = contentList.lastIndexOfKey(referenceKey) + 1;
 				insertContentByLineNumber(indexToInsert,key,value);
 			}
 			return Boolean.TRUE;
@@ -554,6 +915,107 @@ public class CustomProperties{
 		}
 	}
 	
+	/**
+	 * same result as calling insertOrUpdate(theKeyBeforeThis, key, differentValue) for each difference in order, 
+	 * but the anchors are resolved in one pass and all new lines are spliced in one merge per anchor
+	 * <br> the cost is O(k log n) for k differences, instead of k scans of the whole content list
+	 * @param differences
+	 * @return the result of each difference, in the same order
+	 */
+	public List<ApplyResult> applyAll(Collection<PropertiesDifferent> differences){
+		List<ApplyResult> results = new ArrayList<ApplyResult>(differences.size());
+		Map<String,InsertedLine> insertedByKey = new HashMap<String,InsertedLine>();
+		//anchor (content list node, inserted line or FIRST_LINE_ANCHOR) -> lines inserted right after it, the last inserted first
+		Map<Object,Deque<InsertedLine>> insertedAfter = new HashMap<Object,Deque<InsertedLine>>();
+		for(PropertiesDifferent difference : differences){
+			String key = difference.getKey();
+			String value = difference.getDifferentValue();
+			if(value == null || value.isEmpty()){
+				results.add(ApplyResult.IGNORED);
+				continue;
+			}
+			InsertedLine inserted = insertedByKey.get(key);
+			IndexedContentList.Node existing;
+			if(inserted != null){
+				inserted.value = value;
+				results.add(ApplyResult.UPDATED);
+			}else if((existing = contentList.lastNodeOfKey(key)) != null){
+				String content = formContent(key, value);
+				contentList.updateNode(existing, content, PropertiesLineParser.key(content));
+				results.add(ApplyResult.UPDATED);
+			}else{
+				String referenceKey = difference.getTheKeyBeforeThis();
+				Object anchor = insertedByKey.get(referenceKey);
+				if(anchor == null){
+					anchor = contentList.lastNodeOfKey(referenceKey);
+				}
+				if(anchor == null){
+					anchor = FIRST_LINE_ANCHOR;
+				}
+				inserted = new InsertedLine(key, value);
+				insertedAfter.computeIfAbsent(anchor, k -> new ArrayDeque<InsertedLine>()).push(inserted);
+				insertedByKey.put(key, inserted);
+				results.add(ApplyResult.INSERTED);
+			}
+			insertOrUpdatePropertiesMap(key, value);
+		}
+		spliceInsertedLines(insertedAfter);
+		return results;
+	}
+	
+	/**
+	 * a line inserted by applyAll, not in the content list yet
+	 */
+	private static final class InsertedLine {
+		final String key;
+		String value;
+		
+		InsertedLine(String key, String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+	
+	private void spliceInsertedLines(Map<Object,Deque<InsertedLine>> insertedAfter) {
+		//line number to insert at -> lines, from the last line number to the first so that line numbers are not shifted by previous inserts
+		TreeMap<Integer,List<String>> splices = new TreeMap<Integer,List<String>>(Collections.reverseOrder());
+		for(Entry<Object,Deque<InsertedLine>> anchored : insertedAfter.entrySet()){
+			Object anchor = anchored.getKey();
+			if(anchor instanceof InsertedLine){
+				//written with its own anchor
+				continue;
+			}
+			int lineNumber = anchor == FIRST_LINE_ANCHOR ? 0 : contentList.rank((IndexedContentList.Node) anchor) + 1;
+			splices.put(lineNumber, flattenInsertedLines(anchored.getValue(), insertedAfter));
+		}
+		for(Entry<Integer,List<String>> splice : splices.entrySet()){
+			contentList.addAll(splice.getKey(), splice.getValue());
+		}
+	}
+	
+	/**
+	 * each line is followed by the lines inserted after it, recursively
+	 */
+	private List<String> flattenInsertedLines(Deque<InsertedLine> lines, Map<Object,Deque<InsertedLine>> insertedAfter) {
+		List<String> result = new ArrayList<String>();
+		Deque<Iterator<InsertedLine>> stack = new ArrayDeque<Iterator<InsertedLine>>();
+		stack.push(lines.iterator());
+		while(!stack.isEmpty()){
+			Iterator<InsertedLine> iterator = stack.peek();
+			if(!iterator.hasNext()){
+				stack.pop();
+				continue;
+			}
+			InsertedLine line = iterator.next();
+			result.add(formContent(line.key, line.value));
+			Deque<InsertedLine> children = insertedAfter.get(line);
+			if(children != null){
+				stack.push(children.iterator());
+			}
+		}
+		return result;
+	}
+	
 	private void insertContentByLineNumber(int lineNumber, String key, String value) throws IOException{	
 		String content = formContent(key, value);
 		contentList.add(lineNumber,content);
@@ -561,11 +1023,15 @@ public class CustomProperties{
 	}
 
 	private void insertOrUpdatePropertiesMap(String key, String value) {
+		modified = true;
 		if(properties.containsKey(key)){
 			properties.replace(key, value);
 		}else{
 			properties.put(key, value);
 		}
+		if(valueIndex != null){
+			valueIndex.put(key, value);
+		}
 	}
 	/**
 	 * check if is a properties or a comment, and form it
@@ -595,19 +1061,181 @@ public class CustomProperties{
 	}
 	
 	/**
-	 * This function save new content on currentFile, and save the oldContent in a temp file in temp folder named as filename_timestamp.properties.
+	 * @param key
+	 * @return number of properties lines having this key in the content list, O(k) for the k lines having this key
+	 */
+	public int getOccurrenceCount(String key){
+		return propertiesNodesOfKey(key).size();
+	}
+	
+	/**
+	 * @param key
+	 * @param occurrence 0 for the first properties line having this key, in line order
+	 * @return the value of this line, null if the key has not that many properties lines, O(k) for the k lines having this key
+	 */
+	public String getOccurrenceValue(String key, int occurrence){
+		IndexedContentList.Node node = propertiesNodeOfKey(key, occurrence);
+		return node == null ? null : PropertiesLineParser.value(node.line());
+	}
+	
+	/**
+	 * @param key
+	 * @param occurrence 0 for the first properties line having this key, in line order
+	 * @return the line number of this line in the content list, -1 if the key has not that many properties lines, O(k + log n)
+	 */
+	public int getOccurrenceLineNumber(String key, int occurrence){
+		IndexedContentList.Node node = propertiesNodeOfKey(key, occurrence);
+		return node == null ? -1 : contentList.rank(node);
+	}
+	
+	/**
+	 * modify any properties line of a duplicated key, insertOrUpdate only modifies the last line of a key
+	 * <br> does not modify if value is empty or null, as insertOrUpdate
+	 * <br> the properties map follows the last properties line of a key, so it is only updated when the last occurrence is modified
+	 * <br> O(k) for the k lines having this key
+	 * @param key
+	 * @param occurrence 0 for the first properties line having this key, in line order
+	 * @param newValue
+	 * @return false if value is empty or null, or if the key has not that many properties lines
+	 */
+	public boolean modifyOccurrence(String key, int occurrence, String newValue){
+		if(newValue == null || newValue.isEmpty()){
+			return Boolean.FALSE;
+		}
+		List<IndexedContentList.Node> nodes = propertiesNodesOfKey(key);
+		if(occurrence < 0 || occurrence >= nodes.size()){
+			return Boolean.FALSE;
+		}
+		contentList.updateNode(nodes.get(occurrence), formContent(key, newValue), key);
+		if(occurrence == nodes.size() - 1){
+			insertOrUpdatePropertiesMap(key, newValue);
+		}else{
+			modified = true;
+		}
+		return Boolean.TRUE;
+	}
+	
+	/**
+	 * @return the properties lines of this key, in line order, without the comment or separator-less lines having the same key
+	 */
+	private List<IndexedContentList.Node> propertiesNodesOfKey(String key){
+		List<IndexedContentList.Node> nodes = contentList.nodesOfKey(key);
+		List<IndexedContentList.Node> propertiesNodes = new ArrayList<IndexedContentList.Node>(nodes.size());
+		for(IndexedContentList.Node node : nodes){
+			if(isProperties(node.line())){
+				propertiesNodes.add(node);
+			}
+		}
+		return propertiesNodes;
+	}
+	
+	private IndexedContentList.Node propertiesNodeOfKey(String key, int occurrence){
+		if(occurrence < 0){
+			return null;
+		}
+		for(IndexedContentList.Node node : contentList.nodesOfKey(key)){
+			if(isProperties(node.line()) && occurrence-- == 0){
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * remove every properties line of a duplicated key but the last one, which gets the value of getValueByKey(key) when the file has the key
+	 * <br> keys duplicated in the file only have one line when the reference file has them once, that line gets the value of getValueByKey(key) too
+	 * <br> lines that are not properties lines are kept, even when they have the key of a properties line
+	 * <br> O(n) whatever the number of duplicated keys, save the file afterwards to rewrite it without duplicates
+	 * @return number of removed lines
+	 */
+	public int dedupe(){
+		Set<String> duplicated = new HashSet<String>(duplicatedKeys.keySet());
+		//last properties line of each key having several lines or duplicated in the file
+		Map<String,IndexedContentList.Node> lastLines = new HashMap<String,IndexedContentList.Node>();
+		for(IndexedContentList.Node node : contentList.nodes()){
+			if((duplicated.contains(node.key) || contentList.countOfKey(node.key) > 1) && isProperties(node.line())){
+				lastLines.put(node.key, node);
+			}
+		}
+		int removed = 0;
+		if(!lastLines.isEmpty()){
+			//before rebuilding the list, which copies the lines into new nodes
+			for(Map.Entry<String,IndexedContentList.Node> lastLine : lastLines.entrySet()){
+				String key = lastLine.getKey();
+				String value = properties.get(key);
+				if(properties.containsKey(key) && !formContent(key, value).equals(lastLine.getValue().line())){
+					contentList.updateNode(lastLine.getValue(), formContent(key, value), key);
+				}
+			}
+			removed = contentList.retainNodes(node -> {
+				IndexedContentList.Node last = lastLines.get(node.key);
+				return last == null || node == last || !isProperties(node.line());
+			});
+		}
+		if(removed > 0 || !duplicatedKeys.isEmpty()){
+			duplicatedKeys = new LinkedHashMap<String,Integer>();
+			duplicatedValues = new HashMap<String,Deque<String>>();
+			modified = true;
+		}
+		return removed;
+	}
+	
+	/**
+	 * load file, remove its duplicated keys with dedupe() and save it, only if it has any
+	 * @param file
+	 * @param structureReferenceFile
+	 * @return true if the file had duplicated keys and was rewritten
+	 * @throws IOException
+	 */
+	public static boolean dedupeFile(File file, File structureReferenceFile) throws IOException{
+		CustomProperties properties = new CustomProperties(file, structureReferenceFile);
+		boolean hadDuplicates = !properties.getDuplicatedKeys().isEmpty();
+		if(properties.dedupe() == 0 && !hadDuplicates){
+			return false;
+		}
+		saveToFile(file, properties);
+		return true;
+	}
+	
+	/**
+	 * This function save new content on currentFile, and keep the oldContent as a version in the VersionStore of currentFile (temp/filename.versions in temp folder).
 	 * only used to versioning local files
 	 * @throws IOException
+	 * @see VersionStore
 	 */
 	public static void saveToFileWithVersioning(File currentFile, String oldContentToSave, String newContentToSave) throws IOException{
-
-		String tempPath = generateTempAbsolutePath(currentFile);
-		File tempFile = new File(tempPath);
-		File tempParent = tempFile.getParentFile();
-		if(!tempParent.exists()){
-			tempParent.mkdirs();
-		saveToFile(tempFile, oldContentToSave);
+		new VersionStore(currentFile).append(oldContentToSave);
 		saveToFile(currentFile, newContentToSave);
+	}
+	
+	/**
+	 * save new content on currentFile, keeping its current content as a version in the VersionStore of currentFile,
+	 * the current content is read from the disk right before being overwritten, no copy of it is kept in memory
+	 * @throws IOException
+	 * @see VersionStore#appendFile(File)
+	 */
+	public static void saveToFileWithVersioning(File currentFile, String newContentToSave) throws IOException{
+		saveToFileWithVersioning(currentFile, FileSaver.of(newContentToSave, OFFICIAL_WRITE_ENCODING));
+	}
+	
+	/**
+	 * save the properties on currentFile, keeping its current content as a version in the VersionStore of currentFile,
+	 * streamed with writeTo(WritableByteChannel)
+	 * @throws IOException
+	 * @see VersionStore#appendFile(File)
+	 */
+	public static void saveToFileWithVersioning(File currentFile, CustomProperties contentToSave) throws IOException{
+		saveToFileWithVersioning(currentFile, contentToSave::writeTo);
+	}
+	
+	@SuppressWarnings("try")
+	private static void saveToFileWithVersioning(File currentFile, FileSaver.Content contentToSave) throws IOException{
+		//nobody writes the file between the snapshot and the save
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(currentFile)){
+			if(currentFile.exists()){
+				new VersionStore(currentFile).appendFile(currentFile);
+			}
+			saveToFile(currentFile, contentToSave, defaultSaveMode);
 		}
 	}
 	
@@ -617,61 +1245,155 @@ public class CustomProperties{
 		long timestamp = cal.getTimeInMillis();
 		String filename = currentFile.getName().split("\\.")[0];
 
-		sb.append(getTempParentFolder(currentFile))
-		.append("\\").append(filename).append("_").append(timestamp).append(".properties");
-		return sb.toString();
+		sb.append(filename).append("_").append(timestamp).append(".properties");
+		return new File(getTempParentFolder(currentFile), sb.toString()).getPath();
 	}
 
 	public static String getTempParentFolder(File currentFile) {
-		StringBuilder sb = new StringBuilder();
-		String parent = currentFile.getParent();
-		sb.append(parent).append("\\").append(VERSIONING_TEMP_FOLDER_NAME);
-		return sb.toString();
-		
+		return new File(currentFile.getAbsoluteFile().getParentFile(), VERSIONING_TEMP_FOLDER_NAME).getPath();
 	}
 
 	/**
-	 * save the content in file
+	 * save the properties in file, with the default save mode, streamed with writeTo(WritableByteChannel)
 	 * @throws IOException
+	 * @see setDefaultSaveMode(SaveMode)
+	 */
+	public static void saveToFile(File filePath, CustomProperties contentToSave) throws IOException{
+		saveToFile(filePath, contentToSave, defaultSaveMode);
+	}
+	
+	/**
+	 * save the properties in file, streamed with writeTo(WritableByteChannel)
+	 * @throws IOException
+	 */
+	public static void saveToFile(File filePath, CustomProperties contentToSave, SaveMode saveMode) throws IOException{
+		saveToFile(filePath, contentToSave::writeTo, saveMode);
+	}
+	
+	/**
+	 * save the content in file, with the default save mode
+	 * @throws IOException
+	 * @see setDefaultSaveMode(SaveMode)
 	 */
 	public static void saveToFile(File filePath, String contentToSave) throws IOException{
-		waitForQueue(filePath);
-		try(FileOutputStream output = new FileOutputStream(filePath,false);
-			BufferedWriter  out = new BufferedWriter(new OutputStreamWriter(output,OFFICIAL_WRITE_ENCODING))){
-			isFileWriting.put(filePath.getAbsolutePath(), Boolean.TRUE);
-			out.write(contentToSave);
-			isFileWriting.put(filePath.getAbsolutePath(), Boolean.FALSE);
+		saveToFile(filePath, contentToSave, defaultSaveMode);
+	}
+	
+	/**
+	 * save the content in file
+	 * @throws IOException
+	 */
+	public static void saveToFile(File filePath, String contentToSave, SaveMode saveMode) throws IOException{
+		saveToFile(filePath, FileSaver.of(contentToSave, OFFICIAL_WRITE_ENCODING), saveMode);
+	}
+
+	/**
+	 * save the content in file later, in the background, merged with the other saves of the same file asked meanwhile
+	 * @return completed once written
+	 * @throws IOException
+	 * @see WriteBehindSaver
+	 */
+	public static CompletableFuture<Void> saveToFileAsync(File filePath, String contentToSave) throws IOException{
+		return WriteBehindSaver.shared().save(filePath, contentToSave);
+	}
+
+	/**
+	 * save the properties in file later, the content is taken now so the properties can be modified right after
+	 * @return completed once written
+	 * @throws IOException
+	 * @see WriteBehindSaver
+	 */
+	public static CompletableFuture<Void> saveToFileAsync(File filePath, CustomProperties contentToSave) throws IOException{
+		return saveToFileAsync(filePath, contentToSave.writeContentAsString());
+	}
+
+	@SuppressWarnings("try")
+	private static void saveToFile(File filePath, FileSaver.Content contentToSave, SaveMode saveMode) throws IOException{
+		long start = CustomPropertiesMetrics.start();
+		//wait in the queue of this file, readers and writers are served in arrival order
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(filePath)){
+			OldContentKeeper.beforeSave(filePath, saveMode);
+			if(saveMode == SaveMode.ATOMIC){
+				FileSaver.saveAtomically(filePath, contentToSave, true);
+			}else{
+				FileSaver.saveInPlace(filePath, contentToSave, true);
+			}
+			ReferenceContentCache.invalidate(filePath);
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.SAVE, start, 0L, start == CustomPropertiesMetrics.DISABLED ? 0L : filePath.length());
 		}catch(IOException e){
 			throw new IOException("[CustomProperties] - ERROR while saving file to location : " + filePath.getAbsolutePath(), e);
-		}finally{
-			//remove the thing from the queue when writing finished
-			String key = filePath.getAbsolutePath();
-			ConcurrentLinkedQueue<Integer> queueForFile = fileWritingQueueFifo.get(key);
-			queueForFile.poll();
 		}
 	}
 	
-	private static void waitForQueue(File file) throws IOException {
-		String key = file.getAbsolutePath();
-		int queueId = writingIdSequance++;
-		ConcurrentLinkedQueue<Integer> queueForFile;
-		
-		if(!fileWritingQueueFifo.containsKey(key)){
-			queueForFile = new ConcurrentLinkedQueue<Integer>();
-			queueForFile.add(queueId);
-			fileWritingQueueFifo.put(key, queueForFile);
-		}else{
-			queueForFile = fileWritingQueueFifo.get(key);
-			queueForFile.add(queueId);
-		}
-		
-		while(queueForFile.peek() != null && queueForFile.peek() != queueId){
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				throw new IOException("Failed sleep during queue for file writing",e);
-			}
-		}
+	public static LoadMode getDefaultLoadMode() {
+		return defaultLoadMode;
+	}
+	
+	/**
+	 * set the mode used to read files by constructors and refresh(), READER by default
+	 * @param loadMode
+	 */
+	public static void setDefaultLoadMode(LoadMode loadMode) {
+		defaultLoadMode = loadMode;
+	}
+	
+	public static RefreshMode getDefaultRefreshMode() {
+		return defaultRefreshMode;
+	}
+	
+	/**
+	 * @param refreshMode used by every following refresh(), WATCH only applies to instances loaded or reloaded after it is set
+	 */
+	public static void setDefaultRefreshMode(RefreshMode refreshMode) {
+		defaultRefreshMode = refreshMode;
+	}
+	
+	public static boolean isDefaultSearchIndex() {
+		return defaultSearchIndex;
+	}
+	
+	/**
+	 * when true, instances loaded afterwards keep a trigram index of their keys (and of the reference values, built on the first search by value),
+	 * so that findKeysByNameLike and findAllByNameLike only check the lines that may match, false by default
+	 * <br> the index is kept up to date by every change of the content list, searches of less than 3 characters still scan every line
+	 * @param searchIndex
+	 */
+	public static void setDefaultSearchIndex(boolean searchIndex) {
+		defaultSearchIndex = searchIndex;
+	}
+	
+	public static MemoryMode getDefaultMemoryMode() {
+		return defaultMemoryMode;
+	}
+	
+	/**
+	 * set how instances loaded afterwards (constructors and refresh()) keep their content in memory, STANDARD by default
+	 * @param memoryMode
+	 */
+	public static void setDefaultMemoryMode(MemoryMode memoryMode) {
+		defaultMemoryMode = memoryMode;
+	}
+	
+	public static SaveMode getDefaultSaveMode() {
+		return defaultSaveMode;
+	}
+	
+	/**
+	 * set the mode used by saveToFile(File, String) and the other save methods without explicit mode, IN_PLACE by default
+	 * @param saveMode
+	 */
+	public static void setDefaultSaveMode(SaveMode saveMode) {
+		defaultSaveMode = saveMode;
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * @return number of threads reading, writing or waiting to read/write this file, 0 if nobody is using it
+	 * @throws IOException
+	 */
+	public static int getQueueDepth(File file) throws IOException {
+		return FileLockRegistry.getQueueDepth(file);
 	}
 
 	/**
@@ -680,7 +1402,7 @@ public class CustomProperties{
 	 * @throws IOException
 	 */
 	public String writeOldContentAsString(){
-		return oldContent.toString();
+		return getOldContent().toString();
 	}
 	/**
 	 * 
@@ -689,25 +1411,55 @@ public class CustomProperties{
 	 */
 	public String writeContentAsString() throws IOException {
 		StringBuilder sb = new StringBuilder();
-		for(int i=0; i<contentList.size(); i++){
-			String content = contentList.get(i);
-			//if is properties
-			if(isProperties(content)){
-				//write only if it also exist in properties MAP
-				String key = getKeyFromString(content);
-				if(properties.containsKey(key)){
-					sb.append(escapeUnicode(content));
-					sb.append("\n");
-				}
-			}else{
-				//write everything else not properties
-				sb.append(escapeUnicode(content));
+		for(String content : contentList){
+			if(isWritten(content)){
+				escapeUnicode(content, sb);
 				sb.append("\n");
 			}
 		}
 		return sb.toString();
 	}
 	
+	/**
+	 * write the same content as writeContentAsString(), escaped line by line through a reusable buffer, without building the whole file in memory
+	 * @param channel is not closed
+	 * @throws IOException
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		writeTo(new EscapedContentWriter(channel));
+	}
+	
+	/**
+	 * write the same content as writeContentAsString(), escaped line by line through a reusable buffer, without building the whole file in memory
+	 * @param writer is not flushed nor closed
+	 * @throws IOException
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writeTo(new EscapedContentWriter(writer));
+	}
+	
+	private void writeTo(EscapedContentWriter out) throws IOException {
+		for(String content : contentList){
+			if(isWritten(content)){
+				out.writeLine(content);
+			}
+		}
+		out.flush();
+	}
+	
+	/**
+	 * write everything not properties, and properties only if they also exist in properties MAP
+	 * @param content
+	 * @return
+	 */
+	private boolean isWritten(String content) {
+		int separatorIndex = PropertiesLineParser.separatorIndex(content);
+		if(PropertiesLineParser.isProperties(content, separatorIndex)){
+			return properties.containsKey(PropertiesLineParser.key(content, separatorIndex));
+		}
+		return true;
+	}
+	
 	/**
 	 * to generate Chinese properties file automatically, it does not translate to Chinese, it only copy key to value xD
 	 * @throws IOException
@@ -716,8 +1468,9 @@ public class CustomProperties{
 		List<String> localReferenceContentList = contentList;
 		String oldKey = "";
 		for(String content : localReferenceContentList){
-			String key = getKeyFromString(content);
-			if(isProperties(content)){
+			int separatorIndex = PropertiesLineParser.separatorIndex(content);
+			String key = PropertiesLineParser.key(content, separatorIndex);
+			if(PropertiesLineParser.isProperties(content, separatorIndex)){
 				String value = key;
 				insertOrUpdate(oldKey, key, value);
 			}
@@ -735,7 +1488,7 @@ public class CustomProperties{
 	 * @throws IOException 
 	 */
 	public static void generateChinesePropertiesFile(String fileNameToGenerate, File referenceFile) throws IOException{
-		File fileToGenerate = new File(referenceFile.getParent() + "\\" + fileNameToGenerate);
+		File fileToGenerate = new File(referenceFile.getParentFile(), fileNameToGenerate);
 		generateChinesePropertiesFile(fileToGenerate, referenceFile);
 	}
 	
@@ -748,7 +1501,7 @@ public class CustomProperties{
 	public static void generateChinesePropertiesFile(File fileToGenerate, File referenceFile) throws IOException{
 		CustomProperties propToGenerate = new CustomProperties(referenceFile, referenceFile);
 		propToGenerate.iAmChinesePropertiesFile();
-		CustomProperties.saveToFile(fileToGenerate, propToGenerate.writeContentAsString());
+		CustomProperties.saveToFile(fileToGenerate, propToGenerate);
 	}
 	
 	/**
@@ -758,25 +1511,16 @@ public class CustomProperties{
 	 * @throws java.io.IOException
 	 */
 	public static String escapeUnicode(String input){
-		StringBuilder b = new StringBuilder();
-		
-		    for (char c : input.toCharArray()) {
-		        if (c >= 128){
-		        	 b.append("\\u").append(String.format("%04X", (int) c));
-		        }
-			    else if(c == '\n' ){
-			    	b.append("\\u000a");
-			    }else if(c == '\r'){
-			    	b.append("\\u000d");
-			    }
-			    else{
-			    	 b.append(c);
-			    }
-			       
-		}
-		
+		StringBuilder b = new StringBuilder(input.length());
+		escapeUnicode(input, b);
 		return b.toString();
 	}
+	
+	private static void escapeUnicode(String input, StringBuilder output){
+		for(int i = 0; i < input.length(); i++){
+			EscapedContentWriter.escape(input.charAt(i), output);
+		}
+	}
 			 
 	 /**
 	  * number of properties in this file
@@ -834,9 +1578,13 @@ public class CustomProperties{
 	  * @return
 	  */
 	 public List<PropertiesDifferent> findAllByNameLikeAndReferenceValueLike(String name, boolean keysToTranslateOnly, String valueToSearch){
+		 long start = CustomPropertiesMetrics.start();
 		 List<PropertiesDifferent> result = new ArrayList<PropertiesDifferent>();
+		 //the reference value of a key to translate is the one of its line, not always the one of the reference index
+		 List<IndexedContentList.Node> candidates = findCandidates(name, keysToTranslateOnly ? null : valueToSearch);
+		 Iterable<IndexedContentList.Node> nodes = candidates != null ? candidates : contentList.nodes();
 			if(keysToTranslateOnly){
-				for(PropertiesDifferent  diff : findKeysToTranslate()){
+				for(PropertiesDifferent  diff : findKeysToTranslate(nodes)){
 					//if there are value to search, search by key and value, otherwise, search only by key
 					if(valueToSearch != null && !"".equals(valueToSearch)){
 						if(diff.getKey().contains(name) && StringUtils.containsIgnoreCase(diff.getOriginalValue(), valueToSearch)){
@@ -849,26 +1597,26 @@ public class CustomProperties{
 					}
 				}
 			}else{
-				String oldKey = "";
-				for(int i=0; i<contentList.size(); i++){
-					String content = contentList.get(i);
-					String key = getKeyFromString(content);
+				for(IndexedContentList.Node node : nodes){
+					String content = node.line();
+					int separatorIndex = PropertiesLineParser.separatorIndex(content);
+					String key = PropertiesLineParser.key(content, separatorIndex);
+					boolean isProperties = PropertiesLineParser.isProperties(content, separatorIndex);
 					String referenceValue = getReferenceValueByKey(key);
 					if(valueToSearch != null && !"".equals(valueToSearch)){
-						if(key.contains(name) && isProperties(content) && StringUtils.containsIgnoreCase(referenceValue, valueToSearch)){
-							PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,properties.getOrDefault(key, ""),oldKey);
+						if(key.contains(name) && isProperties && StringUtils.containsIgnoreCase(referenceValue, valueToSearch)){
+							PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,properties.getOrDefault(key, ""),previousKey(node));
 							result.add(diffProp);
 						}
 					}else{
-						if(key.contains(name) && isProperties(content)){
-							PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,properties.getOrDefault(key, ""),oldKey);
+						if(key.contains(name) && isProperties){
+							PropertiesDifferent diffProp = new PropertiesDifferent(key,referenceValue,properties.getOrDefault(key, ""),previousKey(node));
 							result.add(diffProp);
 						}
 					}
-					
-					oldKey = key;
 				}
 			}
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.FIND_BY_NAME, start, candidates != null ? candidates.size() : contentList.size(), 0L);
 			return result;
 	 }
 	 
@@ -878,17 +1626,45 @@ public class CustomProperties{
 	  * @return
 	  */
 	 public List<String> findKeysByNameLike(String name){
+		 long start = CustomPropertiesMetrics.start();
 		 List<String> result = new ArrayList<String>();
-			for(int i=0; i<contentList.size(); i++){
-				String content = contentList.get(i);
-				String key = getKeyFromString(content);
-				if(StringUtils.containsIgnoreCase(key, name) && isProperties(content)){
+		 List<IndexedContentList.Node> candidates = findCandidates(name, null);
+			for(IndexedContentList.Node node : candidates != null ? candidates : contentList.nodes()){
+				String content = node.line();
+				int separatorIndex = PropertiesLineParser.separatorIndex(content);
+				String key = PropertiesLineParser.key(content, separatorIndex);
+				if(StringUtils.containsIgnoreCase(key, name) && PropertiesLineParser.isProperties(content, separatorIndex)){
 					result.add(key);
 				}
 			}
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.FIND_BY_NAME, start, candidates != null ? candidates.size() : contentList.size(), 0L);
 			return result;
 	 }
 	 
+	 /**
+	  * lines that may match a search, from the substring indexes, every search condition must still be checked on them
+	  * @param name searched in keys
+	  * @param valueToSearch searched in reference values, may be null
+	  * @return the candidate lines in line order, null if the search index is not enabled, both strings are too short for it or too many lines may match
+	  */
+	 private List<IndexedContentList.Node> findCandidates(String name, String valueToSearch){
+		 if(!contentList.isSubstringIndexEnabled()){
+			 return null;
+		 }
+		 List<String> keys = contentList.keysLike(name);
+		 if(valueToSearch != null && !"".equals(valueToSearch)){
+			 List<String> keysByValue = referenceContent.keysWithValueLike(valueToSearch);
+			 if(keys == null || (keysByValue != null && keysByValue.size() < keys.size())){
+				 keys = keysByValue;
+			 }
+		 }
+		 //sorting many candidates by line number costs more than scanning every line
+		 if(keys == null || keys.size() > contentList.size() / 8){
+			 return null;
+		 }
+		 return contentList.nodesOfKeys(keys);
+	 }
+	 
 	 /**
 	  * get this file name
 	  */
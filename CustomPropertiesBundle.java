@@ -0,0 +1,179 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Load every locale file of a bundle against the same reference file
+ * <br> the reference file is read and parsed once (or taken from ReferenceContentCache when enabled), then shared (read only) by every loaded CustomProperties
+ * <br> locale files are loaded in parallel
+ * <br> analyze() gives the translation coverage of every locale at once, see CoverageReport
+ */
+public class CustomPropertiesBundle {
+
+	public static final String PROPERTIES_EXTENSION = ".properties";
+
+	private CustomPropertiesBundle() {
+	}
+
+	/**
+	 * load the bundle with one thread per available processor
+	 * @see load(File, File, ExecutorService)
+	 */
+	public static Map<String,CustomProperties> load(File directory, File referenceFile) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try{
+			return load(directory, referenceFile, executor);
+		}finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * load every locale file of the reference file's bundle found in directory,
+	 * e.g. messages_fr.properties, messages_de.properties ... for the reference file messages.properties
+	 * <br> the reference file itself is not part of the result
+	 * @param directory
+	 * @param referenceFile
+	 * @param executor used to load the locale files, is not shut down
+	 * @return locale name (fr, de, fr_FR ...) -> loaded file, sorted by locale name
+	 * @throws IOException if any file fails to load
+	 */
+	public static Map<String,CustomProperties> load(File directory, File referenceFile, ExecutorService executor) throws IOException {
+		ReferenceContent referenceContent = ReferenceContentCache.get(referenceFile, CustomProperties.getDefaultLoadMode());
+		Map<String,File> localeFiles = findLocaleFiles(directory, referenceFile);
+		Map<String,Future<CustomProperties>> loading = new TreeMap<String,Future<CustomProperties>>();
+		for(Map.Entry<String,File> localeFile : localeFiles.entrySet()){
+			File file = localeFile.getValue();
+			loading.put(localeFile.getKey(), executor.submit(() -> new CustomProperties(file, referenceContent)));
+		}
+		Map<String,CustomProperties> result = new TreeMap<String,CustomProperties>();
+		try{
+			for(Map.Entry<String,Future<CustomProperties>> loaded : loading.entrySet()){
+				result.put(loaded.getKey(), loaded.getValue().get());
+			}
+		}catch(ExecutionException e){
+			cancel(loading.values());
+			throw new IOException("[CustomProperties] - ERROR while loading bundle of : " + referenceFile.getAbsolutePath(), e.getCause());
+		}catch(InterruptedException e){
+			cancel(loading.values());
+			Thread.currentThread().interrupt();
+			throw new IOException("[CustomProperties] - Interrupted while loading bundle of : " + referenceFile.getAbsolutePath(), e);
+		}
+		return result;
+	}
+
+	/**
+	 * analyze the bundle on the common ForkJoinPool
+	 * @see analyze(File, File, ForkJoinPool)
+	 */
+	public static CoverageReport analyze(File directory, File referenceFile) throws IOException {
+		return analyze(directory, referenceFile, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * load every locale file of the reference file's bundle found in directory and check its coverage of the reference file:
+	 * status of each reference key, findKeysToTranslate() and findBadKeys()
+	 * <br> the locales are split in halves down to one locale per task, each task loads its file, checks it and drops it,
+	 * so at most one file per worker is in memory besides the report
+	 * @param directory
+	 * @param referenceFile
+	 * @param pool runs the tasks, is not shut down
+	 * @return the coverage of every locale found, the reference file itself is not part of it
+	 * @throws IOException if any file fails to load
+	 */
+	public static CoverageReport analyze(File directory, File referenceFile, ForkJoinPool pool) throws IOException {
+		ReferenceContent referenceContent = ReferenceContentCache.get(referenceFile, CustomProperties.getDefaultLoadMode());
+		Map<String,File> localeFiles = findLocaleFiles(directory, referenceFile);
+		List<String> keys = CoverageReport.keysOf(referenceContent);
+		List<File> files = new ArrayList<File>(localeFiles.values());
+		CoverageReport.LocaleCoverage[] coverages = new CoverageReport.LocaleCoverage[files.size()];
+		try{
+			pool.invoke(new CoverageTask(files, referenceContent, keys, coverages, 0, files.size()));
+		}catch(UncheckedIOException e){
+			throw new IOException("[CustomProperties] - ERROR while analyzing bundle of : " + referenceFile.getAbsolutePath(), e.getCause());
+		}
+		return new CoverageReport(referenceFile, keys, new ArrayList<String>(localeFiles.keySet()), coverages);
+	}
+
+	/**
+	 * coverage of the locale files [from, to), split in halves until one file is left
+	 * <br> Serializable only as a RecursiveAction, never serialized: it lives in the pool of one analyze() call
+	 */
+	@SuppressWarnings("serial")
+	private static final class CoverageTask extends RecursiveAction {
+
+		private final List<File> files;
+		private final ReferenceContent referenceContent;
+		private final List<String> keys;
+		private final CoverageReport.LocaleCoverage[] coverages;
+		private final int from;
+		private final int to;
+
+		CoverageTask(List<File> files, ReferenceContent referenceContent, List<String> keys, CoverageReport.LocaleCoverage[] coverages, int from, int to) {
+			this.files = files;
+			this.referenceContent = referenceContent;
+			this.keys = keys;
+			this.coverages = coverages;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1){
+				int middle = (from + to) >>> 1;
+				invokeAll(new CoverageTask(files, referenceContent, keys, coverages, from, middle),
+						new CoverageTask(files, referenceContent, keys, coverages, middle, to));
+				return;
+			}
+			if(to == from){
+				return;
+			}
+			try{
+				coverages[from] = new CoverageReport.LocaleCoverage(keys, new CustomProperties(files.get(from), referenceContent));
+			}catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * @param directory
+	 * @param referenceFile
+	 * @return locale name -> file, for every file named as the reference file followed by _locale
+	 * @throws IOException if the directory can not be listed
+	 */
+	static Map<String,File> findLocaleFiles(File directory, File referenceFile) throws IOException {
+		String prefix = referenceFile.getName().split("\\.")[0] + "_";
+		File[] files = directory.listFiles();
+		if(files == null){
+			throw new IOException("[CustomProperties] - ERROR can not list directory : " + directory.getAbsolutePath());
+		}
+		Map<String,File> localeFiles = new TreeMap<String,File>();
+		for(File file : files){
+			String name = file.getName();
+			if(file.isFile() && name.startsWith(prefix) && name.endsWith(PROPERTIES_EXTENSION) && name.length() > prefix.length() + PROPERTIES_EXTENSION.length()){
+				localeFiles.put(name.substring(prefix.length(), name.length() - PROPERTIES_EXTENSION.length()), file);
+			}
+		}
+		return localeFiles;
+	}
+
+	private static void cancel(Iterable<Future<CustomProperties>> futures) {
+		for(Future<CustomProperties> future : futures){
+			future.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of loads, saves, lock waits and searches, for the whole JVM
+ * <br> disabled by default, an instrumented call then costs one volatile read
+ * <br> read them with snapshot(), or through JMX after registerMBean()
+ */
+public final class CustomPropertiesMetrics {
+
+	public static final String OBJECT_NAME = "com.saintgobain.sg4pTool:type=CustomPropertiesMetrics";
+
+	public enum Operation {
+		/**
+		 * reading and parsing the file to write, lines and bytes are the ones of the file
+		 */
+		LOAD,
+		/**
+		 * reading and parsing a reference file, not counted when it comes from a cache or a bundle
+		 */
+		LOAD_REFERENCE,
+		/**
+		 * saveToFile, lock wait included, bytes are the size of the saved file
+		 */
+		SAVE,
+		/**
+		 * turning the content into bytes during a save, escaping mostly, the writes into the file excluded
+		 */
+		SAVE_ESCAPE,
+		/**
+		 * writing the bytes of a save into the file, and forcing them to disk with SaveMode.ATOMIC, bytes are the ones written
+		 */
+		SAVE_WRITE,
+		/**
+		 * waiting for the lock of a file before reading or writing it, also kept per file
+		 */
+		LOCK_WAIT,
+		FIND_KEYS_TO_TRANSLATE,
+		FIND_BAD_KEYS,
+		/**
+		 * findAllByNameLike, findAllByNameLikeAndReferenceValueLike and findKeysByNameLike
+		 */
+		FIND_BY_NAME,
+		/**
+		 * a pre-parsed copy of LoadMode.PARSED that could not be written, the file was loaded anyway and is parsed again by its next load,
+		 * lines and bytes are the ones of the file
+		 */
+		PARSED_WRITE_FAILURE
+	}
+
+	/**
+	 * returned by start() when disabled
+	 */
+	static final long DISABLED = Long.MIN_VALUE;
+
+	/**
+	 * bucket i counts durations in [2^(i-1), 2^i) nanoseconds, bucket 0 counts 0
+	 */
+	static final int BUCKETS = 64;
+
+	private static final class Recorder {
+		final LongAdder count = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+		final LongAdder lines = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+		final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+		Recorder() {
+			for(int i = 0; i < BUCKETS; i++){
+				histogram[i] = new LongAdder();
+			}
+		}
+
+		void record(long elapsed, long lineCount, long byteCount) {
+			count.increment();
+			nanos.add(elapsed);
+			maxNanos.accumulate(elapsed);
+			histogram[BUCKETS - Long.numberOfLeadingZeros(elapsed)].increment();
+			if(lineCount > 0){
+				lines.add(lineCount);
+			}
+			if(byteCount > 0){
+				bytes.add(byteCount);
+			}
+		}
+
+		OperationStats snapshot(Operation operation) {
+			long[] buckets = new long[BUCKETS];
+			for(int i = 0; i < BUCKETS; i++){
+				buckets[i] = histogram[i].sum();
+			}
+			return new OperationStats(operation.name(), count.sum(), nanos.sum(), maxNanos.get(), lines.sum(), bytes.sum(), buckets);
+		}
+
+		void reset() {
+			count.reset();
+			nanos.reset();
+			maxNanos.reset();
+			lines.reset();
+			bytes.reset();
+			for(LongAdder bucket : histogram){
+				bucket.reset();
+			}
+		}
+	}
+
+	private static volatile boolean enabled = false;
+
+	private static volatile int maxLockWaitFiles = 1000;
+
+	private static final Map<Operation,Recorder> recorders = new EnumMap<Operation,Recorder>(Operation.class);
+
+	/**
+	 * canonical path -> nanoseconds spent waiting for its lock, for the maxLockWaitFiles files having waited the most, about
+	 */
+	private static final ConcurrentMap<String,LongAdder> lockWaitByFile = new ConcurrentHashMap<String,LongAdder>();
+
+	static{
+		for(Operation operation : Operation.values()){
+			recorders.put(operation, new Recorder());
+		}
+	}
+
+	private CustomPropertiesMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled false stops recording, already recorded values are kept until reset()
+	 */
+	public static void setEnabled(boolean enabled) {
+		CustomPropertiesMetrics.enabled = enabled;
+	}
+
+	/**
+	 * @return the start time of an instrumented call, DISABLED if metrics are disabled
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+
+	/**
+	 * @param operation
+	 * @param start returned by start()
+	 * @param lines processed by the call, 0 if not relevant
+	 * @param bytes processed by the call, 0 if not relevant
+	 */
+	static void record(Operation operation, long start, long lines, long bytes) {
+		if(start != DISABLED){
+			recorders.get(operation).record(Math.max(0L, System.nanoTime() - start), lines, bytes);
+		}
+	}
+
+	/**
+	 * @param operation
+	 * @param nanos elapsed, measured by the caller while enabled
+	 * @param lines processed by the call, 0 if not relevant
+	 * @param bytes processed by the call, 0 if not relevant
+	 */
+	static void recordNanos(Operation operation, long nanos, long lines, long bytes) {
+		recorders.get(operation).record(Math.max(0L, nanos), lines, bytes);
+	}
+
+	/**
+	 * record a lock wait, in LOCK_WAIT and for the file
+	 */
+	static void recordLockWait(String path, long start) {
+		if(start != DISABLED){
+			long elapsed = Math.max(0L, System.nanoTime() - start);
+			recorders.get(Operation.LOCK_WAIT).record(elapsed, 0L, 0L);
+			LongAdder lockWait = lockWaitByFile.get(path);
+			if(lockWait == null){
+				if(lockWaitByFile.size() >= maxLockWaitFiles && !dropLockWaitBelow(elapsed)){
+					return;
+				}
+				lockWait = lockWaitByFile.computeIfAbsent(path, key -> new LongAdder());
+			}
+			lockWait.add(elapsed);
+		}
+	}
+
+	/**
+	 * make room for a new file in lockWaitByFile
+	 * @return false if every file kept waited at least nanos, the new one is then not kept
+	 */
+	private static boolean dropLockWaitBelow(long nanos) {
+		Map.Entry<String,LongAdder> least = null;
+		long leastNanos = nanos;
+		for(Map.Entry<String,LongAdder> lockWait : lockWaitByFile.entrySet()){
+			long waited = lockWait.getValue().sum();
+			if(waited < leastNanos){
+				least = lockWait;
+				leastNanos = waited;
+			}
+		}
+		if(least == null){
+			return false;
+		}
+		lockWaitByFile.remove(least.getKey(), least.getValue());
+		return true;
+	}
+
+	/**
+	 * @return the values recorded until now, not atomic: calls recorded meanwhile may be partially included
+	 */
+	public static MetricsSnapshot snapshot() {
+		Map<Operation,OperationStats> operations = new EnumMap<Operation,OperationStats>(Operation.class);
+		for(Map.Entry<Operation,Recorder> recorder : recorders.entrySet()){
+			operations.put(recorder.getKey(), recorder.getValue().snapshot(recorder.getKey()));
+		}
+		Map<String,Long> lockWaits = new TreeMap<String,Long>();
+		for(Map.Entry<String,LongAdder> lockWait : lockWaitByFile.entrySet()){
+			lockWaits.put(lockWait.getKey(), lockWait.getValue().sum());
+		}
+		return new MetricsSnapshot(System.currentTimeMillis(), Collections.unmodifiableMap(operations), Collections.unmodifiableMap(lockWaits));
+	}
+
+	public static int getMaxLockWaitFiles() {
+		return maxLockWaitFiles;
+	}
+
+	/**
+	 * @param maxLockWaitFiles number of files whose lock wait is kept, the ones having waited the most, 1000 by default
+	 */
+	public static void setMaxLockWaitFiles(int maxLockWaitFiles) {
+		CustomPropertiesMetrics.maxLockWaitFiles = Math.max(0, maxLockWaitFiles);
+	}
+
+	public static void reset() {
+		for(Recorder recorder : recorders.values()){
+			recorder.reset();
+		}
+		lockWaitByFile.clear();
+	}
+
+	/**
+	 * register the CustomPropertiesMetricsMXBean in the platform MBean server under OBJECT_NAME, does nothing if already registered
+	 * @throws JMException
+	 */
+	public static synchronized void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(!server.isRegistered(name)){
+			server.registerMBean(new MXBean(), name);
+		}
+	}
+
+	public static synchronized void unregisterMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(server.isRegistered(name)){
+			server.unregisterMBean(name);
+		}
+	}
+
+	private static final class MXBean implements CustomPropertiesMetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return CustomPropertiesMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			CustomPropertiesMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String,OperationStats> getOperations() {
+			Map<String,OperationStats> operations = new TreeMap<String,OperationStats>();
+			for(OperationStats stats : snapshot().getOperations().values()){
+				operations.put(stats.getOperation(), stats);
+			}
+			return operations;
+		}
+
+		@Override
+		public Map<String,Long> getLockWaitNanosByFile() {
+			return snapshot().getLockWaitNanosByFile();
+		}
+
+		@Override
+		public void reset() {
+			CustomPropertiesMetrics.reset();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.Map;
+
+/**
+ * JMX view of CustomPropertiesMetrics, registered by CustomPropertiesMetrics.registerMBean()
+ */
+public interface CustomPropertiesMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return operation name -> values recorded
+	 */
+	Map<String,OperationStats> getOperations();
+
+	/**
+	 * @return canonical path -> nanoseconds spent waiting for the lock of the file, for the files having waited the most
+	 * @see CustomPropertiesMetrics#setMaxLockWaitFiles(int)
+	 */
+	Map<String,Long> getLockWaitNanosByFile();
+
+	void reset();
+}
@@ -0,0 +1,210 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only copy of a CustomProperties as it was when published, see CustomProperties.publishSnapshot()
+ * <br> never modified once published, so any number of threads can read it without locking, while one thread keeps modifying the CustomProperties
+ * and publishes a new snapshot after each change or batch of changes
+ * <br> the reference content and the strings are shared with the CustomProperties, the content list and the maps are copies
+ */
+public final class CustomPropertiesSnapshot {
+
+	private final CustomProperties content;
+
+	private final long version;
+
+	private final Map<String,String> properties;
+
+	private final List<String> contentList;
+
+	private final Map<String,Integer> duplicatedKeys;
+
+	private final Map<String,Deque<String>> duplicatedValues;
+
+	CustomPropertiesSnapshot(CustomProperties content, long version) {
+		this.content = content;
+		this.version = version;
+		this.properties = content.getPropertiesView();
+		this.contentList = Collections.unmodifiableList(content.getContentList());
+		this.duplicatedKeys = Collections.unmodifiableMap(content.getDuplicatedKeys());
+		this.duplicatedValues = Collections.unmodifiableMap(content.getDuplicatedValues());
+	}
+
+	/**
+	 * @return 1 for the first snapshot published by a CustomProperties, then incremented by each publication
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public File getFile() {
+		return content.getFile();
+	}
+
+	public File getStructureReferenceFile() {
+		return content.getStructureReferenceFile();
+	}
+
+	/**
+	 * @return unmodifiable properties map, in file order
+	 */
+	public Map<String,String> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @return unmodifiable content lines
+	 */
+	public List<String> getContentList() {
+		return contentList;
+	}
+
+	/**
+	 * @return unmodifiable duplicated key -> count
+	 */
+	public Map<String,Integer> getDuplicatedKeys() {
+		return duplicatedKeys;
+	}
+
+	/**
+	 * @return unmodifiable duplicated key -> its values as loaded, the last one first, the deques must not be modified
+	 * @see CustomProperties#getDuplicatedValues()
+	 */
+	public Map<String,Deque<String>> getDuplicatedValues() {
+		return duplicatedValues;
+	}
+
+	public int size() {
+		return content.size();
+	}
+
+	public boolean containsKey(String key) {
+		return content.containsKey(key);
+	}
+
+	public boolean containsValue(String value) {
+		return content.containsValue(value);
+	}
+
+	/**
+	 * @see CustomProperties#getValueByKey(String)
+	 */
+	public String getValueByKey(String key) {
+		return content.getValueByKey(key);
+	}
+
+	/**
+	 * @see CustomProperties#getOccurrenceCount(String)
+	 */
+	public int getOccurrenceCount(String key) {
+		return content.getOccurrenceCount(key);
+	}
+
+	/**
+	 * @see CustomProperties#getOccurrenceValue(String, int)
+	 */
+	public String getOccurrenceValue(String key, int occurrence) {
+		return content.getOccurrenceValue(key, occurrence);
+	}
+
+	/**
+	 * @see CustomProperties#getReferenceValueByKey(String)
+	 */
+	public String getReferenceValueByKey(String key) {
+		return content.getReferenceValueByKey(key);
+	}
+
+	/**
+	 * @see CustomProperties#getKeysByValue(String)
+	 */
+	public List<String> getKeysByValue(String value) {
+		return content.getKeysByValue(value);
+	}
+
+	/**
+	 * @see CustomProperties#getKeysByReferenceValue(String)
+	 */
+	public List<String> getKeysByReferenceValue(String value) {
+		return content.getKeysByReferenceValue(value);
+	}
+
+	/**
+	 * @see CustomProperties#getEmptyKeyList()
+	 */
+	public List<PropertiesDifferent> getEmptyKeyList() {
+		return content.getEmptyKeyList();
+	}
+
+	/**
+	 * @see CustomProperties#findKeysToTranslate()
+	 */
+	public List<PropertiesDifferent> findKeysToTranslate() {
+		return content.findKeysToTranslate();
+	}
+
+	/**
+	 * @see CustomProperties#findBadKeys()
+	 */
+	public List<PropertiesDifferent> findBadKeys() {
+		return content.findBadKeys();
+	}
+
+	/**
+	 * @see CustomProperties#isBadKey(String)
+	 */
+	public boolean isBadKey(String key) {
+		return content.isBadKey(key);
+	}
+
+	/**
+	 * @see CustomProperties#findAllByNameLike(String, boolean)
+	 */
+	public List<PropertiesDifferent> findAllByNameLike(String name, boolean keysToTranslateOnly) {
+		return content.findAllByNameLike(name, keysToTranslateOnly);
+	}
+
+	/**
+	 * @see CustomProperties#findAllByNameLikeAndReferenceValueLike(String, boolean, String)
+	 */
+	public List<PropertiesDifferent> findAllByNameLikeAndReferenceValueLike(String name, boolean keysToTranslateOnly, String valueToSearch) {
+		return content.findAllByNameLikeAndReferenceValueLike(name, keysToTranslateOnly, valueToSearch);
+	}
+
+	/**
+	 * @see CustomProperties#findKeysByNameLike(String)
+	 */
+	public List<String> findKeysByNameLike(String name) {
+		return content.findKeysByNameLike(name);
+	}
+
+	/**
+	 * @see CustomProperties#writeContentAsString()
+	 */
+	public String writeContentAsString() throws IOException {
+		return content.writeContentAsString();
+	}
+
+	/**
+	 * @param channel is not closed
+	 * @see CustomProperties#writeTo(WritableByteChannel)
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		content.writeTo(channel);
+	}
+
+	/**
+	 * @param writer is not flushed nor closed
+	 * @see CustomProperties#writeTo(Writer)
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		content.writeTo(writer);
+	}
+}
@@ -0,0 +1,135 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Write content lines escaped as CustomProperties.escapeUnicode(String) does, straight into a reusable byte buffer
+ * <br> the escaped output is pure ASCII, so the bytes are also the UTF-8 (and ISO-8859-1) encoding of the escaped text
+ * <br> not thread safe, one instance per write
+ */
+final class EscapedContentWriter {
+
+	static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * longest output for one char: \\uXXXX
+	 */
+	private static final int MAX_ESCAPED_CHAR_LENGTH = 6;
+
+	private static final byte[] HEX_DIGITS = {'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'};
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private int position = 0;
+
+	private final WritableByteChannel channel;
+
+	private final Writer writer;
+
+	private char[] chars;
+
+	EscapedContentWriter(WritableByteChannel channel) {
+		this.channel = channel;
+		this.writer = null;
+	}
+
+	EscapedContentWriter(Writer writer) {
+		this.channel = null;
+		this.writer = writer;
+	}
+
+	/**
+	 * write the escaped content followed by \n
+	 * @param content
+	 * @throws IOException
+	 */
+	void writeLine(String content) throws IOException {
+		int length = content.length();
+		for(int i = 0; i < length; i++){
+			if(position > BUFFER_SIZE - MAX_ESCAPED_CHAR_LENGTH){
+				flush();
+			}
+			position = escape(content.charAt(i), buffer, position);
+		}
+		if(position == BUFFER_SIZE){
+			flush();
+		}
+		buffer[position++] = '\n';
+	}
+
+	/**
+	 * write what is left in the buffer, does not flush nor close the underlying channel/writer
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		if(position == 0){
+			return;
+		}
+		if(channel != null){
+			FileSaver.writeFully(channel, ByteBuffer.wrap(buffer, 0, position));
+		}else{
+			if(chars == null){
+				chars = new char[BUFFER_SIZE];
+			}
+			for(int i = 0; i < position; i++){
+				chars[i] = (char) buffer[i];
+			}
+			writer.write(chars, 0, position);
+		}
+		position = 0;
+	}
+
+	/**
+	 * escape one char into the array
+	 * @return the position after the written bytes
+	 */
+	static int escape(char c, byte[] output, int position) {
+		if(c >= 128){
+			output[position++] = '\\';
+			output[position++] = 'u';
+			output[position++] = HEX_DIGITS[(c >> 12) & 0xF];
+			output[position++] = HEX_DIGITS[(c >> 8) & 0xF];
+			output[position++] = HEX_DIGITS[(c >> 4) & 0xF];
+			output[position++] = HEX_DIGITS[c & 0xF];
+		}else if(c == '\n'){
+			position = escapeLineBreak('a', output, position);
+		}else if(c == '\r'){
+			position = escapeLineBreak('d', output, position);
+		}else{
+			output[position++] = (byte) c;
+		}
+		return position;
+	}
+
+	/**
+	 * same as escape(char, byte[], int) into a StringBuilder
+	 */
+	static void escape(char c, StringBuilder output) {
+		if(c >= 128){
+			output.append('\\').append('u')
+			.append((char) HEX_DIGITS[(c >> 12) & 0xF])
+			.append((char) HEX_DIGITS[(c >> 8) & 0xF])
+			.append((char) HEX_DIGITS[(c >> 4) & 0xF])
+			.append((char) HEX_DIGITS[c & 0xF]);
+		}else if(c == '\n'){
+			output.append("\\u000a");
+		}else if(c == '\r'){
+			output.append("\\u000d");
+		}else{
+			output.append(c);
+		}
+	}
+
+	private static int escapeLineBreak(char lastDigit, byte[] output, int position) {
+		output[position++] = '\\';
+		output[position++] = 'u';
+		output[position++] = '0';
+		output[position++] = '0';
+		output[position++] = '0';
+		output[position++] = (byte) lastDigit;
+		return position;
+	}
+}
@@ -0,0 +1,227 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mark CustomProperties stale when their files change, from one background thread shared by the whole JVM
+ * <br> the stale flag of each instance is watched instead of the instance, so that it can be registered while the instance is constructed
+ * <br> flags are only weakly referenced, the flag of a collected instance is forgotten at the next event of its file
+ * <br> events are delivered asynchronously by the WatchService, a change is seen by refresh() once its event is received
+ * <br> files are resolved and directories registered outside of the lock guarding the watched files, which is a ReentrantLock so that virtual threads are not pinned
+ */
+final class FileChangeWatcher {
+
+	private static final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * guarded by lock
+	 */
+	private static WatchService watchService;
+
+	/**
+	 * watched directory -> its key, guarded by lock
+	 */
+	private static final Map<Path,WatchKey> directories = new HashMap<Path,WatchKey>();
+
+	/**
+	 * watched file -> stale flags to set when it changes, guarded by lock
+	 */
+	private static final Map<Path,List<WeakReference<AtomicBoolean>>> watchers = new HashMap<Path,List<WeakReference<AtomicBoolean>>>();
+
+	private FileChangeWatcher() {
+	}
+
+	/**
+	 * set stale whenever one of the files is created, modified or deleted
+	 * @param stale the flag of one CustomProperties, only weakly referenced
+	 * @param files null files are ignored
+	 * @return false if the files can not be watched on this file system
+	 */
+	static boolean watch(AtomicBoolean stale, File... files) {
+		try{
+			for(File file : files){
+				if(file != null){
+					watch(stale, file.getCanonicalFile().toPath());
+				}
+			}
+			return true;
+		}catch(IOException | UnsupportedOperationException e){
+			return false;
+		}
+	}
+
+	private static void watch(AtomicBoolean stale, Path path) throws IOException {
+		Path directory = path.getParent();
+		lock.lock();
+		try{
+			WatchKey watched = directories.get(directory);
+			if(watched != null && watched.isValid()){
+				addFlag(stale, path);
+				return;
+			}
+		}finally{
+			lock.unlock();
+		}
+		WatchService service = service();
+		while(true){
+			//returns the key already registered for this directory if any
+			WatchKey key = directory.register(service,
+					StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			lock.lock();
+			try{
+				//cancelled by forgetDirectory() in the meantime, register it again
+				if(key.isValid()){
+					directories.put(directory, key);
+					addFlag(stale, path);
+					return;
+				}
+			}finally{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the watch service, created with its thread on first use
+	 */
+	private static WatchService service() throws IOException {
+		lock.lock();
+		try{
+			if(watchService != null){
+				return watchService;
+			}
+		}finally{
+			lock.unlock();
+		}
+		WatchService created = FileSystems.getDefault().newWatchService();
+		lock.lock();
+		try{
+			if(watchService != null){
+				//created by another thread meanwhile
+				created.close();
+				return watchService;
+			}
+			watchService = created;
+		}finally{
+			lock.unlock();
+		}
+		Thread thread = new Thread(() -> run(created), "CustomProperties-FileChangeWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		return created;
+	}
+
+	private static void addFlag(AtomicBoolean stale, Path path) {
+		List<WeakReference<AtomicBoolean>> flags = watchers.computeIfAbsent(path, key -> new ArrayList<WeakReference<AtomicBoolean>>(1));
+		for(Iterator<WeakReference<AtomicBoolean>> iterator = flags.iterator(); iterator.hasNext();){
+			AtomicBoolean watching = iterator.next().get();
+			if(watching == stale){
+				return;
+			}
+			if(watching == null){
+				iterator.remove();
+			}
+		}
+		flags.add(new WeakReference<AtomicBoolean>(stale));
+	}
+
+	private static void run(WatchService service) {
+		try{
+			while(true){
+				WatchKey key = service.take();
+				Path directory = (Path) key.watchable();
+				for(WatchEvent<?> event : key.pollEvents()){
+					if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+						markDirectoryStale(directory);
+					}else{
+						markStale(directory.resolve((Path) event.context()));
+					}
+				}
+				if(!key.reset()){
+					//directory deleted or no longer accessible
+					markDirectoryStale(directory);
+					forgetDirectory(directory);
+				}
+			}
+		}catch(InterruptedException | ClosedWatchServiceException e){
+			//the thread is a daemon, nothing to clean
+		}
+	}
+
+	private static void markStale(Path path) {
+		lock.lock();
+		try{
+			List<WeakReference<AtomicBoolean>> flags = watchers.get(path);
+			if(flags == null){
+				return;
+			}
+			for(Iterator<WeakReference<AtomicBoolean>> iterator = flags.iterator(); iterator.hasNext();){
+				AtomicBoolean stale = iterator.next().get();
+				if(stale == null){
+					iterator.remove();
+				}else{
+					stale.set(true);
+				}
+			}
+			if(flags.isEmpty()){
+				watchers.remove(path);
+				if(!isWatched(path.getParent())){
+					forgetDirectory(path.getParent());
+				}
+			}
+		}finally{
+			lock.unlock();
+		}
+	}
+
+	private static void markDirectoryStale(Path directory) {
+		lock.lock();
+		try{
+			for(Path path : new ArrayList<Path>(watchers.keySet())){
+				if(directory.equals(path.getParent())){
+					markStale(path);
+				}
+			}
+		}finally{
+			lock.unlock();
+		}
+	}
+
+	private static boolean isWatched(Path directory) {
+		for(Path path : watchers.keySet()){
+			if(directory.equals(path.getParent())){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void forgetDirectory(Path directory) {
+		lock.lock();
+		try{
+			WatchKey key = directories.remove(directory);
+			if(key != null){
+				key.cancel();
+			}
+			watchers.keySet().removeIf(path -> directory.equals(path.getParent()));
+		}finally{
+			lock.unlock();
+		}
+	}
+}
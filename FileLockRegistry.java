@@ -0,0 +1,115 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write lock per file, shared by the whole JVM, files are identified by their canonical path
+ * <br> locks are fair: readers and writers get the file in arrival order, and are woken up as soon as it is released
+ * <br> an entry only lives while some thread holds or waits for its lock, idle files are evicted on release
+ */
+final class FileLockRegistry {
+
+	private static final class Entry {
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+		/**
+		 * threads holding or waiting for the lock, only changed inside ConcurrentMap.compute
+		 */
+		volatile int users;
+	}
+
+	/**
+	 * a held lock, release it with close()
+	 */
+	static final class Handle implements Closeable {
+
+		private final String path;
+		private final Entry entry;
+		private final Lock lock;
+		private boolean released;
+
+		private Handle(String path, Entry entry, Lock lock) {
+			this.path = path;
+			this.entry = entry;
+			this.lock = lock;
+		}
+
+		@Override
+		public void close() {
+			if(!released){
+				released = true;
+				lock.unlock();
+				leave(path, entry);
+			}
+		}
+	}
+
+	private static final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+
+	private FileLockRegistry() {
+	}
+
+	/**
+	 * block until no thread is writing this file
+	 * @param file
+	 * @return the held lock
+	 * @throws IOException if interrupted while waiting
+	 */
+	static Handle lockForReading(File file) throws IOException {
+		return lock(file, false);
+	}
+
+	/**
+	 * block until no other thread is reading or writing this file
+	 * @param file
+	 * @return the held lock
+	 * @throws IOException if interrupted while waiting
+	 */
+	static Handle lockForWriting(File file) throws IOException {
+		return lock(file, true);
+	}
+
+	/**
+	 * @param file
+	 * @return number of threads holding or waiting for this file's lock, 0 if the file is idle
+	 * @throws IOException
+	 */
+	static int getQueueDepth(File file) throws IOException {
+		Entry entry = entries.get(file.getCanonicalPath());
+		return entry == null ? 0 : entry.users;
+	}
+
+	private static Handle lock(File file, boolean forWriting) throws IOException {
+		String path = file.getCanonicalPath();
+		Entry entry = entries.compute(path, (key, existing) -> {
+			Entry result = existing == null ? new Entry() : existing;
+			result.users++;
+			return result;
+		});
+		Lock lock = forWriting ? entry.lock.writeLock() : entry.lock.readLock();
+		long start = CustomPropertiesMetrics.start();
+		try{
+			lock.lockInterruptibly();
+			CustomPropertiesMetrics.recordLockWait(path, start);
+		}catch(InterruptedException e){
+			leave(path, entry);
+			Thread.currentThread().interrupt();
+			throw new IOException("[CustomProperties] - Interrupted while waiting for file : " + path, e);
+		}
+		return new Handle(path, entry, lock);
+	}
+
+	private static void leave(String path, Entry entry) {
+		entries.computeIfPresent(path, (key, existing) -> {
+			if(existing != entry){
+				return existing;
+			}
+			return --existing.users == 0 ? null : existing;
+		});
+	}
+}
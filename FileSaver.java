@@ -0,0 +1,181 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write the content of a file, in place or atomically
+ * <br> the caller is in charge of the in JVM coordination, see FileLockRegistry
+ */
+final class FileSaver {
+
+	/**
+	 * content to save, written in one go into the channel
+	 */
+	interface Content {
+		void writeTo(WritableByteChannel channel) throws IOException;
+	}
+
+	private static final String LOCK_FILE_SUFFIX = ".lock";
+
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	private FileSaver() {
+	}
+
+	static Content of(String content, Charset charset) {
+		return channel -> writeFully(channel, ByteBuffer.wrap(content.getBytes(charset)));
+	}
+
+	static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * truncate the file then write the content, a reader may see a partial file
+	 * @param file
+	 * @param content
+	 * @throws IOException
+	 */
+	static void saveInPlace(File file, Content content) throws IOException {
+		saveInPlace(file, content, false);
+	}
+
+	/**
+	 * @param timed record SAVE_ESCAPE and SAVE_WRITE when metrics are enabled
+	 * @see saveInPlace(File, Content)
+	 */
+	static void saveInPlace(File file, Content content, boolean timed) throws IOException {
+		try(FileOutputStream output = new FileOutputStream(file, false);
+			FileChannel channel = output.getChannel()){
+			write(channel, content, false, timed);
+		}
+	}
+
+	/**
+	 * write the content in a sibling temp file, force it to disk and move it over the file
+	 * <br> other processes are kept out by an OS lock on the sibling lock file .name.lock
+	 * <br> a reader, in this process or not, sees either the old or the new file, never a partial one
+	 * @param file
+	 * @param content
+	 * @throws IOException
+	 */
+	static void saveAtomically(File file, Content content) throws IOException {
+		saveAtomically(file, content, false);
+	}
+
+	/**
+	 * @param timed record SAVE_ESCAPE and SAVE_WRITE when metrics are enabled
+	 * @see saveAtomically(File, Content)
+	 */
+	@SuppressWarnings("try")
+	static void saveAtomically(File file, Content content, boolean timed) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path directory = target.getParent();
+		String name = target.getFileName().toString();
+		Path lockPath = directory.resolve("." + name + LOCK_FILE_SUFFIX);
+		try(FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock lock = lockChannel.lock()){
+			Path temp = directory.resolve("." + name + "." + System.nanoTime() + TEMP_FILE_SUFFIX);
+			try{
+				try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+					write(channel, content, true, timed);
+				}
+				move(temp, target);
+				forceDirectory(directory);
+			}finally{
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+	/**
+	 * @param force the content to disk once written
+	 * @param timed record the time spent in the channel in SAVE_WRITE, and the rest of the time spent writing the content,
+	 * escaping it mostly, in SAVE_ESCAPE, when metrics are enabled
+	 */
+	private static void write(FileChannel channel, Content content, boolean force, boolean timed) throws IOException {
+		long start = timed ? CustomPropertiesMetrics.start() : CustomPropertiesMetrics.DISABLED;
+		if(start == CustomPropertiesMetrics.DISABLED){
+			content.writeTo(channel);
+			if(force){
+				channel.force(true);
+			}
+			return;
+		}
+		TimedChannel timedChannel = new TimedChannel(channel);
+		content.writeTo(timedChannel);
+		long written = System.nanoTime();
+		if(force){
+			channel.force(true);
+		}
+		long writeNanos = timedChannel.nanos + System.nanoTime() - written;
+		CustomPropertiesMetrics.recordNanos(CustomPropertiesMetrics.Operation.SAVE_ESCAPE, written - start - timedChannel.nanos, 0L, 0L);
+		CustomPropertiesMetrics.recordNanos(CustomPropertiesMetrics.Operation.SAVE_WRITE, writeNanos, 0L, timedChannel.bytes);
+	}
+
+	/**
+	 * count the time spent writing into the underlying channel
+	 */
+	private static final class TimedChannel implements WritableByteChannel {
+		private final WritableByteChannel channel;
+		long nanos;
+		long bytes;
+
+		TimedChannel(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int write(ByteBuffer source) throws IOException {
+			long start = System.nanoTime();
+			int written = channel.write(source);
+			nanos += System.nanoTime() - start;
+			bytes += written;
+			return written;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}catch(AtomicMoveNotSupportedException e){
+			//same directory so should not happen, fall back to a plain replace
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * make the rename durable, not supported on every platform (e.g. Windows) so best effort only
+	 */
+	private static void forceDirectory(Path directory) {
+		try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+			channel.force(true);
+		}catch(IOException e){
+			//the rename is done anyway, only its durability on power loss is not guaranteed
+		}
+	}
+}
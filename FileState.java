@@ -0,0 +1,92 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Modification time, size and CRC32 of a file as it was when loaded, to know if it changed since without parsing it again
+ * <br> the checksum is computed while the file is read for loading, so it costs no extra read
+ */
+final class FileState {
+
+	/**
+	 * a file modified less than this before it was loaded may be modified again with the same modification time (timestamps are coarse),
+	 * its checksum is compared even when modification time and size did not change
+	 */
+	static final long RACY_WINDOW_MILLIS = 2000;
+
+	private volatile long lastModified;
+
+	private final long length;
+
+	private final long checksum;
+
+	private volatile long checkedAt;
+
+	/**
+	 * @param lastModified modification time of the file, taken before reading it
+	 * @param length size of the file, taken before reading it
+	 * @param checksum CRC32 of the bytes read
+	 * @param loadedAt time at which the file was read
+	 */
+	FileState(long lastModified, long length, long checksum, long loadedAt) {
+		this.lastModified = lastModified;
+		this.length = length;
+		this.checksum = checksum;
+		this.checkedAt = loadedAt;
+	}
+
+	/**
+	 * @return size of the file when it was loaded
+	 */
+	long getLength() {
+		return length;
+	}
+
+	/**
+	 * @param file
+	 * @return true if the file has the same content as when it was loaded,
+	 * only modification time and size are checked, unless the modification time changed without the size or the file was written right before being checked
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	boolean isUpToDate(File file) throws IOException {
+		long currentLastModified = file.lastModified();
+		long currentLength = file.length();
+		if(currentLastModified == 0L || currentLength != length){
+			//deleted or resized
+			return false;
+		}
+		if(currentLastModified == lastModified && checkedAt - lastModified >= RACY_WINDOW_MILLIS){
+			return true;
+		}
+		//touched, or maybe rewritten within the same timestamp: compare the content
+		long now = System.currentTimeMillis();
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file)){
+			if(checksum(file) != checksum){
+				return false;
+			}
+		}
+		//any later write gets a newer modification time once the window is over, no need to compare the content again
+		checkedAt = now;
+		lastModified = currentLastModified;
+		return true;
+	}
+
+	static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(EscapedContentWriter.BUFFER_SIZE);
+			while(channel.read(buffer) != -1){
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,747 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Content lines of a properties file, kept in an implicit treap (order statistic tree) with a key index on top of it
+ * <br> get/set/add/remove by line number and lookup of the last line of a key are O(log n), the lines of a key are found in O(1)
+ * <br> the key of every line is computed once with the key function given at construction, and kept with the line
+ * <br> an optional substring index of the keys can be enabled, it is kept up to date by every change of the list
+ * <br> "key=value" lines can be stored as their value only (ValueNode), the line is then built when requested
+ */
+class IndexedContentList extends AbstractList<String> {
+
+	static class Node {
+		String line;
+		String key;
+		final int priority;
+		int size = 1;
+		Node left;
+		Node right;
+		Node parent;
+
+		Node(String line, String key, int priority) {
+			this.line = line;
+			this.key = key;
+			this.priority = priority;
+		}
+
+		String line() {
+			return line;
+		}
+
+		void setLine(String line) {
+			this.line = line;
+		}
+	}
+
+	/**
+	 * a "key=value" line of which only the value is stored, the line is built each time it is requested, until it is set
+	 */
+	static final class ValueNode extends Node {
+		boolean valueOnly = true;
+
+		ValueNode(String value, String key, int priority) {
+			super(value, key, priority);
+		}
+
+		@Override
+		String line() {
+			return valueOnly ? key + CustomProperties.PROPERTIES_SEPARATOR + line : line;
+		}
+
+		@Override
+		void setLine(String line) {
+			this.line = line;
+			this.valueOnly = false;
+		}
+	}
+
+	private final Function<String,String> keyFunction;
+
+	/**
+	 * key -> a single Node, or an ArrayList of Node ordered by line number when the key is duplicated
+	 */
+	private final Map<String,Object> keyIndex = new HashMap<String,Object>();
+
+	/**
+	 * trigrams of the distinct keys, null when not enabled
+	 */
+	private SubstringIndex keySubstrings;
+
+	private Node root;
+
+	private int seed = 0x2545F491;
+
+	/**
+	 * used by split(), to return both parts without allocating
+	 */
+	private Node splitLeft;
+	private Node splitRight;
+
+	IndexedContentList(Function<String,String> keyFunction) {
+		this.keyFunction = keyFunction;
+	}
+
+	IndexedContentList(Function<String,String> keyFunction, Collection<String> lines) {
+		this(keyFunction);
+		rebuild(lines);
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	@Override
+	public String get(int index) {
+		return nodeAt(index).line();
+	}
+
+	@Override
+	public String set(int index, String line) {
+		return set(index, line, keyOf(line));
+	}
+
+	/**
+	 * same as set(int, String), with an already known key
+	 */
+	String set(int index, String line, String key) {
+		Node node = nodeAt(index);
+		String old = node.line();
+		updateNode(node, line, key);
+		return old;
+	}
+
+	@Override
+	public void add(int index, String line) {
+		add(index, line, keyOf(line));
+	}
+
+	/**
+	 * same as add(int, String), with an already known key
+	 */
+	void add(int index, String line, String key) {
+		if(index < 0 || index > size()){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node node = new Node(line, key, nextPriority());
+		split(root, index);
+		Node right = splitRight;
+		root = merge(merge(splitLeft, node), right);
+		root.parent = null;
+		indexAdd(node);
+		modCount++;
+	}
+
+	/**
+	 * append a line with an already known key
+	 */
+	void addLast(String line, String key) {
+		add(size(), line, key);
+	}
+
+	@Override
+	public String remove(int index) {
+		Node node = nodeAt(index);
+		removeNode(node);
+		return node.line();
+	}
+
+	@Override
+	public void clear() {
+		root = null;
+		keyIndex.clear();
+		if(keySubstrings != null){
+			keySubstrings.clear();
+		}
+		modCount++;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Itr();
+	}
+
+	/**
+	 * @param key
+	 * @return the line number of the last line having this key, -1 if there is none
+	 */
+	public int lastIndexOfKey(String key) {
+		Node node = lastNodeOfKey(key);
+		return node == null ? -1 : rank(node);
+	}
+
+	public boolean containsKey(String key) {
+		return keyIndex.containsKey(key);
+	}
+
+	/**
+	 * index the trigrams of every key, now and on every later change, so that keysLike can answer
+	 */
+	void enableSubstringIndex() {
+		if(keySubstrings == null){
+			keySubstrings = new SubstringIndex();
+			for(String key : keyIndex.keySet()){
+				keySubstrings.add(key, key);
+			}
+		}
+	}
+
+	boolean isSubstringIndexEnabled() {
+		return keySubstrings != null;
+	}
+
+	/**
+	 * @param needle
+	 * @return the distinct keys that may contain the needle, ignoring case or not: a superset that callers must still check,
+	 * null if the substring index is not enabled or the needle too short for it
+	 */
+	List<String> keysLike(String needle) {
+		if(keySubstrings == null || !SubstringIndex.canSearch(needle)){
+			return null;
+		}
+		return keySubstrings.candidates(needle);
+	}
+
+	/**
+	 * @param keys
+	 * @return every node having one of these keys, in line order, O(m log n) for m nodes
+	 */
+	List<Node> nodesOfKeys(Collection<String> keys) {
+		List<Node> nodes = new ArrayList<Node>(keys.size());
+		for(String key : keys){
+			Object indexed = keyIndex.get(key);
+			if(indexed instanceof Node){
+				nodes.add((Node) indexed);
+			}else if(indexed != null){
+				nodes.addAll(asNodeList(indexed));
+			}
+		}
+		if(nodes.size() > 1){
+			Map<Node,Integer> ranks = new HashMap<Node,Integer>(nodes.size() * 2);
+			for(Node node : nodes){
+				ranks.put(node, rank(node));
+			}
+			nodes.sort(Comparator.comparing(ranks::get));
+		}
+		return nodes;
+	}
+
+	/**
+	 * insert all lines in O(m + log n), m being the number of lines to insert
+	 */
+	@Override
+	public boolean addAll(int index, Collection<? extends String> lines) {
+		if(index < 0 || index > size()){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if(lines.isEmpty()){
+			return false;
+		}
+		Node inserted = build(lines, null, null, false);
+		split(root, index);
+		Node right = splitRight;
+		root = merge(merge(splitLeft, inserted), right);
+		root.parent = null;
+		Node node = nodeAt(index);
+		for(int i = 0; i < lines.size(); i++, node = next(node)){
+			indexAdd(node);
+		}
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * replace the whole content in O(n)
+	 * @param lines
+	 */
+	void rebuild(Collection<String> lines) {
+		clear();
+		root = build(lines, null, null, true);
+	}
+
+	/**
+	 * replace the whole content in O(n), with already known keys
+	 * @param lines
+	 * @param keys the key of each line, in the same order
+	 */
+	void rebuild(Collection<String> lines, Iterator<String> keys) {
+		rebuild(lines, keys, null);
+	}
+
+	/**
+	 * replace the whole content in O(n), with already known keys, some lines being given by their value only
+	 * @param lines
+	 * @param keys the key of each line, in the same order
+	 * @param valueOnly line numbers of the lines given as a value, the line is then key=value, null if there is none
+	 */
+	void rebuild(Collection<String> lines, Iterator<String> keys, BitSet valueOnly) {
+		clear();
+		root = build(lines, keys, valueOnly, true);
+	}
+
+	/**
+	 * @return a new list with the same lines and keys in O(n), sharing the strings, lines given by their value staying so,
+	 * with a substring index if this list has one
+	 */
+	IndexedContentList copy() {
+		IndexedContentList copy = new IndexedContentList(keyFunction);
+		copyNodes(copy, node -> true);
+		if(keySubstrings != null){
+			copy.enableSubstringIndex();
+		}
+		return copy;
+	}
+
+	/**
+	 * remove every node refused by the filter, rebuilding the list in O(n) instead of one O(log n) remove per node
+	 * @param filter called once per node, in line order, before any node is removed
+	 * @return the number of removed nodes
+	 */
+	int retainNodes(Predicate<Node> filter) {
+		return copyNodes(this, filter);
+	}
+
+	/**
+	 * rebuild target with the lines and keys of the nodes of this list accepted by filter, lines given by their value staying so
+	 * @return the number of refused nodes
+	 */
+	private int copyNodes(IndexedContentList target, Predicate<Node> filter) {
+		List<String> lines = new ArrayList<String>(size());
+		List<String> keys = new ArrayList<String>(size());
+		BitSet valueOnly = null;
+		int refused = 0;
+		for(Node node : nodes()){
+			if(!filter.test(node)){
+				refused++;
+				continue;
+			}
+			if(node instanceof ValueNode && ((ValueNode) node).valueOnly){
+				if(valueOnly == null){
+					valueOnly = new BitSet(size());
+				}
+				valueOnly.set(lines.size());
+			}
+			lines.add(node.line);
+			keys.add(node.key);
+		}
+		target.rebuild(lines, keys.iterator(), valueOnly);
+		return refused;
+	}
+
+	/**
+	 * build a treap from lines in O(m), with a stack instead of one insert per line
+	 * @param lines
+	 * @param keys the key of each line, null to compute them
+	 * @param valueOnly line numbers of the lines given as a value, null if there is none
+	 * @param indexNodes index each node's key on the way, only valid when the built tree is the whole list
+	 * @return the root
+	 */
+	private Node build(Collection<? extends String> lines, Iterator<String> keys, BitSet valueOnly, boolean indexNodes) {
+		Node[] stack = new Node[32];
+		int top = -1;
+		int lineNumber = 0;
+		for(String line : lines){
+			String key = keys == null ? keyOf(line) : keys.next();
+			Node node = valueOnly != null && valueOnly.get(lineNumber++) ? new ValueNode(line, key, nextPriority()) : new Node(line, key, nextPriority());
+			Node last = null;
+			while(top >= 0 && stack[top].priority < node.priority){
+				last = stack[top--];
+				update(last);
+			}
+			node.left = last;
+			if(last != null){
+				last.parent = node;
+			}
+			if(top >= 0){
+				stack[top].right = node;
+				node.parent = stack[top];
+			}
+			if(++top == stack.length){
+				Node[] bigger = new Node[stack.length * 2];
+				System.arraycopy(stack, 0, bigger, 0, stack.length);
+				stack = bigger;
+			}
+			stack[top] = node;
+			if(indexNodes){
+				indexAppend(node);
+			}
+		}
+		while(top >= 0){
+			update(stack[top--]);
+		}
+		Node built = stack[0];
+		if(built != null){
+			built.parent = null;
+		}
+		return built;
+	}
+
+	/**
+	 * @param key
+	 * @return the number of lines having this key, O(1)
+	 */
+	int countOfKey(String key) {
+		Object indexed = keyIndex.get(key);
+		if(indexed == null){
+			return 0;
+		}
+		return indexed instanceof Node ? 1 : asNodeList(indexed).size();
+	}
+
+	/**
+	 * @param key
+	 * @return the nodes of the lines having this key, in line order, an empty list if there is none, O(1), not to be modified
+	 */
+	List<Node> nodesOfKey(String key) {
+		Object indexed = keyIndex.get(key);
+		if(indexed == null){
+			return Collections.emptyList();
+		}
+		return indexed instanceof Node ? Collections.singletonList((Node) indexed) : Collections.unmodifiableList(asNodeList(indexed));
+	}
+
+	Node lastNodeOfKey(String key) {
+		Object indexed = keyIndex.get(key);
+		if(indexed == null){
+			return null;
+		}
+		if(indexed instanceof Node){
+			return (Node) indexed;
+		}
+		List<Node> nodes = asNodeList(indexed);
+		return nodes.get(nodes.size() - 1);
+	}
+
+	/**
+	 * @param node
+	 * @return the line number of this node
+	 */
+	int rank(Node node) {
+		int rank = size(node.left);
+		for(Node current = node; current.parent != null; current = current.parent){
+			if(current == current.parent.right){
+				rank += size(current.parent.left) + 1;
+			}
+		}
+		return rank;
+	}
+
+	void updateNode(Node node, String line, String key) {
+		node.setLine(line);
+		if(key == null ? node.key != null : !key.equals(node.key)){
+			indexRemove(node);
+			node.key = key;
+			indexAdd(node);
+		}
+	}
+
+	private String keyOf(String line) {
+		return line == null ? null : keyFunction.apply(line);
+	}
+
+	private Node nodeAt(int index) {
+		if(index < 0 || index >= size()){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node current = root;
+		while(true){
+			int leftSize = size(current.left);
+			if(index < leftSize){
+				current = current.left;
+			}else if(index == leftSize){
+				return current;
+			}else{
+				index -= leftSize + 1;
+				current = current.right;
+			}
+		}
+	}
+
+	private void removeNode(Node node) {
+		Node merged = merge(node.left, node.right);
+		Node parent = node.parent;
+		if(merged != null){
+			merged.parent = parent;
+		}
+		if(parent == null){
+			root = merged;
+		}else if(parent.left == node){
+			parent.left = merged;
+		}else{
+			parent.right = merged;
+		}
+		for(Node current = parent; current != null; current = current.parent){
+			current.size--;
+		}
+		node.left = node.right = node.parent = null;
+		indexRemove(node);
+		modCount++;
+	}
+
+	private Node merge(Node left, Node right) {
+		if(left == null){
+			return right;
+		}
+		if(right == null){
+			return left;
+		}
+		if(left.priority > right.priority){
+			left.right = merge(left.right, right);
+			left.right.parent = left;
+			update(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		right.left.parent = right;
+		update(right);
+		return right;
+	}
+
+	/**
+	 * split the tree, the first count nodes go to splitLeft and the others to splitRight
+	 */
+	private void split(Node tree, int count) {
+		if(tree == null){
+			splitLeft = splitRight = null;
+			return;
+		}
+		if(size(tree.left) < count){
+			split(tree.right, count - size(tree.left) - 1);
+			tree.right = splitLeft;
+			if(splitLeft != null){
+				splitLeft.parent = tree;
+			}
+			update(tree);
+			tree.parent = null;
+			splitLeft = tree;
+		}else{
+			split(tree.left, count);
+			tree.left = splitRight;
+			if(splitRight != null){
+				splitRight.parent = tree;
+			}
+			update(tree);
+			tree.parent = null;
+			splitRight = tree;
+		}
+	}
+
+	private void indexAdd(Node node) {
+		Object indexed = keyIndex.get(node.key);
+		if(indexed == null){
+			keyIndex.put(node.key, node);
+			if(keySubstrings != null){
+				keySubstrings.add(node.key, node.key);
+			}
+			return;
+		}
+		List<Node> nodes;
+		if(indexed instanceof Node){
+			nodes = new ArrayList<Node>(2);
+			nodes.add((Node) indexed);
+			keyIndex.put(node.key, nodes);
+		}else{
+			nodes = asNodeList(indexed);
+		}
+		//keep the occurrences in line order, appending is the common case
+		int rank = rank(node);
+		int low = 0;
+		int high = nodes.size();
+		if(rank(nodes.get(high - 1)) < rank){
+			low = high;
+		}
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(rank(nodes.get(middle)) < rank){
+				low = middle + 1;
+			}else{
+				high = middle;
+			}
+		}
+		nodes.add(low, node);
+	}
+
+	/**
+	 * used by rebuild() where nodes always come in line order
+	 */
+	private void indexAppend(Node node) {
+		Object indexed = keyIndex.get(node.key);
+		if(indexed == null){
+			keyIndex.put(node.key, node);
+			if(keySubstrings != null){
+				keySubstrings.add(node.key, node.key);
+			}
+		}else if(indexed instanceof Node){
+			List<Node> nodes = new ArrayList<Node>(2);
+			nodes.add((Node) indexed);
+			nodes.add(node);
+			keyIndex.put(node.key, nodes);
+		}else{
+			asNodeList(indexed).add(node);
+		}
+	}
+
+	private void indexRemove(Node node) {
+		Object indexed = keyIndex.get(node.key);
+		if(indexed == node){
+			keyIndex.remove(node.key);
+			if(keySubstrings != null){
+				keySubstrings.remove(node.key);
+			}
+		}else if(indexed != null && !(indexed instanceof Node)){
+			List<Node> nodes = asNodeList(indexed);
+			for(int i = 0; i < nodes.size(); i++){
+				if(nodes.get(i) == node){
+					nodes.remove(i);
+					break;
+				}
+			}
+			if(nodes.size() == 1){
+				keyIndex.put(node.key, nodes.get(0));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Node> asNodeList(Object indexed) {
+		return (List<Node>) indexed;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static void update(Node node) {
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	static Node first(Node node) {
+		if(node != null){
+			while(node.left != null){
+				node = node.left;
+			}
+		}
+		return node;
+	}
+
+	static Node next(Node node) {
+		if(node.right != null){
+			return first(node.right);
+		}
+		while(node.parent != null && node == node.parent.right){
+			node = node.parent;
+		}
+		return node.parent;
+	}
+
+	static Node previous(Node node) {
+		if(node.left != null){
+			node = node.left;
+			while(node.right != null){
+				node = node.right;
+			}
+			return node;
+		}
+		while(node.parent != null && node == node.parent.left){
+			node = node.parent;
+		}
+		return node.parent;
+	}
+
+	Node firstNode() {
+		return first(root);
+	}
+
+	private int nextPriority() {
+		//xorshift, good enough to keep the treap balanced
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	/**
+	 * @return the nodes in line order, the list must not be modified while walking them
+	 */
+	Iterable<Node> nodes() {
+		return () -> new Iterator<Node>() {
+
+			private Node next = first(root);
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Node next() {
+				if(modCount != expectedModCount){
+					throw new ConcurrentModificationException();
+				}
+				if(next == null){
+					throw new NoSuchElementException();
+				}
+				Node node = next;
+				next = IndexedContentList.next(next);
+				return node;
+			}
+		};
+	}
+
+	/**
+	 * in order walk, O(1) amortized per line
+	 */
+	private class Itr implements Iterator<String> {
+
+		private Node next = first(root);
+		private Node lastReturned;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public String next() {
+			if(modCount != expectedModCount){
+				throw new ConcurrentModificationException();
+			}
+			if(next == null){
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = IndexedContentList.next(next);
+			return lastReturned.line();
+		}
+
+		@Override
+		public void remove() {
+			if(lastReturned == null){
+				throw new IllegalStateException();
+			}
+			if(modCount != expectedModCount){
+				throw new ConcurrentModificationException();
+			}
+			removeNode(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+	}
+}
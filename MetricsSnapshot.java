@@ -0,0 +1,63 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.Map;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomPropertiesMetrics.Operation;
+
+/**
+ * Values of CustomPropertiesMetrics at a given time, see CustomPropertiesMetrics.snapshot()
+ */
+public final class MetricsSnapshot {
+
+	private final long timestamp;
+
+	private final Map<Operation,OperationStats> operations;
+
+	private final Map<String,Long> lockWaitNanosByFile;
+
+	MetricsSnapshot(long timestamp, Map<Operation,OperationStats> operations, Map<String,Long> lockWaitNanosByFile) {
+		this.timestamp = timestamp;
+		this.operations = operations;
+		this.lockWaitNanosByFile = lockWaitNanosByFile;
+	}
+
+	/**
+	 * @return when the snapshot was taken, in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return unmodifiable map with every operation, recorded or not
+	 */
+	public Map<Operation,OperationStats> getOperations() {
+		return operations;
+	}
+
+	public OperationStats get(Operation operation) {
+		return operations.get(operation);
+	}
+
+	/**
+	 * @return unmodifiable map canonical path -> nanoseconds spent waiting for the lock of the file, sorted by path,
+	 * for the files having waited the most, see CustomPropertiesMetrics.setMaxLockWaitFiles(int)
+	 */
+	public Map<String,Long> getLockWaitNanosByFile() {
+		return lockWaitNanosByFile;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for(OperationStats stats : operations.values()){
+			if(stats.getCount() > 0){
+				builder.append(stats).append('\n');
+			}
+		}
+		for(Map.Entry<String,Long> lockWait : lockWaitNanosByFile.entrySet()){
+			builder.append("lock wait ").append(lockWait.getKey()).append(" ").append(lockWait.getValue() / 1000).append("us\n");
+		}
+		return builder.toString();
+	}
+}
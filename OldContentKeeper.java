@@ -0,0 +1,326 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Give its old content to every loaded CustomProperties of a file right before this JVM overwrites it
+ * <br> the old content is only read from the file when first requested, a save would otherwise make it unavailable:
+ * right before it, the file is linked (SaveMode.ATOMIC) or copied (SaveMode.IN_PLACE) into temp/filename.nanos.old,
+ * read only when requested and deleted once every instance needing it read it or was collected
+ * <br> the OldContent of each instance is registered instead of the instance, so that it can be registered while the instance is constructed
+ * <br> they are only weakly referenced, and forgotten once their file was saved or once collected
+ */
+final class OldContentKeeper {
+
+	private static final String COPY_SUFFIX = ".old";
+
+	/**
+	 * canonical path -> registrations of the instances loaded from it and not saved since, guarded by the class lock
+	 */
+	private static final Map<String,List<Registration>> loaded = new HashMap<String,List<Registration>>();
+
+	/**
+	 * registrations holding a copy, kept reachable so that the copy is released once their OldContent is collected, guarded by the class lock
+	 */
+	private static final Set<Registration> holding = new HashSet<Registration>();
+
+	/**
+	 * registrations of the collected old contents, drained by register() and beforeSave()
+	 */
+	private static final ReferenceQueue<OldContent> collected = new ReferenceQueue<OldContent>();
+
+	/**
+	 * the content of a file as loaded by one CustomProperties, null until requested
+	 */
+	static final class OldContent {
+
+		private final File file;
+		private final FileState state;
+		private volatile StringBuilder content;
+
+		/**
+		 * null when not registered, guarded by the class lock
+		 */
+		private Registration registration;
+
+		/**
+		 * @param file
+		 * @param state of file when loaded
+		 */
+		OldContent(File file, FileState state) {
+			this.file = file;
+			this.state = state;
+		}
+
+		/**
+		 * @return the content, read from the file or from its copy when first requested
+		 * @throws UncheckedIOException if the file cannot be read, or was changed by another process since loaded so its old content is lost
+		 */
+		StringBuilder get() {
+			StringBuilder read = content;
+			if(read == null){
+				synchronized(this){
+					read = content;
+					if(read == null){
+						content = read = load();
+					}
+				}
+			}
+			return read;
+		}
+
+		void set(StringBuilder content) {
+			this.content = content;
+			release(this);
+		}
+
+		/**
+		 * @return true if the content was not read yet and the file is still as loaded
+		 * @throws IOException
+		 */
+		private boolean isNeeded() throws IOException {
+			return content == null && state.isUpToDate(file);
+		}
+
+		private StringBuilder load() {
+			Copy copy = copyOf(this);
+			if(copy == null){
+				try{
+					return read();
+				}catch(UncheckedIOException e){
+					//copied by a save that overwrote the file in the meantime
+					copy = copyOf(this);
+					if(copy == null){
+						throw e;
+					}
+				}
+			}
+			try{
+				return copy.read(state);
+			}finally{
+				release(this);
+			}
+		}
+
+		/**
+		 * @return the lines of the file as loaded, each followed by \n
+		 */
+		@SuppressWarnings("try")
+		private StringBuilder read() {
+			try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file)){
+				if(!state.isUpToDate(file)){
+					throw new IOException("[CustomProperties] - file changed since loaded, old content no longer available : " + file.getAbsolutePath());
+				}
+				return OldContentKeeper.read(file, state);
+			}catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * weak reference to a registered OldContent, enqueued in collected once it is collected
+	 */
+	private static final class Registration extends WeakReference<OldContent> {
+
+		final String path;
+
+		/**
+		 * the file as it was before being saved, null until saved and once read, guarded by the class lock
+		 */
+		Copy copy;
+
+		Registration(OldContent oldContent, String path) {
+			super(oldContent, collected);
+			this.path = path;
+		}
+	}
+
+	/**
+	 * a file as it was right before a save, shared by the instances which did not read it yet
+	 */
+	private static final class Copy {
+
+		final File file;
+
+		/**
+		 * registrations holding this copy, deleted when none is left, guarded by the class lock
+		 */
+		int holders;
+
+		Copy(File file) {
+			this.file = file;
+		}
+
+		/**
+		 * @param state of the file when the copy was made
+		 * @return the lines of the copy, each followed by \n
+		 * @throws UncheckedIOException
+		 */
+		StringBuilder read(FileState state) {
+			try{
+				return OldContentKeeper.read(file, state);
+			}catch(IOException e){
+				throw new UncheckedIOException(new IOException("[CustomProperties] - old content no longer available : " + file.getAbsolutePath(), e));
+			}
+		}
+
+		/**
+		 * link the file when SaveMode.ATOMIC replaces it by a rename, copy it otherwise or if it can not be linked
+		 * @param source to save
+		 * @param saveMode
+		 * @return the copy
+		 * @throws IOException
+		 */
+		static Copy of(File source, CustomProperties.SaveMode saveMode) throws IOException {
+			File parent = new File(CustomProperties.getTempParentFolder(source));
+			if(!parent.exists()){
+				parent.mkdirs();
+			}
+			Path copy = new File(parent, source.getName() + "." + System.nanoTime() + COPY_SUFFIX).toPath();
+			if(saveMode == CustomProperties.SaveMode.ATOMIC){
+				try{
+					Files.createLink(copy, source.toPath());
+					return new Copy(copy.toFile());
+				}catch(UnsupportedOperationException | FileSystemException e){
+					//hard links not supported here, copy it instead
+				}
+			}
+			Files.copy(source.toPath(), copy);
+			return new Copy(copy.toFile());
+		}
+	}
+
+	private OldContentKeeper() {
+	}
+
+	private static StringBuilder read(File file, FileState state) throws IOException {
+		StringBuilder read = new StringBuilder((int) Math.min(state.getLength(), Integer.MAX_VALUE - 8));
+		ByteLineReader.read(file, (bytes, start, end) -> read.append(PropertiesLineParser.line(bytes, start, end)).append("\n"));
+		return read;
+	}
+
+	/**
+	 * @param oldContent of an instance just loaded from its file
+	 * @throws IOException if the path of the file can not be resolved
+	 */
+	static void register(OldContent oldContent) throws IOException {
+		String path = oldContent.file.getCanonicalPath();
+		synchronized(OldContentKeeper.class){
+			forgetCollected();
+			Registration registration = new Registration(oldContent, path);
+			oldContent.registration = registration;
+			loaded.computeIfAbsent(path, key -> new ArrayList<Registration>(1)).add(registration);
+		}
+	}
+
+	/**
+	 * keep the file on disk for the instances loaded from it which did not read it yet, to be called with the write lock of file, right before overwriting it
+	 * <br> best effort, never fails the save: if another process changed the file, or it can not be copied,
+	 * the old content is lost as it would be without this save
+	 * @param file
+	 * @param saveMode the file is about to be saved with
+	 * @throws IOException if the path of file can not be resolved
+	 */
+	static void beforeSave(File file, CustomProperties.SaveMode saveMode) throws IOException {
+		String path = file.getCanonicalPath();
+		List<Registration> registrations;
+		synchronized(OldContentKeeper.class){
+			forgetCollected();
+			registrations = loaded.remove(path);
+		}
+		if(registrations == null){
+			return;
+		}
+		try{
+			List<Registration> needing = new ArrayList<Registration>(registrations.size());
+			for(Registration registration : registrations){
+				OldContent oldContent = registration.get();
+				if(oldContent != null && oldContent.isNeeded()){
+					needing.add(registration);
+				}
+			}
+			if(needing.isEmpty()){
+				return;
+			}
+			Copy copy = Copy.of(file, saveMode);
+			synchronized(OldContentKeeper.class){
+				for(Registration registration : needing){
+					if(registration.get() != null){
+						registration.copy = copy;
+						copy.holders++;
+						holding.add(registration);
+					}
+				}
+				if(copy.holders == 0){
+					delete(copy);
+				}
+			}
+		}catch(IOException | UncheckedIOException e){
+			//the file is not the one these instances loaded anymore, getOldContent() reports it
+		}
+	}
+
+	/**
+	 * @return the copy kept for oldContent, null if none
+	 */
+	private static synchronized Copy copyOf(OldContent oldContent) {
+		return oldContent.registration == null ? null : oldContent.registration.copy;
+	}
+
+	/**
+	 * the copy kept for oldContent is not needed anymore
+	 */
+	private static synchronized void release(OldContent oldContent) {
+		if(oldContent.registration != null){
+			release(oldContent.registration);
+		}
+	}
+
+	private static void release(Registration registration) {
+		Copy copy = registration.copy;
+		if(copy != null){
+			registration.copy = null;
+			holding.remove(registration);
+			if(--copy.holders == 0){
+				delete(copy);
+			}
+		}
+	}
+
+	private static void delete(Copy copy) {
+		if(!copy.file.delete() && copy.file.exists()){
+			//left in the temp folder, as old versions are
+			copy.file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * drop the registrations of the collected old contents, and the paths left without registration, with the class lock
+	 */
+	private static void forgetCollected() {
+		Reference<? extends OldContent> reference;
+		while((reference = collected.poll()) != null){
+			Registration registration = (Registration) reference;
+			List<Registration> registrations = loaded.get(registration.path);
+			if(registrations != null && registrations.remove(registration) && registrations.isEmpty()){
+				loaded.remove(registration.path);
+			}
+			release(registration);
+		}
+	}
+}
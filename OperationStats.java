@@ -0,0 +1,143 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.beans.ConstructorProperties;
+import java.util.Arrays;
+
+/**
+ * Values recorded for one CustomPropertiesMetrics.Operation, immutable
+ * <br> percentiles come from a log2 histogram: they are upper bounds, at most twice the real value
+ */
+public final class OperationStats {
+
+	private final String operation;
+
+	private final long count;
+
+	private final long totalNanos;
+
+	private final long maxNanos;
+
+	private final long lines;
+
+	private final long bytes;
+
+	private final long[] histogram;
+
+	@ConstructorProperties({"operation", "count", "totalNanos", "maxNanos", "lines", "bytes", "histogram"})
+	public OperationStats(String operation, long count, long totalNanos, long maxNanos, long lines, long bytes, long[] histogram) {
+		this.operation = operation;
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.lines = lines;
+		this.bytes = bytes;
+		this.histogram = histogram.clone();
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMeanNanos() {
+		return count == 0 ? 0L : totalNanos / count;
+	}
+
+	/**
+	 * @return lines processed by all the calls
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return bytes processed by all the calls
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return lines processed per second of the calls, 0 if nothing recorded
+	 */
+	public double getLinesPerSecond() {
+		return totalNanos == 0 ? 0d : lines * 1e9d / totalNanos;
+	}
+
+	public double getBytesPerSecond() {
+		return totalNanos == 0 ? 0d : bytes * 1e9d / totalNanos;
+	}
+
+	public long getP50Nanos() {
+		return percentile(0.50d);
+	}
+
+	public long getP99Nanos() {
+		return percentile(0.99d);
+	}
+
+	/**
+	 * @return count of calls per bucket, bucket i for durations in [2^(i-1), 2^i) nanoseconds
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+
+	/**
+	 * @param fraction between 0 and 1
+	 * @return upper bound of the bucket holding the percentile, capped by the max
+	 */
+	public long percentile(double fraction) {
+		long total = 0L;
+		for(long bucket : histogram){
+			total += bucket;
+		}
+		if(total == 0L){
+			return 0L;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(total * fraction));
+		long seen = 0L;
+		for(int i = 0; i < histogram.length; i++){
+			seen += histogram[i];
+			if(seen >= rank){
+				return i == 0 ? 0L : Math.min(maxNanos, i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+			}
+		}
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return operation + "[count=" + count + ", mean=" + getMeanNanos() / 1000 + "us, p50=" + getP50Nanos() / 1000 + "us, p99=" + getP99Nanos() / 1000
+				+ "us, max=" + maxNanos / 1000 + "us, lines=" + lines + ", bytes=" + bytes + "]";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj){
+			return true;
+		}
+		if(!(obj instanceof OperationStats)){
+			return false;
+		}
+		OperationStats other = (OperationStats) obj;
+		return operation.equals(other.operation) && count == other.count && totalNanos == other.totalNanos && maxNanos == other.maxNanos
+				&& lines == other.lines && bytes == other.bytes && Arrays.equals(histogram, other.histogram);
+	}
+
+	@Override
+	public int hashCode() {
+		return operation.hashCode() * 31 + Long.hashCode(count);
+	}
+}
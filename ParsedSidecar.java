@@ -0,0 +1,230 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Pre-parsed copy of a properties file, kept next to it in temp/filename.parsed, used by LoadMode.PARSED
+ * <br> holds the unescaped lines with the offset of their separator, so loading does not decode nor unescape the file again
+ * <br> valid while the file has the modification time, size and CRC32 it had when the copy was written, checked as FileState.isUpToDate does,
+ * rewritten from the file when it is not
+ * <br> read whole into the heap, not memory mapped: a mapping outlives the read until it is garbage collected, and would keep the copy from being replaced on Windows
+ * <br> a copy that can not be written is counted in CustomPropertiesMetrics as PARSED_WRITE_FAILURE, the file is loaded anyway
+ * <br> a copy that does not match its own CRC32, e.g. damaged on disk, is ignored and rewritten like an outdated one
+ */
+final class ParsedSidecar {
+
+	static final String EXTENSION = ".parsed";
+
+	/**
+	 * "CPPF" followed by the format version
+	 */
+	private static final int MAGIC = 0x43505046;
+	private static final byte FORMAT = 2;
+
+	/**
+	 * magic, format, last modified, length, checksum, read at, line count, payload length
+	 */
+	private static final int HEADER_LENGTH = 49;
+
+	/**
+	 * CRC32 of the header and the lines, after them
+	 */
+	private static final int TRAILER_LENGTH = 8;
+
+	/**
+	 * line stored as one byte per char, all its chars being ISO-8859-1, else as two bytes per char so that any String is kept as is
+	 */
+	private static final byte LATIN1 = 1;
+	private static final byte UTF16 = 2;
+
+	/**
+	 * receive each line of the file
+	 */
+	interface LineHandler {
+		/**
+		 * @param line unescaped
+		 * @param separatorIndex as given by PropertiesLineParser.separatorIndex(String)
+		 */
+		void onLine(String line, int separatorIndex);
+	}
+
+	private ParsedSidecar() {
+	}
+
+	static File sidecarOf(File file) {
+		return new File(CustomProperties.getTempParentFolder(file), file.getName() + EXTENSION);
+	}
+
+	/**
+	 * give every line of the file to the handler, from its sidecar when it is up to date, else parsed as LoadMode.NIO does and written to the sidecar
+	 * <br> waits for any thread writing the file
+	 * @param file
+	 * @param handler
+	 * @return the state of the file the lines come from
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	static FileState read(File file, LineHandler handler) throws IOException {
+		File sidecar = sidecarOf(file);
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file)){
+			FileState state = readSidecar(file, sidecar, handler);
+			if(state != null){
+				return state;
+			}
+			long lastModified = file.lastModified();
+			long length = file.length();
+			long readAt = System.currentTimeMillis();
+			CRC32 checksum = new CRC32();
+			List<String> lines = new ArrayList<String>();
+			ByteLineReader.read(file, (bytes, start, end) -> lines.add(PropertiesLineParser.line(bytes, start, end)), checksum);
+			int[] separatorIndexes = new int[lines.size()];
+			for(int i = 0; i < separatorIndexes.length; i++){
+				separatorIndexes[i] = PropertiesLineParser.separatorIndex(lines.get(i));
+				handler.onLine(lines.get(i), separatorIndexes[i]);
+			}
+			write(sidecar, lastModified, length, checksum.getValue(), readAt, lines, separatorIndexes);
+			return new FileState(lastModified, length, checksum.getValue(), readAt);
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - Error while reading parsed file : " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return the state of the file recorded in the sidecar, null if there is no up to date and intact sidecar, without calling the handler
+	 */
+	@SuppressWarnings("try")
+	private static FileState readSidecar(File file, File sidecar, LineHandler handler) throws IOException {
+		if(!sidecar.isFile()){
+			return null;
+		}
+		ByteBuffer buffer;
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(sidecar);
+			FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)){
+			long size = channel.size();
+			if(size < HEADER_LENGTH + TRAILER_LENGTH || size > Integer.MAX_VALUE){
+				return null;
+			}
+			//read whole, in the heap: the copy is closed once read
+			buffer = ByteBuffer.allocate((int) size);
+			while(buffer.hasRemaining() && channel.read(buffer) != -1){
+				//until full
+			}
+			buffer.flip();
+		}
+		if(buffer.getInt() != MAGIC || buffer.get() != FORMAT){
+			return null;
+		}
+		FileState state = new FileState(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+		int lineCount = buffer.getInt();
+		int payloadLength = buffer.limit() - HEADER_LENGTH - TRAILER_LENGTH;
+		if(buffer.getLong() != payloadLength || !state.isUpToDate(file)){
+			return null;
+		}
+		CRC32 sidecarChecksum = new CRC32();
+		sidecarChecksum.update(buffer.array(), 0, HEADER_LENGTH + payloadLength);
+		if(buffer.getLong(HEADER_LENGTH + payloadLength) != sidecarChecksum.getValue()){
+			return null;
+		}
+		byte[] bytes = new byte[256];
+		char[] chars = new char[256];
+		try{
+			for(int i = 0; i < lineCount; i++){
+				byte encoding = buffer.get();
+				int separatorIndex = buffer.getInt();
+				int length = buffer.getInt();
+				String line;
+				if(encoding == LATIN1){
+					if(length > bytes.length){
+						bytes = new byte[Math.max(length, bytes.length * 2)];
+					}
+					buffer.get(bytes, 0, length);
+					line = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+				}else{
+					if(length > chars.length){
+						chars = new char[Math.max(length, chars.length * 2)];
+					}
+					buffer.asCharBuffer().get(chars, 0, length);
+					buffer.position(buffer.position() + length * 2);
+					line = new String(chars, 0, length);
+				}
+				handler.onLine(line, separatorIndex);
+			}
+		}catch(BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+			throw new IOException("[CustomProperties] - corrupted parsed file : " + sidecar.getAbsolutePath(), e);
+		}
+		return state;
+	}
+
+	/**
+	 * write the sidecar atomically, best effort: the file is loaded anyway, a sidecar that can not be written is counted as PARSED_WRITE_FAILURE
+	 * and rebuilt by the next load
+	 */
+	@SuppressWarnings("try")
+	private static void write(File sidecar, long lastModified, long length, long checksum, long readAt, List<String> lines, int[] separatorIndexes) {
+		File parent = sidecar.getParentFile();
+		if(parent != null && !parent.exists()){
+			parent.mkdirs();
+		}
+		long start = CustomPropertiesMetrics.start();
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(sidecar)){
+			FileSaver.saveAtomically(sidecar, channel -> {
+				long payloadLength = 0;
+				for(String line : lines){
+					payloadLength += 9 + (isLatin1(line) ? line.length() : line.length() * 2);
+				}
+				CRC32 sidecarChecksum = new CRC32();
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						new CheckedOutputStream(Channels.newOutputStream(channel), sidecarChecksum), EscapedContentWriter.BUFFER_SIZE));
+				out.writeInt(MAGIC);
+				out.writeByte(FORMAT);
+				out.writeLong(lastModified);
+				out.writeLong(length);
+				out.writeLong(checksum);
+				out.writeLong(readAt);
+				out.writeInt(lines.size());
+				out.writeLong(payloadLength);
+				for(int i = 0; i < separatorIndexes.length; i++){
+					String line = lines.get(i);
+					boolean latin1 = isLatin1(line);
+					out.writeByte(latin1 ? LATIN1 : UTF16);
+					out.writeInt(separatorIndexes[i]);
+					out.writeInt(line.length());
+					if(latin1){
+						out.writeBytes(line);
+					}else{
+						out.writeChars(line);
+					}
+				}
+				//checksum of every byte written before it
+				out.flush();
+				out.writeLong(sidecarChecksum.getValue());
+				out.flush();
+			});
+		}catch(IOException e){
+			//e.g. read only directory, the file is parsed again next time
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.PARSED_WRITE_FAILURE, start, lines.size(), length);
+		}
+	}
+
+	private static boolean isLatin1(String line) {
+		for(int i = 0; i < line.length(); i++){
+			if(line.charAt(i) > 0xff){
+				return false;
+			}
+		}
+		return true;
+	}
+}
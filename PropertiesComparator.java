@@ -0,0 +1,234 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compare a properties file with its reference file while reading both, line by line, without loading either of them
+ * <br> keys found in the same order in both files are compared as soon as they are read, a key not found yet in the other file waits until it is,
+ * so the memory used is bounded by the keys out of order, added or missing, not by the size of the files
+ * <br> each file is read on its own: once a key of one file was waiting for the other, that other file is read alone until it catches up,
+ * so keys added or removed in a block do not shift the rest of the comparison
+ * <br> a duplicated key is compared occurrence by occurrence: the n-th occurrence in the file with the n-th occurrence in the reference file
+ * <br> lines are read as LoadMode.READER reads them
+ */
+public final class PropertiesComparator {
+
+	/**
+	 * kind of difference
+	 */
+	public enum Type {
+		/**
+		 * the key of the reference file is not in the file
+		 */
+		MISSING,
+		/**
+		 * the key is in the file without value, while the reference file has one
+		 */
+		EMPTY,
+		/**
+		 * the key has another value in the file
+		 */
+		CHANGED,
+		/**
+		 * the key of the file is not in the reference file
+		 */
+		ADDED
+	}
+
+	/**
+	 * receive each difference, in the order they are found: keys in the same order in both files first, keys out of order once matched,
+	 * then MISSING keys in reference file order and ADDED keys in file order
+	 */
+	public interface DifferenceHandler {
+		/**
+		 * @param type
+		 * @param difference key, reference value ("" when ADDED), value in the file ("" when MISSING),
+		 * and key of the line before this one, in the reference file except for ADDED
+		 * @throws IOException
+		 */
+		void onDifference(Type type, PropertiesDifferent difference) throws IOException;
+	}
+
+	/**
+	 * an occurrence of a key read in one file, waiting for the same occurrence in the other file
+	 */
+	private static final class Pending {
+		final String value;
+		final String previousKey;
+
+		Pending(String value, String previousKey) {
+			this.value = value;
+			this.previousKey = previousKey;
+		}
+	}
+
+	/**
+	 * properties lines of one file, one after the other
+	 */
+	private static final class PropertiesReader implements Closeable {
+		private final BufferedReader in;
+		private String lastLineKey = "";
+		String key;
+		String value;
+		String previousKey;
+
+		PropertiesReader(File file) throws IOException {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), CustomProperties.OFFICIAL_READ_ENCODING));
+		}
+
+		/**
+		 * @return false at the end of the file
+		 */
+		boolean next() throws IOException {
+			String line;
+			while((line = in.readLine()) != null){
+				line = PropertiesLineParser.unescape(line);
+				int separatorIndex = PropertiesLineParser.separatorIndex(line);
+				String lineKey = PropertiesLineParser.key(line, separatorIndex);
+				previousKey = lastLineKey;
+				lastLineKey = lineKey;
+				if(PropertiesLineParser.isProperties(line, separatorIndex)){
+					key = lineKey;
+					value = PropertiesLineParser.value(line, separatorIndex);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private final DifferenceHandler handler;
+
+	/**
+	 * key -> occurrences read in the reference file and not yet in the file, in reference file order
+	 */
+	private final Map<String,Deque<Pending>> pendingReference = new LinkedHashMap<String,Deque<Pending>>();
+
+	/**
+	 * key -> occurrences read in the file and not yet in the reference file, in file order
+	 */
+	private final Map<String,Deque<Pending>> pendingFile = new LinkedHashMap<String,Deque<Pending>>();
+
+	private long differences;
+
+	private PropertiesComparator(DifferenceHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * @param file
+	 * @param referenceFile
+	 * @param handler receives every difference, from the calling thread
+	 * @return number of differences found
+	 * @throws IOException if a file can not be read, or thrown by the handler
+	 */
+	public static long compare(File file, File referenceFile, DifferenceHandler handler) throws IOException {
+		PropertiesComparator comparator = new PropertiesComparator(handler);
+		comparator.run(file, referenceFile);
+		return comparator.differences;
+	}
+
+	@SuppressWarnings("try")
+	private void run(File file, File referenceFile) throws IOException {
+		//wait for the threads writing the files, as loading them does
+		try(FileLockRegistry.Handle referenceLock = FileLockRegistry.lockForReading(referenceFile);
+			FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file);
+			PropertiesReader reference = new PropertiesReader(referenceFile);
+			PropertiesReader current = new PropertiesReader(file)){
+			boolean referenceLeft = reference.next();
+			boolean fileLeft = current.next();
+			while(referenceLeft || fileLeft){
+				if(referenceLeft && fileLeft && reference.key.equals(current.key)
+						&& !pendingFile.containsKey(current.key) && !pendingReference.containsKey(reference.key)){
+					//same key at the same place, the usual case
+					compare(reference.key, reference.value, current.value, reference.previousKey);
+					referenceLeft = reference.next();
+					fileLeft = current.next();
+				}else if(fileLeft && pendingReference.containsKey(current.key)){
+					//the file catches up with the reference file
+					Pending match = poll(pendingReference, current.key);
+					compare(current.key, match.value, current.value, match.previousKey);
+					fileLeft = current.next();
+				}else if(referenceLeft && pendingFile.containsKey(reference.key)){
+					//the reference file catches up with the file
+					Pending match = poll(pendingFile, reference.key);
+					compare(reference.key, reference.value, match.value, reference.previousKey);
+					referenceLeft = reference.next();
+				}else{
+					//neither key was read in the other file yet: missing, added, or further in the other file
+					if(referenceLeft){
+						add(pendingReference, reference.key, new Pending(reference.value, reference.previousKey));
+						referenceLeft = reference.next();
+					}
+					if(fileLeft){
+						add(pendingFile, current.key, new Pending(current.value, current.previousKey));
+						fileLeft = current.next();
+					}
+				}
+			}
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - ERROR while comparing " + file.getAbsolutePath() + " with " + referenceFile.getAbsolutePath(), e);
+		}
+		drain(pendingReference, Type.MISSING);
+		drain(pendingFile, Type.ADDED);
+	}
+
+	private void compare(String key, String referenceValue, String value, String previousKey) throws IOException {
+		if(value.equals(referenceValue)){
+			return;
+		}
+		Type type = value.isEmpty() ? Type.EMPTY : Type.CHANGED;
+		emit(type, new PropertiesDifferent(key, referenceValue, value, previousKey));
+	}
+
+	private void drain(Map<String,Deque<Pending>> pendings, Type type) throws IOException {
+		for(Map.Entry<String,Deque<Pending>> entry : pendings.entrySet()){
+			for(Pending left : entry.getValue()){
+				if(type == Type.MISSING){
+					emit(type, new PropertiesDifferent(entry.getKey(), left.value, "", left.previousKey));
+				}else{
+					emit(type, new PropertiesDifferent(entry.getKey(), "", left.value, left.previousKey));
+				}
+			}
+		}
+		pendings.clear();
+	}
+
+	private void emit(Type type, PropertiesDifferent difference) throws IOException {
+		differences++;
+		handler.onDifference(type, difference);
+	}
+
+	private void add(Map<String,Deque<Pending>> pendings, String key, Pending occurrence) {
+		pendings.computeIfAbsent(key, k -> new ArrayDeque<Pending>(1)).addLast(occurrence);
+	}
+
+	/**
+	 * @return the first waiting occurrence of the key, null if there is none
+	 */
+	private Pending poll(Map<String,Deque<Pending>> pendings, String key) {
+		Deque<Pending> occurrences = pendings.get(key);
+		if(occurrences == null){
+			return null;
+		}
+		Pending first = occurrences.pollFirst();
+		if(occurrences.isEmpty()){
+			pendings.remove(key);
+		}
+		return first;
+	}
+}
@@ -0,0 +1,220 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * Single pass parser for a properties line
+ * <br> the separator is searched once, key and value are then taken from its offset, nothing else is allocated
+ * <br> a value keeps every separator after the first one, "a=b=c" has the value "b=c"
+ */
+final class PropertiesLineParser {
+
+	static final char SEPARATOR = '=';
+
+	/**
+	 * returned by separatorIndex(byte[], int, int) for lines with a backslash
+	 */
+	static final int ESCAPED = -2;
+
+	private PropertiesLineParser() {
+	}
+
+	/**
+	 * unescape a raw line read from file, lines without backslash are returned as is
+	 * @param rawLine
+	 * @return
+	 */
+	static String unescape(String rawLine) {
+		if(rawLine.indexOf('\\') == -1){
+			return rawLine;
+		}
+		return StringEscapeUtils.unescapeJava(rawLine);
+	}
+
+	/**
+	 * @param line
+	 * @return the offset of the first separator, -1 if there is none
+	 */
+	static int separatorIndex(String line) {
+		return line.indexOf(SEPARATOR);
+	}
+
+	/**
+	 * a line is a properties if it has a separator and does not start (ignoring blanks) with #, /- or the separator
+	 * @param line
+	 * @param separatorIndex the offset given by separatorIndex(String)
+	 * @return
+	 */
+	static boolean isProperties(String line, int separatorIndex) {
+		if(separatorIndex == -1){
+			return false;
+		}
+		//same blanks as String.trim(), the separator itself is not a blank so start <= separatorIndex
+		int start = 0;
+		while(line.charAt(start) <= ' '){
+			start++;
+		}
+		char first = line.charAt(start);
+		if(first == '#' || first == SEPARATOR){
+			return false;
+		}
+		return !(first == '/' && line.charAt(start + 1) == '-');
+	}
+
+	static boolean isProperties(String line) {
+		return isProperties(line, separatorIndex(line));
+	}
+
+	/**
+	 * @param line
+	 * @param separatorIndex the offset given by separatorIndex(String)
+	 * @return everything before the separator, the whole line if there is no separator
+	 */
+	static String key(String line, int separatorIndex) {
+		return separatorIndex == -1 ? line : line.substring(0, separatorIndex);
+	}
+
+	static String key(String line) {
+		return key(line, separatorIndex(line));
+	}
+
+	/**
+	 * @param line
+	 * @param separatorIndex the offset given by separatorIndex(String)
+	 * @return everything after the separator, "" if there is no separator
+	 */
+	static String value(String line, int separatorIndex) {
+		return separatorIndex == -1 ? "" : line.substring(separatorIndex + 1);
+	}
+
+	static String value(String line) {
+		return value(line, separatorIndex(line));
+	}
+
+	/**
+	 * @param bytes a single byte encoded line
+	 * @param start
+	 * @param end
+	 * @return the offset of the first separator in the array, -1 if there is none,
+	 * ESCAPED if the line has a backslash so has to be decoded and unescaped before being parsed
+	 */
+	static int separatorIndex(byte[] bytes, int start, int end) {
+		int separatorIndex = -1;
+		for(int i = start; i < end; i++){
+			byte b = bytes[i];
+			if(b == '\\'){
+				return ESCAPED;
+			}
+			if(b == SEPARATOR && separatorIndex == -1){
+				separatorIndex = i;
+			}
+		}
+		return separatorIndex;
+	}
+
+	/**
+	 * same as unescape(String) on a single byte encoded line, without decoding the line first
+	 * <br> handles the usual escapes of properties files, anything unusual (octal, malformed unicode) goes through StringEscapeUtils.unescapeJava
+	 * @param bytes
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	static String unescape(byte[] bytes, int start, int end) {
+		char[] chars = new char[end - start];
+		int length = 0;
+		for(int i = start; i < end; i++){
+			char c = (char) (bytes[i] & 0xff);
+			if(c != '\\'){
+				chars[length++] = c;
+				continue;
+			}
+			if(++i == end){
+				//a trailing backslash is dropped
+				break;
+			}
+			c = (char) (bytes[i] & 0xff);
+			switch(c){
+			case 'u':
+				int value = i + 4 < end ? hexValue(bytes, i + 1) : -1;
+				if(value == -1){
+					return StringEscapeUtils.unescapeJava(new String(bytes, start, end - start, CustomProperties.OFFICIAL_READ_ENCODING));
+				}
+				chars[length++] = (char) value;
+				i += 4;
+				break;
+			case 'b':
+				chars[length++] = '\b';
+				break;
+			case 'n':
+				chars[length++] = '\n';
+				break;
+			case 't':
+				chars[length++] = '\t';
+				break;
+			case 'f':
+				chars[length++] = '\f';
+				break;
+			case 'r':
+				chars[length++] = '\r';
+				break;
+			default:
+				if(c >= '0' && c <= '7'){
+					return StringEscapeUtils.unescapeJava(new String(bytes, start, end - start, CustomProperties.OFFICIAL_READ_ENCODING));
+				}
+				//\\, \", \' and any other escaped char give the char itself
+				chars[length++] = c;
+			}
+		}
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * @param bytes a single byte encoded line
+	 * @param start
+	 * @param end
+	 * @return the line as read by LoadMode.NIO: decoded, and unescaped if it has a backslash
+	 */
+	static String line(byte[] bytes, int start, int end) {
+		if(separatorIndex(bytes, start, end) == ESCAPED){
+			return unescape(bytes, start, end);
+		}
+		return new String(bytes, start, end - start, CustomProperties.OFFICIAL_READ_ENCODING);
+	}
+
+	/**
+	 * @return the value of the 4 hex digits at offset, -1 if they are not 4 hex digits
+	 */
+	private static int hexValue(byte[] bytes, int offset) {
+		int value = 0;
+		for(int i = offset; i < offset + 4; i++){
+			int digit = Character.digit(bytes[i], 16);
+			if(digit == -1){
+				return -1;
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	/**
+	 * same as isProperties(String, int) on a single byte encoded line
+	 * @param bytes
+	 * @param start
+	 * @param separatorIndex the offset given by separatorIndex(byte[], int, int)
+	 * @return
+	 */
+	static boolean isProperties(byte[] bytes, int start, int separatorIndex) {
+		if(separatorIndex == -1){
+			return false;
+		}
+		while((bytes[start] & 0xff) <= ' '){
+			start++;
+		}
+		byte first = bytes[start];
+		if(first == '#' || first == SEPARATOR){
+			return false;
+		}
+		return !(first == '/' && bytes[start + 1] == '-');
+	}
+}
@@ -0,0 +1,225 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Parsed content of a reference file: the unescaped lines, the key of each line and the reference index
+ * <br> never modified once loaded, so one instance can be shared by every CustomProperties using the same reference file, from any thread
+ */
+class ReferenceContent {
+
+	private final File file;
+
+	private final List<String> lines;
+
+	private final String[] keys;
+
+	private final BitSet propertiesLines;
+
+	private final ReferenceIndex index;
+
+	private final FileState state;
+
+	/**
+	 * trigrams of the reference values, built on the first search by value
+	 */
+	private volatile SubstringIndex valueSubstrings;
+
+	/**
+	 * value -> keys of the properties lines having it, in line order, built on the first lookup by value
+	 */
+	private volatile Map<String,List<String>> keysByValue;
+
+	private ReferenceContent(File file, List<String> lines, FileState state) {
+		this.file = file;
+		this.lines = lines;
+		this.state = state;
+		this.keys = new String[lines.size()];
+		this.propertiesLines = new BitSet(lines.size());
+		this.index = new ReferenceIndex();
+		for(int i = 0; i < keys.length; i++){
+			String line = lines.get(i);
+			int separatorIndex = PropertiesLineParser.separatorIndex(line);
+			keys[i] = PropertiesLineParser.key(line, separatorIndex);
+			propertiesLines.set(i, PropertiesLineParser.isProperties(line, separatorIndex));
+			index.add(keys[i], PropertiesLineParser.value(line, separatorIndex));
+		}
+	}
+
+	/**
+	 * @param file may be null
+	 * @param lines already unescaped lines
+	 * @return
+	 */
+	static ReferenceContent of(File file, List<String> lines) {
+		return new ReferenceContent(file, lines, null);
+	}
+
+	/**
+	 * read and parse the reference file, waiting for any thread writing it
+	 * @param file
+	 * @param loadMode
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	static ReferenceContent load(File file, CustomProperties.LoadMode loadMode) throws IOException {
+		long start = CustomPropertiesMetrics.start();
+		if(loadMode == CustomProperties.LoadMode.PARSED){
+			List<String> lines = new ArrayList<String>();
+			FileState state = ParsedSidecar.read(file, (line, separatorIndex) -> lines.add(line));
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.LOAD_REFERENCE, start, lines.size(), state.getLength());
+			return new ReferenceContent(file, lines, state);
+		}
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(file)){
+			long lastModified = file.lastModified();
+			long length = file.length();
+			long loadedAt = System.currentTimeMillis();
+			CRC32 checksum = new CRC32();
+			List<String> lines = loadMode == CustomProperties.LoadMode.NIO ? readBytes(file, checksum) : readChars(file, checksum);
+			CustomPropertiesMetrics.record(CustomPropertiesMetrics.Operation.LOAD_REFERENCE, start, lines.size(), length);
+			return new ReferenceContent(file, lines, new FileState(lastModified, length, checksum.getValue(), loadedAt));
+		}
+	}
+
+	private static List<String> readChars(File file, Checksum checksum) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		int i = 1;
+		String temp = null;
+		try(FileInputStream refInput = new FileInputStream(file);
+			BufferedReader refIn = new BufferedReader(new InputStreamReader(new CheckedInputStream(refInput, checksum), CustomProperties.OFFICIAL_READ_ENCODING))){
+			while((temp = refIn.readLine()) != null){
+				lines.add(PropertiesLineParser.unescape(temp));
+				i++;
+			}
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - Error on line " + i + " : "+ temp +" while initializing reference file", e);
+		}
+		return lines;
+	}
+
+	private static List<String> readBytes(File file, Checksum checksum) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try{
+			ByteLineReader.read(file, (bytes, start, end) -> lines.add(PropertiesLineParser.line(bytes, start, end)), checksum);
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - Error while initializing reference file : " + file.getAbsolutePath(), e);
+		}
+		return lines;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * must not be modified when this content is shared
+	 */
+	List<String> getLines() {
+		return lines;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param line
+	 * @return the key of the line, the whole line if it has no separator
+	 */
+	String getKey(int line) {
+		return keys[line];
+	}
+
+	/**
+	 * @param key
+	 * @return the String instance of this key kept by this content, the given key if there is none
+	 */
+	String internKey(String key) {
+		int line = index.lastIndexOf(key);
+		return line == -1 ? key : keys[line];
+	}
+
+	boolean isProperties(int line) {
+		return propertiesLines.get(line);
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the last line having this key, null if there is none
+	 */
+	String getValue(String key) {
+		return index.getValue(key);
+	}
+
+	/**
+	 * @return the state of the file when it was loaded, null if the content was not loaded from a file
+	 */
+	FileState getState() {
+		return state;
+	}
+
+	/**
+	 * @param value
+	 * @return the key of every properties line having this value, in line order, a new empty list if there is none
+	 */
+	List<String> getKeysByValue(String value) {
+		Map<String,List<String>> index = keysByValue;
+		if(index == null){
+			synchronized(this){
+				index = keysByValue;
+				if(index == null){
+					index = new HashMap<String,List<String>>();
+					for(int i = 0; i < keys.length; i++){
+						if(propertiesLines.get(i)){
+							index.computeIfAbsent(PropertiesLineParser.value(lines.get(i)), key -> new ArrayList<String>(1)).add(keys[i]);
+						}
+					}
+					keysByValue = index;
+				}
+			}
+		}
+		List<String> found = index.get(value);
+		return found == null ? new ArrayList<String>() : new ArrayList<String>(found);
+	}
+
+	/**
+	 * @param needle
+	 * @return the keys whose reference value may contain the needle, ignoring case or not: a superset that callers must still check,
+	 * null if the needle is too short for the substring index
+	 */
+	List<String> keysWithValueLike(String needle) {
+		if(!SubstringIndex.canSearch(needle)){
+			return null;
+		}
+		SubstringIndex values = valueSubstrings;
+		if(values == null){
+			synchronized(this){
+				values = valueSubstrings;
+				if(values == null){
+					SubstringIndex built = new SubstringIndex();
+					index.forEachValue((key, value) -> built.add(value, key));
+					valueSubstrings = values = built;
+				}
+			}
+		}
+		//never modified once published, so it can be read by every thread sharing this content
+		return values.candidates(needle);
+	}
+
+	ReferenceIndex getIndex() {
+		return index;
+	}
+}
@@ -0,0 +1,152 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide cache of parsed reference files, disabled by default, enable it with setMaximumSize(int)
+ * <br> files are identified by their canonical path, an entry is reused only while the file keeps the same modification time and size
+ * <br> the least recently used entry is evicted when the cache is full
+ * <br> cached contents are immutable and shared by every CustomProperties using the same reference file
+ */
+public final class ReferenceContentCache {
+
+	private static final class Entry {
+		final long lastModified;
+		final long length;
+		final ReferenceContent content;
+
+		Entry(long lastModified, long length, ReferenceContent content) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.content = content;
+		}
+	}
+
+	private static volatile int maximumSize = 0;
+
+	/**
+	 * canonical path -> entry, in access order, guarded by itself
+	 */
+	private static final LinkedHashMap<String,Entry> entries = new LinkedHashMap<String,Entry>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,ReferenceContentCache.Entry> eldest) {
+			return size() > maximumSize;
+		}
+	};
+
+	private static final LongAdder hits = new LongAdder();
+
+	private static final LongAdder misses = new LongAdder();
+
+	private ReferenceContentCache() {
+	}
+
+	/**
+	 * @param file
+	 * @param loadMode used when the file has to be read
+	 * @return the cached content of the file if it did not change since it was cached, else the freshly loaded content
+	 * @throws IOException
+	 */
+	static ReferenceContent get(File file, CustomProperties.LoadMode loadMode) throws IOException {
+		if(!isEnabled()){
+			return ReferenceContent.load(file, loadMode);
+		}
+		String path = file.getCanonicalPath();
+		//stat before reading, a change during the load is seen by the next call
+		long lastModified = file.lastModified();
+		long length = file.length();
+		synchronized(entries){
+			Entry entry = entries.get(path);
+			if(entry != null && entry.lastModified == lastModified && entry.length == length){
+				hits.increment();
+				return entry.content;
+			}
+		}
+		misses.increment();
+		//read outside the lock, two threads missing the same file at once may both read it
+		ReferenceContent content = ReferenceContent.load(file, loadMode);
+		synchronized(entries){
+			entries.put(path, new Entry(lastModified, length, content));
+		}
+		return content;
+	}
+
+	/**
+	 * drop the cached content of a file, called when this JVM writes it
+	 * @param file
+	 * @throws IOException
+	 */
+	static void invalidate(File file) throws IOException {
+		if(!isEnabled()){
+			return;
+		}
+		String path = file.getCanonicalPath();
+		synchronized(entries){
+			entries.remove(path);
+		}
+	}
+
+	public static boolean isEnabled() {
+		return maximumSize > 0;
+	}
+
+	public static int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @param maximumSize number of reference files kept, 0 disables the cache and clears it
+	 */
+	public static void setMaximumSize(int maximumSize) {
+		if(maximumSize < 0){
+			throw new IllegalArgumentException("[CustomProperties] - maximum size can not be negative : " + maximumSize);
+		}
+		synchronized(entries){
+			ReferenceContentCache.maximumSize = maximumSize;
+			//evict the least recently used entries above the new size
+			while(entries.size() > maximumSize){
+				entries.remove(entries.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * @return number of reference files currently cached
+	 */
+	public static int size() {
+		synchronized(entries){
+			return entries.size();
+		}
+	}
+
+	public static void clear() {
+		synchronized(entries){
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return number of loads served from the cache
+	 */
+	public static long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of loads that had to read the reference file
+	 */
+	public static long getMissCount() {
+		return misses.sum();
+	}
+
+	public static void resetCounters() {
+		hits.reset();
+		misses.reset();
+	}
+}
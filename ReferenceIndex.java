@@ -0,0 +1,69 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Index over the reference file lines: key -> last line having this key, with its value
+ * <br> built once when the reference file is loaded, lookups do not allocate
+ */
+class ReferenceIndex {
+
+	static final class Entry {
+		final int line;
+		final String value;
+
+		Entry(int line, String value) {
+			this.line = line;
+			this.value = value;
+		}
+	}
+
+	private final Map<String,Entry> lastEntryByKey = new HashMap<String,Entry>();
+
+	private int size = 0;
+
+	/**
+	 * index the next reference line
+	 * @param key
+	 * @param value
+	 */
+	void add(String key, String value) {
+		lastEntryByKey.put(key, new Entry(size++, value));
+	}
+
+	/**
+	 * @param key
+	 * @return the line number of the last line having this key, -1 if there is none
+	 */
+	int lastIndexOf(String key) {
+		Entry entry = lastEntryByKey.get(key);
+		return entry == null ? -1 : entry.line;
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the last line having this key, null if there is none
+	 */
+	String getValue(String key) {
+		Entry entry = lastEntryByKey.get(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * @param action called with each distinct key and the value of its last line
+	 */
+	void forEachValue(BiConsumer<String,String> action) {
+		for(Map.Entry<String,Entry> entry : lastEntryByKey.entrySet()){
+			action.accept(entry.getKey(), entry.getValue().value);
+		}
+	}
+
+	/**
+	 * number of indexed lines
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,176 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index of texts, each text belonging to an owner (a key), to find the owners of the texts that may contain a string
+ * <br> characters are case folded as String.regionMatches(true, ...) compares them, so the candidates are a superset of both
+ * String.contains and StringUtils.containsIgnoreCase matches: callers must still check each candidate
+ * <br> not thread safe, but candidates() does not modify the index
+ */
+final class SubstringIndex {
+
+	static final int GRAM_LENGTH = 3;
+
+	/**
+	 * removed owners kept in the postings before the index is compacted
+	 */
+	private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+	/**
+	 * growable int array, ids in insertion order
+	 */
+	private static final class Posting {
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id) {
+			//a text repeating a trigram is only added once, its ids are added one after the other
+			if(size > 0 && ids[size - 1] == id){
+				return;
+			}
+			if(size == ids.length){
+				int[] bigger = new int[size * 2];
+				System.arraycopy(ids, 0, bigger, 0, size);
+				ids = bigger;
+			}
+			ids[size++] = id;
+		}
+	}
+
+	private final Map<Long,Posting> postings = new HashMap<Long,Posting>();
+
+	private final Map<String,Integer> idByOwner = new HashMap<String,Integer>();
+
+	/**
+	 * id -> owner, null once removed
+	 */
+	private String[] owners = new String[16];
+
+	/**
+	 * id -> indexed text
+	 */
+	private String[] texts = new String[16];
+
+	private int nextId;
+
+	private int dead;
+
+	/**
+	 * @param needle
+	 * @return true if the index can give the candidates for this string, false if it is too short to have a trigram
+	 */
+	static boolean canSearch(String needle) {
+		return needle != null && needle.length() >= GRAM_LENGTH;
+	}
+
+	/**
+	 * index a text, replacing the one of this owner if any
+	 * @param text
+	 * @param owner
+	 */
+	void add(String text, String owner) {
+		if(text == null || owner == null){
+			return;
+		}
+		if(idByOwner.containsKey(owner)){
+			remove(owner);
+		}
+		int id = nextId++;
+		if(id == owners.length){
+			String[] biggerOwners = new String[id * 2];
+			String[] biggerTexts = new String[id * 2];
+			System.arraycopy(owners, 0, biggerOwners, 0, id);
+			System.arraycopy(texts, 0, biggerTexts, 0, id);
+			owners = biggerOwners;
+			texts = biggerTexts;
+		}
+		owners[id] = owner;
+		texts[id] = text;
+		idByOwner.put(owner, id);
+		for(int i = 0; i + GRAM_LENGTH <= text.length(); i++){
+			postings.computeIfAbsent(gram(text, i), gram -> new Posting()).add(id);
+		}
+	}
+
+	/**
+	 * @param owner
+	 */
+	void remove(String owner) {
+		Integer id = idByOwner.remove(owner);
+		if(id == null){
+			return;
+		}
+		//left in the postings, skipped by candidates() until the next compaction
+		owners[id] = null;
+		texts[id] = null;
+		if(++dead >= MIN_DEAD_TO_COMPACT && dead > idByOwner.size()){
+			compact();
+		}
+	}
+
+	void clear() {
+		postings.clear();
+		idByOwner.clear();
+		owners = new String[16];
+		texts = new String[16];
+		nextId = 0;
+		dead = 0;
+	}
+
+	int size() {
+		return idByOwner.size();
+	}
+
+	/**
+	 * @param needle at least GRAM_LENGTH long, see canSearch
+	 * @return the owners of the texts having every trigram of the needle, in no particular order
+	 */
+	List<String> candidates(String needle) {
+		Posting smallest = null;
+		for(int i = 0; i + GRAM_LENGTH <= needle.length(); i++){
+			Posting posting = postings.get(gram(needle, i));
+			if(posting == null){
+				return Collections.emptyList();
+			}
+			if(smallest == null || posting.size < smallest.size){
+				smallest = posting;
+			}
+		}
+		List<String> result = new ArrayList<String>(smallest.size);
+		for(int i = 0; i < smallest.size; i++){
+			String owner = owners[smallest.ids[i]];
+			if(owner != null){
+				result.add(owner);
+			}
+		}
+		return result;
+	}
+
+	private void compact() {
+		String[] liveOwners = owners;
+		String[] liveTexts = texts;
+		int count = nextId;
+		clear();
+		for(int id = 0; id < count; id++){
+			if(liveOwners[id] != null){
+				add(liveTexts[id], liveOwners[id]);
+			}
+		}
+	}
+
+	private static long gram(String text, int start) {
+		return (long) fold(text.charAt(start)) << 32 | (long) fold(text.charAt(start + 1)) << 16 | fold(text.charAt(start + 2));
+	}
+
+	/**
+	 * two chars are equal ignoring case for String.regionMatches if and only if they have the same folded char
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+}
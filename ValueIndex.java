@@ -0,0 +1,152 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reverse index of a properties map: value -> keys having this value, in the order of the map
+ * <br> the map order is the order in which keys were first put, as in a LinkedHashMap where keys are only added or replaced
+ * <br> put is O(log k + k) for a value shared by k keys, lookups are O(1) plus the size of the result
+ */
+final class ValueIndex {
+
+	private static final class Entry {
+		final String key;
+		final long ordinal;
+		String value;
+
+		Entry(String key, long ordinal, String value) {
+			this.key = key;
+			this.ordinal = ordinal;
+			this.value = value;
+		}
+	}
+
+	private final Map<String,Entry> entryByKey = new HashMap<String,Entry>();
+
+	/**
+	 * value -> a single Entry, or an ArrayList of Entry ordered by ordinal when the value is shared
+	 */
+	private final Map<String,Object> entriesByValue = new HashMap<String,Object>();
+
+	private long nextOrdinal;
+
+	/**
+	 * @param properties indexed in their iteration order
+	 */
+	ValueIndex(Map<String,String> properties) {
+		for(Map.Entry<String,String> property : properties.entrySet()){
+			put(property.getKey(), property.getValue());
+		}
+	}
+
+	/**
+	 * add the key after all the others, or change its value keeping its place
+	 * @param key
+	 * @param value may be null
+	 */
+	void put(String key, String value) {
+		Entry entry = entryByKey.get(key);
+		if(entry == null){
+			entry = new Entry(key, nextOrdinal++, value);
+			entryByKey.put(key, entry);
+		}else if(value == null ? entry.value == null : value.equals(entry.value)){
+			return;
+		}else{
+			unlink(entry);
+			entry.value = value;
+		}
+		link(entry);
+	}
+
+	/**
+	 * @param value
+	 * @return the keys having this value, in map order, an empty list if there is none
+	 */
+	List<String> getKeys(String value) {
+		Object indexed = entriesByValue.get(value);
+		if(indexed == null){
+			return new ArrayList<String>();
+		}
+		if(indexed instanceof Entry){
+			List<String> keys = new ArrayList<String>(1);
+			keys.add(((Entry) indexed).key);
+			return keys;
+		}
+		List<Entry> entries = asEntryList(indexed);
+		List<String> keys = new ArrayList<String>(entries.size());
+		for(Entry entry : entries){
+			keys.add(entry.key);
+		}
+		return keys;
+	}
+
+	boolean containsValue(String value) {
+		return entriesByValue.containsKey(value);
+	}
+
+	private void link(Entry entry) {
+		Object indexed = entriesByValue.get(entry.value);
+		if(indexed == null){
+			entriesByValue.put(entry.value, entry);
+			return;
+		}
+		List<Entry> entries;
+		if(indexed instanceof Entry){
+			entries = new ArrayList<Entry>(2);
+			entries.add((Entry) indexed);
+			entriesByValue.put(entry.value, entries);
+		}else{
+			entries = asEntryList(indexed);
+		}
+		int position = position(entries, entry.ordinal);
+		entries.add(position < 0 ? -position - 1 : position, entry);
+	}
+
+	private void unlink(Entry entry) {
+		Object indexed = entriesByValue.get(entry.value);
+		if(indexed == entry){
+			entriesByValue.remove(entry.value);
+		}else if(indexed != null && !(indexed instanceof Entry)){
+			List<Entry> entries = asEntryList(indexed);
+			int position = position(entries, entry.ordinal);
+			if(position >= 0){
+				entries.remove(position);
+			}
+			if(entries.size() == 1){
+				entriesByValue.put(entry.value, entries.get(0));
+			}
+		}
+	}
+
+	/**
+	 * @return the position of the entry having this ordinal, -(insertion point) - 1 if there is none
+	 */
+	private static int position(List<Entry> entries, long ordinal) {
+		int low = 0;
+		int high = entries.size() - 1;
+		//keys are mostly added at the end
+		if(high >= 0 && entries.get(high).ordinal < ordinal){
+			return -(high + 1) - 1;
+		}
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			long middleOrdinal = entries.get(middle).ordinal;
+			if(middleOrdinal < ordinal){
+				low = middle + 1;
+			}else if(middleOrdinal > ordinal){
+				high = middle - 1;
+			}else{
+				return middle;
+			}
+		}
+		return -low - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Entry> asEntryList(Object indexed) {
+		return (List<Entry>) indexed;
+	}
+}
@@ -0,0 +1,805 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Versions of one properties file, kept in a single append only file next to it: temp/filename.versions
+ * <br> a version is stored either as a base (the whole content) or as line level changes against the last base,
+ * a new base is written every snapshotInterval versions, or when the changes get bigger than half of the base
+ * <br> appendFile streams the lines of a file into a delta the same way, or stores its raw bytes when a new base is due, they are then read as a base
+ * <br> each version is compressed on its own, so saving a version only appends to the file, rebuilding one reads at most two versions
+ * <br> old versions are dropped by compact() according to maxVersions and maxAgeMillis, which is also done on append once enough versions expired
+ * <br> thread safe inside one JVM
+ */
+public class VersionStore {
+
+	public static final String EXTENSION = ".versions";
+
+	/**
+	 * "CPVS" followed by the format version
+	 */
+	private static final int MAGIC = 0x43505653;
+	private static final byte FORMAT = 1;
+	private static final int HEADER_LENGTH = 5;
+
+	/**
+	 * type, timestamp, compressed length
+	 */
+	private static final int RECORD_HEADER_LENGTH = 13;
+	private static final byte BASE = 0;
+	private static final byte DELTA = 1;
+	private static final byte RAW = 2;
+
+	private static final byte END = 0;
+	private static final byte COPY = 1;
+	private static final byte INSERT = 2;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * longest walk through the line numbers of a duplicated line, looking for one after the expected line number
+	 */
+	private static final int MAX_DUPLICATE_WALK = 64;
+
+	private static volatile int defaultMaxVersions = 100;
+
+	private static volatile long defaultMaxAgeMillis = 0L;
+
+	private static volatile int defaultSnapshotInterval = 20;
+
+	private final File storeFile;
+
+	private int maxVersions = defaultMaxVersions;
+
+	private long maxAgeMillis = defaultMaxAgeMillis;
+
+	private int snapshotInterval = defaultSnapshotInterval;
+
+	/**
+	 * canonical path of a store -> encoder holding its last base, so that appending does not read and index the base again,
+	 * only used under the write lock of the store
+	 */
+	private static final ConcurrentMap<String,SoftReference<Encoder>> encoders = new ConcurrentHashMap<String,SoftReference<Encoder>>();
+
+	/**
+	 * position of a stored version in the file
+	 */
+	private static final class Record {
+		final byte type;
+		final long timestamp;
+		final long position;
+		final int length;
+
+		Record(byte type, long timestamp, long position, int length) {
+			this.type = type;
+			this.timestamp = timestamp;
+			this.position = position;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * @param propertiesFile the versioned file
+	 */
+	public VersionStore(File propertiesFile) {
+		this.storeFile = new File(CustomProperties.getTempParentFolder(propertiesFile), propertiesFile.getName() + EXTENSION);
+	}
+
+	public File getStoreFile() {
+		return storeFile;
+	}
+
+	/**
+	 * store content as the newest version
+	 * @param content
+	 * @throws IOException
+	 */
+	public void append(String content) throws IOException {
+		append(content, System.currentTimeMillis());
+	}
+
+	void append(String content, long timestamp) throws IOException {
+		append(split(content), timestamp);
+	}
+
+	/**
+	 * store the current content of a properties file as the newest version, streamed from the file so it is never held in memory:
+	 * its lines are encoded as a delta against the last base, or its bytes are compressed on their way to the store when a new base is due
+	 * <br> the version is the old content of a CustomProperties loaded from this file, as writeOldContentAsString() gives it: lines read as LoadMode.NIO reads them, each followed by \n
+	 * <br> takes the read lock of the file, so a caller holding its write lock snapshots it right before overwriting it
+	 * @param propertiesFile
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public void appendFile(File propertiesFile) throws IOException {
+		long timestamp = System.currentTimeMillis();
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(propertiesFile)){
+			append(timestamp, (channel, path, records, end) -> {
+				int lastBase = lastBase(records, records.size() - 1);
+				if(lastBase >= 0 && records.size() - lastBase < snapshotInterval){
+					Encoder encoder = encoderFor(path, channel, records);
+					byte[] record = encoder.delta(propertiesFile, timestamp);
+					if(record != null){
+						FileSaver.writeFully(channel, ByteBuffer.wrap(record));
+						encoders.put(path, new SoftReference<Encoder>(encoder));
+						return new Record(DELTA, timestamp, end + RECORD_HEADER_LENGTH, record.length - RECORD_HEADER_LENGTH);
+					}
+				}
+				//a new base, the cached encoder keeps the last one in memory, the next append decodes this version from the store if it needs it
+				encoders.remove(path);
+				ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH).put(RAW).putLong(timestamp).putInt(Integer.MAX_VALUE);
+				header.flip();
+				//incomplete until its length is written, so dropped by the next append if interrupted
+				FileSaver.writeFully(channel, header);
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try{
+					DeflaterOutputStream out = new DeflaterOutputStream(Channels.newOutputStream(channel), deflater, BUFFER_SIZE);
+					Files.copy(propertiesFile.toPath(), out);
+					//not closed, it would close the channel
+					out.finish();
+				}finally{
+					deflater.end();
+				}
+				int length = (int) (channel.position() - end - RECORD_HEADER_LENGTH);
+				ByteBuffer written = ByteBuffer.allocate(4).putInt(length);
+				written.flip();
+				while(written.hasRemaining()){
+					channel.write(written, end + RECORD_HEADER_LENGTH - 4 + written.position());
+				}
+				return new Record(RAW, timestamp, end + RECORD_HEADER_LENGTH, length);
+			});
+		}
+	}
+
+	private void append(List<String> lines, long timestamp) throws IOException {
+		append(timestamp, (channel, path, records, end) -> {
+			Encoder encoder = encoderFor(path, channel, records);
+			byte[] record = encoder.record(lines, timestamp);
+			FileSaver.writeFully(channel, ByteBuffer.wrap(record));
+			Record written = new Record(record[0], timestamp, end + RECORD_HEADER_LENGTH, record.length - RECORD_HEADER_LENGTH);
+			if(written.type == BASE){
+				encoder.baseRecord = written;
+			}
+			encoders.put(path, new SoftReference<Encoder>(encoder));
+			return written;
+		});
+	}
+
+	/**
+	 * write one record at the end of the store
+	 */
+	private interface RecordWriter {
+		/**
+		 * @param channel positioned at end
+		 * @param path canonical path of the store
+		 * @param records already stored
+		 * @param end where the record starts
+		 * @return the written record
+		 */
+		Record write(FileChannel channel, String path, List<Record> records, long end) throws IOException;
+	}
+
+	@SuppressWarnings("try")
+	private void append(long timestamp, RecordWriter writer) throws IOException {
+		File parent = storeFile.getParentFile();
+		if(parent != null && !parent.exists()){
+			parent.mkdirs();
+		}
+		List<Record> records;
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(storeFile);
+			FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			records = readRecords(channel);
+			long end = records.isEmpty() ? HEADER_LENGTH : last(records).position + last(records).length;
+			if(records.isEmpty()){
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).put(FORMAT);
+				header.flip();
+				channel.position(0);
+				FileSaver.writeFully(channel, header);
+			}
+			//drop what is left of an append interrupted by a crash
+			channel.truncate(end);
+			channel.position(end);
+			records.add(writer.write(channel, storeFile.getCanonicalPath(), records, end));
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - ERROR while saving version of : " + storeFile.getAbsolutePath(), e);
+		}
+		int retained = retained(records, System.currentTimeMillis());
+		int dropped = records.size() - retained;
+		if(dropped > 0 && (dropped >= snapshotInterval || dropped >= retained)){
+			compact();
+		}
+	}
+
+	/**
+	 * @return the cached encoder of the store if it still has the last base of records, else a new one
+	 */
+	private Encoder encoderFor(String path, FileChannel channel, List<Record> records) throws IOException {
+		int lastBase = lastBase(records, records.size() - 1);
+		SoftReference<Encoder> cached = encoders.get(path);
+		Encoder encoder = cached == null ? null : cached.get();
+		if(encoder == null || lastBase < 0 || !encoder.hasBase(records.get(lastBase))){
+			encoder = new Encoder();
+			if(lastBase >= 0){
+				encoder.base = decode(channel, records.get(lastBase), null);
+				encoder.baseRecord = records.get(lastBase);
+			}
+		}
+		encoder.snapshotInterval = snapshotInterval;
+		encoder.deltasSinceBase = lastBase < 0 ? 0 : records.size() - 1 - lastBase;
+		return encoder;
+	}
+
+	/**
+	 * @return number of stored versions
+	 * @throws IOException
+	 */
+	public int getVersionCount() throws IOException {
+		return readRecords().size();
+	}
+
+	/**
+	 * @return the time each version was stored, from the oldest to the newest
+	 * @throws IOException
+	 */
+	public List<Long> getTimestamps() throws IOException {
+		List<Long> timestamps = new ArrayList<Long>();
+		for(Record record : readRecords()){
+			timestamps.add(record.timestamp);
+		}
+		return timestamps;
+	}
+
+	/**
+	 * @param index 0 for the oldest version
+	 * @return the content of the version
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public String getVersion(int index) throws IOException {
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(storeFile);
+			FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)){
+			List<Record> records = readRecords(channel);
+			if(index < 0 || index >= records.size()){
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + records.size());
+			}
+			Record record = records.get(index);
+			if(record.type != DELTA){
+				return join(decode(channel, record, null));
+			}
+			List<String> base = decode(channel, records.get(lastBase(records, index)), null);
+			return join(decode(channel, record, base));
+		}
+	}
+
+	/**
+	 * @param timestamp
+	 * @return the content of the newest version stored at or before timestamp, null if there is none
+	 * @throws IOException
+	 */
+	public String getVersionAt(long timestamp) throws IOException {
+		List<Long> timestamps = getTimestamps();
+		for(int i = timestamps.size() - 1; i >= 0; i--){
+			if(timestamps.get(i) <= timestamp){
+				return getVersion(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * rewrite the store without the versions beyond maxVersions or older than maxAgeMillis
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public void compact() throws IOException {
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(storeFile)){
+			List<Record> records = readRecords();
+			int first = records.size() - retained(records, System.currentTimeMillis());
+			if(first == 0){
+				return;
+			}
+			ByteArrayOutputStream compacted = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(compacted);
+			out.writeInt(MAGIC);
+			out.writeByte(FORMAT);
+			try(FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)){
+				Encoder encoder = new Encoder();
+				encoder.snapshotInterval = snapshotInterval;
+				List<String> base = null;
+				for(int i = lastBase(records, first); i < records.size(); i++){
+					Record record = records.get(i);
+					List<String> lines;
+					if(record.type != DELTA){
+						base = decode(channel, record, null);
+						lines = base;
+					}else{
+						lines = decode(channel, record, base);
+					}
+					if(i >= first){
+						out.write(encoder.record(lines, record.timestamp));
+					}
+				}
+			}
+			byte[] bytes = compacted.toByteArray();
+			FileSaver.saveAtomically(storeFile, channel -> FileSaver.writeFully(channel, ByteBuffer.wrap(bytes)));
+			encoders.remove(storeFile.getCanonicalPath());
+		}catch(IOException e){
+			throw new IOException("[CustomProperties] - ERROR while compacting versions of : " + storeFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return number of newest versions kept by the retention policy
+	 */
+	private int retained(List<Record> records, long now) {
+		int retained = maxVersions > 0 ? Math.min(maxVersions, records.size()) : records.size();
+		if(maxAgeMillis > 0){
+			while(retained > 0 && records.get(records.size() - retained).timestamp < now - maxAgeMillis){
+				retained--;
+			}
+		}
+		return retained;
+	}
+
+	@SuppressWarnings("try")
+	private List<Record> readRecords() throws IOException {
+		if(!storeFile.exists()){
+			return new ArrayList<Record>();
+		}
+		try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(storeFile);
+			FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)){
+			return readRecords(channel);
+		}
+	}
+
+	/**
+	 * read the header of every complete record, an incomplete last record is ignored
+	 */
+	private List<Record> readRecords(FileChannel channel) throws IOException {
+		List<Record> records = new ArrayList<Record>();
+		long size = channel.size();
+		if(size < HEADER_LENGTH){
+			return records;
+		}
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+		header.limit(HEADER_LENGTH);
+		readFully(channel, header, 0);
+		if(header.getInt(0) != MAGIC || header.get(4) != FORMAT){
+			throw new IOException("[CustomProperties] - not a version store : " + storeFile.getAbsolutePath());
+		}
+		long position = HEADER_LENGTH;
+		while(position + RECORD_HEADER_LENGTH <= size){
+			header.clear();
+			readFully(channel, header, position);
+			int length = header.getInt(9);
+			long payload = position + RECORD_HEADER_LENGTH;
+			if(payload + length > size){
+				break;
+			}
+			records.add(new Record(header.get(0), header.getLong(1), payload, length));
+			position = payload + length;
+		}
+		return records;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position);
+			if(read == -1){
+				throw new IOException("[CustomProperties] - unexpected end of version store");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * @return index of the base (or raw version) used by the version at index, -1 if there is none
+	 */
+	private static int lastBase(List<Record> records, int index) {
+		while(index >= 0 && records.get(index).type == DELTA){
+			index--;
+		}
+		return index;
+	}
+
+	private static Record last(List<Record> records) {
+		return records.get(records.size() - 1);
+	}
+
+	/**
+	 * @param base lines copied by a delta, null for a base
+	 * @return lines of the version
+	 */
+	private static List<String> decode(FileChannel channel, Record record, List<String> base) throws IOException {
+		ByteBuffer compressed = ByteBuffer.allocate(record.length);
+		readFully(channel, compressed, record.position);
+		List<String> lines = new ArrayList<String>();
+		if(record.type == RAW){
+			try(ReadableByteChannel in = Channels.newChannel(new InflaterInputStream(new ByteArrayInputStream(compressed.array())))){
+				ByteLineReader.read(in, (bytes, start, end) -> lines.add(PropertiesLineParser.line(bytes, start, end)), null);
+			}
+			//what follows the last \n
+			lines.add("");
+			return lines;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed.array())), BUFFER_SIZE))){
+			byte operation;
+			while((operation = in.readByte()) != END){
+				if(operation == COPY){
+					int start = in.readInt();
+					int count = in.readInt();
+					lines.addAll(base.subList(start, start + count));
+				}else{
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					lines.add(new String(bytes, StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * split on \n, the last line is what follows the last \n (empty if the content ends with \n), so that join(split(content)) equals content
+	 */
+	static List<String> split(String content) {
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		int end;
+		while((end = content.indexOf('\n', start)) != -1){
+			lines.add(content.substring(start, end));
+			start = end + 1;
+		}
+		lines.add(content.substring(start));
+		return lines;
+	}
+
+	static String join(List<String> lines) {
+		return String.join("\n", lines);
+	}
+
+	/**
+	 * write versions one after the other, as bases or as deltas against the last base
+	 */
+	private static final class Encoder {
+
+		List<String> base;
+
+		/**
+		 * where base is stored, null until written
+		 */
+		Record baseRecord;
+
+		int deltasSinceBase;
+
+		int snapshotInterval;
+
+		/**
+		 * open addressing hash table of base: hash slot -> first line number having this hash + 1, 0 for an empty slot,
+		 * built on the first line not found at its expected place
+		 */
+		private int[] slots;
+
+		/**
+		 * line number -> next line number of the same line, -1 at the end
+		 */
+		private int[] sameLine;
+
+		boolean hasBase(Record record) {
+			return baseRecord != null && baseRecord.position == record.position && baseRecord.length == record.length && baseRecord.timestamp == record.timestamp;
+		}
+
+		/**
+		 * @return the whole record: header then compressed version
+		 */
+		byte[] record(List<String> lines, long timestamp) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte type = encode(bytes, lines);
+			return withHeader(type, timestamp, bytes);
+		}
+
+		/**
+		 * @param file its lines, read as LoadMode.NIO reads them, each followed by \n
+		 * @return the whole record of file as a delta against base, null if there is no base, a new base is due or the delta is too big
+		 */
+		byte[] delta(File file, long timestamp) throws IOException {
+			if(base == null || deltasSinceBase + 1 >= snapshotInterval){
+				return null;
+			}
+			try(Delta delta = new Delta()){
+				ByteLineReader.read(file, (bytes, start, end) -> delta.add(PropertiesLineParser.line(bytes, start, end)));
+				//what follows the last \n
+				if(!delta.add("")){
+					return null;
+				}
+				deltasSinceBase++;
+				return withHeader(DELTA, timestamp, delta.finish());
+			}
+		}
+
+		/**
+		 * @return BASE or DELTA
+		 */
+		private byte encode(ByteArrayOutputStream bytes, List<String> lines) throws IOException {
+			if(base != null && deltasSinceBase + 1 < snapshotInterval){
+				try(Delta delta = new Delta()){
+					for(String line : lines){
+						delta.add(line);
+					}
+					if(delta.isSmall()){
+						deltasSinceBase++;
+						delta.finish().writeTo(bytes);
+						return DELTA;
+					}
+				}
+			}
+			try(DataOutputStream out = compressing(bytes)){
+				for(String line : lines){
+					writeInsert(out, line);
+				}
+				out.writeByte(END);
+			}
+			base = lines;
+			baseRecord = null;
+			slots = null;
+			sameLine = null;
+			deltasSinceBase = 0;
+			return BASE;
+		}
+
+		/**
+		 * a version encoded against base line after line: each line is copied from base where base has the same line,
+		 * preferably right after the previous copied line
+		 */
+		private final class Delta implements Closeable {
+
+			private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			private final DataOutputStream out = compressing(bytes);
+			private final int maxInserts = base.size() / 2;
+			private int inserts = 0;
+			private int copyStart = 0;
+			private int copyCount = 0;
+			private boolean finished = false;
+
+			/**
+			 * @return false once the delta is too big, the version is then better written as a new base, the following lines are ignored
+			 */
+			boolean add(String line) throws IOException {
+				if(!isSmall()){
+					return false;
+				}
+				int next = copyStart + copyCount;
+				if(copyCount > 0 && next < base.size() && base.get(next).equals(line)){
+					copyCount++;
+					return true;
+				}
+				int position = next < base.size() && base.get(next).equals(line) ? next : positionInBase(line, next);
+				writeCopy(out, copyStart, copyCount);
+				if(position < 0){
+					if(++inserts > maxInserts){
+						return false;
+					}
+					writeInsert(out, line);
+					copyStart = next;
+					copyCount = 0;
+				}else{
+					copyStart = position;
+					copyCount = 1;
+				}
+				return true;
+			}
+
+			boolean isSmall() {
+				return inserts <= maxInserts;
+			}
+
+			/**
+			 * @return the compressed delta
+			 */
+			ByteArrayOutputStream finish() throws IOException {
+				writeCopy(out, copyStart, copyCount);
+				out.writeByte(END);
+				finished = true;
+				out.close();
+				return bytes;
+			}
+
+			@Override
+			public void close() throws IOException {
+				if(!finished){
+					//ends the deflater
+					out.close();
+				}
+			}
+		}
+
+		/**
+		 * @return a line number of line in base, the first one from expected if any, -1 if base does not have it
+		 */
+		private int positionInBase(String line, int expected) {
+			if(slots == null){
+				indexBase();
+			}
+			int mask = slots.length - 1;
+			int hash = line.hashCode();
+			int first = -1;
+			for(int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask){
+				int position = slots[slot] - 1;
+				if(!sameLine(base.get(position), hash, line)){
+					continue;
+				}
+				//line numbers of equal lines are chained in increasing order
+				first = position;
+				for(int walk = 0; position != -1 && walk < MAX_DUPLICATE_WALK; position = sameLine[position], walk++){
+					if(position >= expected){
+						return position;
+					}
+				}
+				return first;
+			}
+			return first;
+		}
+
+		private void indexBase() {
+			int capacity = Integer.highestOneBit(Math.max(base.size(), 1) * 2) << 1;
+			int mask = capacity - 1;
+			slots = new int[capacity];
+			sameLine = new int[base.size()];
+			//from the last line so that each chain is in increasing order
+			for(int i = base.size() - 1; i >= 0; i--){
+				String line = base.get(i);
+				int hash = line.hashCode();
+				int slot = mix(hash) & mask;
+				while(slots[slot] != 0 && !sameLine(base.get(slots[slot] - 1), hash, line)){
+					slot = (slot + 1) & mask;
+				}
+				sameLine[i] = slots[slot] - 1;
+				slots[slot] = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * @return the whole record: header then compressed version
+	 */
+	private static byte[] withHeader(byte type, long timestamp, ByteArrayOutputStream bytes) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_HEADER_LENGTH + bytes.size());
+		DataOutputStream out = new DataOutputStream(record);
+		out.writeByte(type);
+		out.writeLong(timestamp);
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		return record.toByteArray();
+	}
+
+	private static boolean sameLine(String line, int hash, String other) {
+		return line.hashCode() == hash && line.equals(other);
+	}
+
+	/**
+	 * spread String hash codes, which are close to each other for similar lines, over the low bits used by the table
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static DataOutputStream compressing(ByteArrayOutputStream bytes) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		return new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE){
+			@Override
+			public void close() throws IOException {
+				try{
+					super.close();
+				}finally{
+					//not done by DeflaterOutputStream for a given deflater
+					deflater.end();
+				}
+			}
+		}, BUFFER_SIZE));
+	}
+
+	private static void writeCopy(DataOutputStream out, int start, int count) throws IOException {
+		if(count > 0){
+			out.writeByte(COPY);
+			out.writeInt(start);
+			out.writeInt(count);
+		}
+	}
+
+	private static void writeInsert(DataOutputStream out, String line) throws IOException {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		out.writeByte(INSERT);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public int getMaxVersions() {
+		return maxVersions;
+	}
+
+	/**
+	 * @param maxVersions number of newest versions kept, 0 for no limit
+	 */
+	public void setMaxVersions(int maxVersions) {
+		this.maxVersions = maxVersions;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	/**
+	 * @param maxAgeMillis versions older than this are dropped, 0 for no limit
+	 */
+	public void setMaxAgeMillis(long maxAgeMillis) {
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	/**
+	 * @param snapshotInterval a whole copy of the content is stored at least every snapshotInterval versions
+	 */
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = Math.max(1, snapshotInterval);
+	}
+
+	public static int getDefaultMaxVersions() {
+		return defaultMaxVersions;
+	}
+
+	/**
+	 * used by stores created after this call, such as the ones of CustomProperties.saveToFileWithVersioning
+	 */
+	public static void setDefaultMaxVersions(int maxVersions) {
+		defaultMaxVersions = maxVersions;
+	}
+
+	public static long getDefaultMaxAgeMillis() {
+		return defaultMaxAgeMillis;
+	}
+
+	/**
+	 * used by stores created after this call
+	 */
+	public static void setDefaultMaxAgeMillis(long maxAgeMillis) {
+		defaultMaxAgeMillis = maxAgeMillis;
+	}
+
+	public static int getDefaultSnapshotInterval() {
+		return defaultSnapshotInterval;
+	}
+
+	/**
+	 * used by stores created after this call
+	 */
+	public static void setDefaultSnapshotInterval(int snapshotInterval) {
+		defaultSnapshotInterval = Math.max(1, snapshotInterval);
+	}
+}
@@ -0,0 +1,250 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save files in the background, at most maxDelayMillis after a save is asked
+ * <br> saves of the same file asked while one is pending are merged: only the latest content is written, and every merged save completes with that write
+ * <br> different files are written in parallel by a few daemon threads, the writes of one file one after the other, in the order they were asked
+ * <br> call flush() or close() before shutting down, pending saves are lost otherwise
+ */
+public class WriteBehindSaver implements Closeable {
+
+	private static volatile long defaultMaxDelayMillis = 500L;
+
+	/**
+	 * threads writing files, saving is mostly waiting for the disk
+	 */
+	private static final int WRITERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static WriteBehindSaver shared;
+
+	/**
+	 * a save waiting to be written, its content is replaced by newer saves of the same file
+	 */
+	private static final class Pending {
+		final File file;
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		String content;
+		CustomProperties.SaveMode saveMode;
+
+		Pending(File file) {
+			this.file = file;
+		}
+	}
+
+	private final long maxDelayMillis;
+
+	/**
+	 * hands each pending save to the writers once its delay is over
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	private final ExecutorService writers;
+
+	/**
+	 * canonical path -> pending save, guarded by itself
+	 */
+	private final Map<String,Pending> pendings = new HashMap<String,Pending>();
+
+	/**
+	 * canonical path -> last write handed to the writers and not done yet, the next write of the file runs after it, guarded by pendings
+	 */
+	private final Map<String,CompletableFuture<Void>> writing = new HashMap<String,CompletableFuture<Void>>();
+
+	private boolean closed;
+
+	/**
+	 * @param maxDelayMillis time between the first save asked for a file and its write
+	 */
+	public WriteBehindSaver(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+		ThreadFactory daemons = runnable -> {
+			Thread thread = new Thread(runnable, "CustomProperties-WriteBehindSaver");
+			thread.setDaemon(true);
+			return thread;
+		};
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, daemons);
+		executor.setRemoveOnCancelPolicy(true);
+		this.scheduler = executor;
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(WRITERS, WRITERS, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), daemons);
+		pool.allowCoreThreadTimeOut(true);
+		this.writers = pool;
+	}
+
+	/**
+	 * @return the saver used by CustomProperties.saveToFileAsync, created with the default max delay on first use or after it was closed
+	 */
+	public static synchronized WriteBehindSaver shared() {
+		if(shared == null || shared.isClosed()){
+			shared = new WriteBehindSaver(defaultMaxDelayMillis);
+		}
+		return shared;
+	}
+
+	/**
+	 * save content in file with the default save mode, later
+	 * @param file
+	 * @param content
+	 * @return completed once content, or the content of a newer save of the same file, is written
+	 * @throws IOException if the path of file can not be resolved
+	 */
+	public CompletableFuture<Void> save(File file, String content) throws IOException {
+		return save(file, content, CustomProperties.getDefaultSaveMode());
+	}
+
+	/**
+	 * @see save(File, String)
+	 */
+	public CompletableFuture<Void> save(File file, String content, CustomProperties.SaveMode saveMode) throws IOException {
+		String path = file.getCanonicalPath();
+		synchronized(pendings){
+			if(closed){
+				throw new IllegalStateException("[CustomProperties] - saver is closed");
+			}
+			Pending pending = pendings.get(path);
+			if(pending == null){
+				Pending created = new Pending(file);
+				pending = created;
+				pendings.put(path, pending);
+				scheduler.schedule(() -> dispatch(path, created), maxDelayMillis, TimeUnit.MILLISECONDS);
+			}
+			pending.content = content;
+			pending.saveMode = saveMode;
+			return pending.future;
+		}
+	}
+
+	/**
+	 * write every pending save now, and wait for them
+	 * @throws IOException the error of the first failed save, the others are still written
+	 */
+	public void flush() throws IOException {
+		List<Pending> flushed;
+		synchronized(pendings){
+			flushed = new ArrayList<Pending>(pendings.values());
+			for(Map.Entry<String,Pending> pending : new ArrayList<Map.Entry<String,Pending>>(pendings.entrySet())){
+				dispatch(pending.getKey(), pending.getValue());
+			}
+		}
+		IOException error = null;
+		for(Pending pending : flushed){
+			try{
+				pending.future.get();
+			}catch(ExecutionException e){
+				if(error == null){
+					error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new IOException("[CustomProperties] - Interrupted while flushing saves", e);
+			}
+		}
+		if(error != null){
+			throw error;
+		}
+	}
+
+	/**
+	 * flush then stop the threads, saving is not possible anymore
+	 * @throws IOException the error of the first failed save
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(pendings){
+			if(closed){
+				return;
+			}
+			closed = true;
+		}
+		try{
+			flush();
+		}finally{
+			scheduler.shutdown();
+			writers.shutdown();
+		}
+	}
+
+	public boolean isClosed() {
+		synchronized(pendings){
+			return closed;
+		}
+	}
+
+	/**
+	 * @return number of files waiting to be written
+	 */
+	public int getPendingCount() {
+		synchronized(pendings){
+			return pendings.size();
+		}
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	/**
+	 * hand the pending save to the writers, to be written after the write of the same file already handed if any,
+	 * unless it was already handed by flush()
+	 */
+	private void dispatch(String path, Pending pending) {
+		synchronized(pendings){
+			if(pendings.get(path) != pending){
+				return;
+			}
+			//saves asked from now on go to a new pending save
+			pendings.remove(path);
+			String content = pending.content;
+			CustomProperties.SaveMode saveMode = pending.saveMode;
+			Runnable write = () -> write(pending, content, saveMode);
+			CompletableFuture<Void> previous = writing.get(path);
+			CompletableFuture<Void> written = previous == null ? CompletableFuture.runAsync(write, writers) : previous.thenRunAsync(write, writers);
+			writing.put(path, written);
+			written.whenComplete((result, error) -> {
+				synchronized(pendings){
+					writing.remove(path, written);
+				}
+			});
+		}
+	}
+
+	/**
+	 * never throws, so that the next write of the file runs
+	 */
+	private static void write(Pending pending, String content, CustomProperties.SaveMode saveMode) {
+		try{
+			CustomProperties.saveToFile(pending.file, content, saveMode);
+			pending.future.complete(null);
+		}catch(Throwable e){
+			//an Error too, flush() and close() would wait for this save forever otherwise
+			pending.future.completeExceptionally(e);
+		}
+	}
+
+	public static long getDefaultMaxDelayMillis() {
+		return defaultMaxDelayMillis;
+	}
+
+	/**
+	 * @param maxDelayMillis used by savers created after this call, including the next shared() one
+	 */
+	public static void setDefaultMaxDelayMillis(long maxDelayMillis) {
+		defaultMaxDelayMillis = maxDelayMillis;
+	}
+}
@@ -0,0 +1,74 @@
+package com.saintgobain.sg4pTool.beans.properties.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomProperties;
+
+/**
+ * insertOrUpdate, each iteration edits a freshly loaded file BATCH_SIZE times so the file does not grow without bound
+ * <br> the score is the time of one batch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = EditBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = EditBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class EditBenchmark {
+
+	static final int BATCH_SIZE = 1000;
+
+	@Param({"1000", "100000", "1000000"})
+	public int lines;
+
+	@Param({"ASCII", "CJK"})
+	public Fixtures.Language language;
+
+	private CustomProperties properties;
+
+	private int edits;
+
+	@Setup(Level.Iteration)
+	public void load() throws IOException {
+		Fixtures.Fixture fixture = Fixtures.get(lines, language);
+		properties = new CustomProperties(fixture.getLocaleFile(), fixture.getReferenceFile());
+		edits = 0;
+	}
+
+	/**
+	 * update the last occurrence of keys spread over the whole file
+	 */
+	@Benchmark
+	public boolean update() throws IOException {
+		int line = propertyLine();
+		return properties.insertOrUpdate(Fixtures.key(line - 1), Fixtures.key(line), "updated " + edits);
+	}
+
+	/**
+	 * insert new keys after keys spread over the whole file
+	 */
+	@Benchmark
+	public boolean insert() throws IOException {
+		int line = propertyLine();
+		return properties.insertOrUpdate(Fixtures.key(line), "inserted.key" + edits, "inserted");
+	}
+
+	private int propertyLine() {
+		int line = (int) ((edits++ * 7919L) % lines);
+		return Fixtures.isComment(line) ? line + 1 : line;
+	}
+}
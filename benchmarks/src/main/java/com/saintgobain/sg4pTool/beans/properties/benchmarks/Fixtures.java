@@ -0,0 +1,132 @@
+package com.saintgobain.sg4pTool.beans.properties.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomProperties;
+
+/**
+ * Generated reference and locale files, kept for the whole fork once generated
+ * <br> every 20th line is a comment, the locale file misses every 7th key (to translate) and has an empty value every 11th key (bad key)
+ * <br> CJK values are written escaped (\\uXXXX) as ISO-8859-1 properties files have them
+ */
+public final class Fixtures {
+
+	public enum Language {
+		ASCII,
+		CJK
+	}
+
+	public static final class Fixture {
+
+		private final File referenceFile;
+
+		private final File localeFile;
+
+		private final String searchedValue;
+
+		private Fixture(File referenceFile, File localeFile, String searchedValue) {
+			this.referenceFile = referenceFile;
+			this.localeFile = localeFile;
+			this.searchedValue = searchedValue;
+		}
+
+		public File getReferenceFile() {
+			return referenceFile;
+		}
+
+		public File getLocaleFile() {
+			return localeFile;
+		}
+
+		/**
+		 * part of some reference values, for findAllByNameLikeAndReferenceValueLike
+		 */
+		public String getSearchedValue() {
+			return searchedValue;
+		}
+	}
+
+	private static final Map<String,Fixture> fixtures = new HashMap<String,Fixture>();
+
+	private static File directory;
+
+	private Fixtures() {
+	}
+
+	public static synchronized Fixture get(int lines, Language language) throws IOException {
+		String name = "messages" + lines + language;
+		Fixture fixture = fixtures.get(name);
+		if(fixture == null){
+			File referenceFile = new File(directory(), name + ".properties");
+			File localeFile = new File(directory(), name + "_fr.properties");
+			write(referenceFile, lines, language, false);
+			write(localeFile, lines, language, true);
+			fixture = new Fixture(referenceFile, localeFile, language == Language.ASCII ? "number 1" : value(1, language, false).substring(0, 2));
+			fixtures.put(name, fixture);
+		}
+		return fixture;
+	}
+
+	/**
+	 * a new empty file in the fixtures directory, deleted on exit
+	 */
+	public static synchronized File newFile(String name) throws IOException {
+		File file = new File(directory(), name);
+		file.createNewFile();
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static File directory() throws IOException {
+		if(directory == null){
+			directory = Files.createTempDirectory("custom-properties-benchmarks").toFile();
+			directory.deleteOnExit();
+		}
+		return directory;
+	}
+
+	public static String key(int line) {
+		return "section" + (line / 20) + ".key" + line;
+	}
+
+	public static boolean isComment(int line) {
+		return line % 20 == 0;
+	}
+
+	private static void write(File file, int lines, Language language, boolean translated) throws IOException {
+		file.deleteOnExit();
+		try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CustomProperties.OFFICIAL_READ_ENCODING))){
+			for(int i = 0; i < lines; i++){
+				if(isComment(i)){
+					writer.write("# section " + (i / 20));
+				}else if(translated && i % 7 == 0){
+					continue;
+				}else if(translated && i % 11 == 0){
+					writer.write(key(i) + "=");
+				}else{
+					writer.write(key(i) + "=" + CustomProperties.escapeUnicode(value(i, language, translated)));
+				}
+				writer.write('\n');
+			}
+		}
+	}
+
+	private static String value(int line, Language language, boolean translated) {
+		if(language == Language.ASCII){
+			return (translated ? "Valeur numero " : "Value number ") + line + " of the file";
+		}
+		StringBuilder value = new StringBuilder();
+		for(int i = 0; i < 8; i++){
+			//CJK unified ideographs
+			value.append((char) (0x4E00 + (line * 7 + i * 13 + (translated ? 101 : 0)) % 0x5000));
+		}
+		return value.append(' ').append(line).toString();
+	}
+}
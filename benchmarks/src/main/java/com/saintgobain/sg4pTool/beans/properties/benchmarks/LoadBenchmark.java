@@ -0,0 +1,52 @@
+package com.saintgobain.sg4pTool.beans.properties.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomProperties;
+
+/**
+ * constructor loading: reading and parsing both files, then building the content list
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class LoadBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int lines;
+
+	@Param({"ASCII", "CJK"})
+	public Fixtures.Language language;
+
+	@Param({"READER", "NIO"})
+	public CustomProperties.LoadMode loadMode;
+
+	private Fixtures.Fixture fixture;
+
+	@Setup
+	public void setup() throws IOException {
+		fixture = Fixtures.get(lines, language);
+		CustomProperties.setDefaultLoadMode(loadMode);
+	}
+
+	@Benchmark
+	public CustomProperties load() throws IOException {
+		return new CustomProperties(fixture.getLocaleFile(), fixture.getReferenceFile());
+	}
+}
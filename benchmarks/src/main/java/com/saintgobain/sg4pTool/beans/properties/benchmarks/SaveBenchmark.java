@@ -0,0 +1,56 @@
+package com.saintgobain.sg4pTool.beans.properties.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomProperties;
+
+/**
+ * saveToFile of a file loaded once, to a file of the fixtures directory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SaveBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int lines;
+
+	@Param({"ASCII", "CJK"})
+	public Fixtures.Language language;
+
+	@Param({"IN_PLACE", "ATOMIC"})
+	public CustomProperties.SaveMode saveMode;
+
+	private CustomProperties properties;
+
+	private File savedFile;
+
+	@Setup
+	public void setup() throws IOException {
+		Fixtures.Fixture fixture = Fixtures.get(lines, language);
+		properties = new CustomProperties(fixture.getLocaleFile(), fixture.getReferenceFile());
+		savedFile = Fixtures.newFile("saved" + lines + language + saveMode + ".properties");
+	}
+
+	@Benchmark
+	public void saveToFile() throws IOException {
+		CustomProperties.saveToFile(savedFile, properties, saveMode);
+	}
+}
@@ -0,0 +1,64 @@
+package com.saintgobain.sg4pTool.beans.properties.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saintgobain.sg4pTool.beans.properties.CustomProperties;
+import com.saintgobain.sg4pTool.beans.properties.PropertiesDifferent;
+
+/**
+ * the searches of translators, on a file loaded once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SearchBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int lines;
+
+	@Param({"ASCII", "CJK"})
+	public Fixtures.Language language;
+
+	private CustomProperties properties;
+
+	private String searchedValue;
+
+	@Setup
+	public void setup() throws IOException {
+		Fixtures.Fixture fixture = Fixtures.get(lines, language);
+		properties = new CustomProperties(fixture.getLocaleFile(), fixture.getReferenceFile());
+		searchedValue = fixture.getSearchedValue();
+	}
+
+	@Benchmark
+	public List<PropertiesDifferent> findKeysToTranslate() {
+		return properties.findKeysToTranslate();
+	}
+
+	@Benchmark
+	public List<PropertiesDifferent> findBadKeys() {
+		return properties.findBadKeys();
+	}
+
+	@Benchmark
+	public List<PropertiesDifferent> findAllByNameLikeAndReferenceValueLike() {
+		return properties.findAllByNameLikeAndReferenceValueLike("key1", false, searchedValue);
+	}
+}
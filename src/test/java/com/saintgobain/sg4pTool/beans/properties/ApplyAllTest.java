@@ -0,0 +1,82 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * applyAll against insertOrUpdate called for each difference in order
+ */
+public class ApplyAllTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<PropertiesDifferent> randomDifferences(Random random, int size) {
+		List<PropertiesDifferent> differences = new ArrayList<PropertiesDifferent>();
+		for(int i = random.nextInt(2 * size); i > 0; i--){
+			//keys above size are new, some of them inserted after each other
+			String key = "k" + random.nextInt(size + size / 2);
+			String keyBefore = random.nextInt(10) == 0 ? "" : "k" + random.nextInt(size + size / 2);
+			String value;
+			switch(random.nextInt(8)){
+				case 0:
+					value = "";
+					break;
+				case 1:
+					value = null;
+					break;
+				case 2:
+					value = "café " + i;
+					break;
+				default:
+					value = "t" + i;
+			}
+			differences.add(new PropertiesDifferent(key, "", value, keyBefore));
+		}
+		return differences;
+	}
+
+	@Test
+	public void applyAllMatchesSequentialInserts() throws IOException {
+		Random random = new Random(1);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		for(int round = 0; round < 200; round++){
+			int size = 5 + random.nextInt(100);
+			Files.write(reference.toPath(), ReferenceIndexTest.randomLines(random, size), StandardCharsets.ISO_8859_1);
+			Files.write(file.toPath(), ReferenceIndexTest.randomLines(random, size), StandardCharsets.ISO_8859_1);
+			List<PropertiesDifferent> differences = randomDifferences(random, size);
+
+			CustomProperties sequential = new CustomProperties(file, reference);
+			List<CustomProperties.ApplyResult> expectedResults = new ArrayList<CustomProperties.ApplyResult>();
+			for(PropertiesDifferent difference : differences){
+				String value = difference.getDifferentValue();
+				boolean existed = sequential.getContentList().stream().anyMatch(line -> sequential.getKeyFromString(line).equals(difference.getKey()));
+				sequential.insertOrUpdate(difference.getTheKeyBeforeThis(), difference.getKey(), value);
+				expectedResults.add(value == null || value.isEmpty() ? CustomProperties.ApplyResult.IGNORED
+						: existed ? CustomProperties.ApplyResult.UPDATED : CustomProperties.ApplyResult.INSERTED);
+			}
+
+			CustomProperties batch = new CustomProperties(file, reference);
+			assertEquals(expectedResults, batch.applyAll(differences));
+			assertEquals(sequential.getContentList(), batch.getContentList());
+			assertEquals(sequential.getProperties(), batch.getProperties());
+			assertEquals(sequential.writeContentAsString(), batch.writeContentAsString());
+			for(PropertiesDifferent difference : differences){
+				assertEquals(sequential.getValueByKey(difference.getKey()), batch.getValueByKey(difference.getKey()));
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * SaveMode.ATOMIC writes what IN_PLACE writes, and another process loading the file never sees it partially written
+ */
+public class AtomicSaveTest {
+
+	private static final int LINES = 3000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.IN_PLACE);
+	}
+
+	@Test
+	public void atomicWritesSameBytesAndLeavesNoTempFile() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		BaselineScenario.generate(reference, 1, 500, true);
+		CustomProperties properties = new CustomProperties(reference, reference);
+		properties.insertOrUpdate("key3", "added", "é中\n");
+		File inPlace = new File(dir, "in_place.properties");
+		File atomic = new File(dir, "atomic.properties");
+		CustomProperties.saveToFile(inPlace, properties, CustomProperties.SaveMode.IN_PLACE);
+		CustomProperties.saveToFile(atomic, properties, CustomProperties.SaveMode.ATOMIC);
+		CustomProperties.saveToFile(atomic, properties, CustomProperties.SaveMode.ATOMIC);
+		assertArrayEquals(Files.readAllBytes(inPlace.toPath()), Files.readAllBytes(atomic.toPath()));
+		List<String> names = new ArrayList<String>(Arrays.asList(dir.list()));
+		names.removeIf(name -> name.endsWith(".lock"));
+		names.sort(null);
+		assertEquals(Arrays.asList("atomic.properties", "in_place.properties", "messages.properties"), names);
+	}
+
+	@Test
+	public void otherProcessNeverSeesPartialFile() throws Exception {
+		File file = new File(folder.newFolder(), "shared.properties");
+		Files.write(file.toPath(), content(0), StandardCharsets.ISO_8859_1);
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process saver = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Saver.class.getName(), file.getPath())
+				.redirectErrorStream(true).start();
+		CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.ATOMIC);
+		int loads = 0;
+		try{
+			while(saver.isAlive() || loads == 0){
+				CustomProperties properties = new CustomProperties(file, file);
+				assertEquals(LINES, properties.size());
+				properties.insertOrUpdate("k0", "k0", "parent " + loads++);
+				CustomProperties.saveToFile(file, properties.writeContentAsString());
+			}
+		}finally{
+			saver.destroy();
+		}
+		assertTrue(saver.waitFor(60, TimeUnit.SECONDS));
+		assertEquals(0, saver.exitValue());
+		assertEquals(LINES, new CustomProperties(file, file).size());
+	}
+
+	private static List<String> content(int round) {
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i < LINES; i++){
+			lines.add("k" + i + "=value " + round + " " + i);
+		}
+		return lines;
+	}
+
+	/**
+	 * the other process: loads and saves the file atomically, exits with 1 if a load saw a partial file
+	 */
+	public static final class Saver {
+
+		public static void main(String[] args) throws IOException {
+			File file = new File(args[0]);
+			CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.ATOMIC);
+			for(int round = 1; round <= 100; round++){
+				if(new CustomProperties(file, file).size() != LINES){
+					System.exit(1);
+				}
+				CustomProperties.saveToFile(file, String.join("\n", content(round)) + "\n");
+			}
+		}
+	}
+}
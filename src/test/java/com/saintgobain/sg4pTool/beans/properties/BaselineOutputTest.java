@@ -0,0 +1,38 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Output of BaselineScenario compared with the one of the original implementation
+ */
+public class BaselineOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	static String expected() throws IOException {
+		try(InputStream in = BaselineOutputTest.class.getResourceAsStream("baseline-output.txt")){
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) >= 0){
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void defaultModesGiveBaselineOutput() throws IOException {
+		assertEquals(expected(), BaselineScenario.run(folder.newFolder()));
+	}
+}
@@ -0,0 +1,114 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Load, query, edit and save generated files through the API the library had before the indexed content model,
+ * the output of run() is compared with the one of the original implementation, kept in baseline-output.txt
+ * <br> only uses that original API, so that the expected output can be generated again from the original sources
+ */
+final class BaselineScenario {
+
+	/**
+	 * file sizes in lines, each one is run with its own seed
+	 */
+	static final int[] SIZES = {30, 80, 200};
+
+	private BaselineScenario() {
+	}
+
+	/**
+	 * @param dir empty directory
+	 * @return the results of every call, in order
+	 * @throws IOException
+	 */
+	static String run(File dir) throws IOException {
+		StringBuilder output = new StringBuilder();
+		for(int i = 0; i < SIZES.length; i++){
+			File run = new File(dir, "run" + i);
+			run.mkdirs();
+			run(run, i + 1, SIZES[i], output);
+		}
+		return output.toString();
+	}
+
+	private static void run(File dir, long seed, int size, StringBuilder o) throws IOException {
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		generate(reference, seed, size, true);
+		generate(file, seed + 100, size, false);
+		CustomProperties properties = new CustomProperties(file, reference);
+		o.append(properties.getProperties()).append('\n');
+		o.append(properties.getDuplicatedKeys()).append('\n');
+		o.append(properties.getContentList()).append('\n');
+		o.append(properties.findKeysToTranslate()).append('\n');
+		o.append(properties.findBadKeys()).append('\n');
+		o.append(properties.getEmptyKeyList()).append('\n');
+		o.append(properties.findAllByNameLike("key1", false)).append('\n');
+		o.append(properties.findAllByNameLike("key2", true)).append('\n');
+		o.append(properties.findAllByNameLikeAndReferenceValueLike("ey", false, "")).append('\n');
+		o.append(properties.findAllByNameLikeAndReferenceValueLike("ey", false, "VALUE 1")).append('\n');
+		o.append(properties.findAllByNameLikeAndReferenceValueLike("ey", true, "CAF")).append('\n');
+		o.append(properties.findKeysByNameLike("KEY3")).append('\n');
+		o.append(properties.getKeysByValue("value 5")).append('\n');
+		o.append(properties.containsValue("value 9")).append(properties.containsKey("key11")).append('\n');
+		o.append(properties.getValueByKey("key4")).append(properties.getReferenceValueByKey("key7")).append(properties.getReferenceValueByKey("# comment 0")).append('\n');
+		o.append(properties.size()).append('\n');
+		for(PropertiesDifferent difference : properties.findKeysToTranslate()){
+			properties.insertOrUpdate(difference.getTheKeyBeforeThis(), difference.getKey(), "tr " + difference.getKey() + " é中");
+		}
+		properties.insertOrUpdate("nope", "newkey", "x");
+		properties.insertOrUpdate("key3", "newkey2", "y");
+		properties.insertOrUpdate("key3", "newkey3", "z");
+		properties.insertOrUpdate("newkey3", "newkey4", "z\n:\\");
+		properties.insertOrUpdate("key3", "key5", "");
+		properties.insertOrUpdate("key3", "key6", "updated");
+		o.append(properties.findKeysToTranslate()).append(properties.getProperties()).append('\n');
+		o.append(properties.writeContentAsString()).append('\n');
+		o.append(properties.writeOldContentAsString().length()).append('\n');
+		File saved = new File(dir, "out.properties");
+		CustomProperties.saveToFile(saved, properties.writeContentAsString());
+		o.append(new String(Files.readAllBytes(saved.toPath()), StandardCharsets.UTF_8)).append('\n');
+		File chinese = new File(dir, "messages_zh.properties");
+		CustomProperties.generateChinesePropertiesFile(chinese, reference);
+		o.append(new String(Files.readAllBytes(chinese.toPath()), StandardCharsets.UTF_8)).append('\n');
+		o.append(CustomProperties.escapeUnicode("aé\n\r中z=\\ #")).append('\n');
+	}
+
+	/**
+	 * @param full false to leave out a third of the plain lines, as in a file to translate
+	 */
+	static void generate(File file, long seed, int size, boolean full) throws IOException {
+		Random random = new Random(seed);
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1)){
+			for(int i = 0; i < size; i++){
+				String eol = random.nextInt(10) == 0 ? "\r\n" : "\n";
+				int type = random.nextInt(20);
+				if(type == 0){
+					writer.write("# comment " + i + eol);
+				}else if(type == 1){
+					writer.write(eol);
+				}else if(type == 2){
+					writer.write("key" + random.nextInt(size) + "=dup" + i + eol);
+				}else if(type == 3){
+					writer.write("key" + i + "=" + eol);
+				}else if(type == 4){
+					writer.write("key" + i + "=caf\\u00e9 \\u4e2d\\u6587 " + i + eol);
+				}else if(type == 5){
+					writer.write("key" + i + "=a\\\\b\\tc d" + eol);
+				}else if(!full && random.nextInt(3) == 0){
+					continue;
+				}else{
+					writer.write("key" + i + "=value " + i + eol);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * BulkProcessor totals and failures against the outcome of each task, and its bound on concurrency
+ */
+public class BulkProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void everyFileIsCountedWhateverItThrows() throws IOException {
+		List<File> files = new ArrayList<File>();
+		for(int i = 0; i < 50; i++){
+			files.add(new File("f" + i));
+		}
+		BulkProcessor.Result result = BulkProcessor.process(files, 4, file -> {
+			int i = Integer.parseInt(file.getName().substring(1));
+			switch(i % 10){
+				case 3:
+					throw new AssertionError("e" + i);
+				case 7:
+					throw new IOException("x" + i);
+				case 9:
+					throw new IllegalStateException("r" + i);
+				default:
+			}
+		});
+		assertEquals(50, result.getFileCount());
+		assertEquals(35, result.getSucceededCount());
+		assertFalse(result.isSuccessful());
+		List<File> failed = new ArrayList<File>();
+		for(Map.Entry<File,Throwable> failure : result.getFailures().entrySet()){
+			failed.add(failure.getKey());
+			int i = Integer.parseInt(failure.getKey().getName().substring(1));
+			Class<?> expected = i % 10 == 3 ? AssertionError.class : i % 10 == 7 ? IOException.class : IllegalStateException.class;
+			assertEquals(expected, failure.getValue().getClass());
+		}
+		List<File> expectedFailed = new ArrayList<File>();
+		for(File file : files){
+			int i = Integer.parseInt(file.getName().substring(1));
+			if(i % 10 == 3 || i % 10 == 7 || i % 10 == 9){
+				expectedFailed.add(file);
+			}
+		}
+		assertEquals(expectedFailed, failed);
+		assertEquals("35/50 files processed, 15 failed", result.toString());
+	}
+
+	@Test
+	public void concurrencyIsBounded() throws IOException {
+		for(int maxConcurrency : new int[]{1, 3, 16}){
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger peak = new AtomicInteger();
+			BulkProcessor.Result result = BulkProcessor.process(Collections.nCopies(200, new File("x")), maxConcurrency, file -> {
+				peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try{
+					Thread.sleep(1);
+				}catch(InterruptedException e){
+					throw new IOException(e);
+				}finally{
+					running.decrementAndGet();
+				}
+			});
+			assertTrue(result.isSuccessful());
+			assertEquals(200, result.getSucceededCount());
+			assertTrue(peak.get() <= maxConcurrency);
+		}
+		assertTrue(BulkProcessor.process(Collections.<File>emptyList(), file -> {
+		}).isSuccessful());
+		assertThrows(IllegalArgumentException.class, () -> BulkProcessor.process(Arrays.asList(new File("x")), 0, file -> {
+		}));
+	}
+
+	@Test
+	public void modulesAreProcessed() throws IOException {
+		File dir = folder.newFolder();
+		List<File> references = new ArrayList<File>();
+		for(int module = 0; module < 20; module++){
+			File moduleDir = new File(dir, "m" + module);
+			moduleDir.mkdirs();
+			File reference = new File(moduleDir, "messages.properties");
+			BaselineScenario.generate(reference, module, 200, true);
+			Files.write(new File(moduleDir, "messages_fr.properties").toPath(), Arrays.asList("key1=un"), StandardCharsets.ISO_8859_1);
+			references.add(reference);
+		}
+		File missing = new File(dir, "missing/messages.properties");
+		references.add(missing);
+		BulkProcessor.Result result = BulkProcessor.process(references, 8, reference -> {
+			CustomProperties.generateChinesePropertiesFile("messages_zh.properties", reference);
+			File file = new File(reference.getParentFile(), "messages_fr.properties");
+			CustomProperties properties = new CustomProperties(file, reference);
+			properties.insertOrUpdate("key1", "added", "deux");
+			CustomProperties.saveToFile(file, properties);
+		});
+		assertEquals(20, result.getSucceededCount());
+		assertEquals(Collections.singleton(missing), result.getFailures().keySet());
+		for(File reference : references.subList(0, 20)){
+			File moduleDir = reference.getParentFile();
+			assertEquals("deux", new CustomProperties(new File(moduleDir, "messages_fr.properties"), reference).getValueByKey("added"));
+			assertTrue(new File(moduleDir, "messages_zh.properties").length() > 0);
+		}
+	}
+
+	@Test
+	public void tasksOnTheSameFileWaitForEachOther() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		BaselineScenario.generate(reference, 1, 200, true);
+		BaselineScenario.generate(file, 2, 200, false);
+		int lines = new CustomProperties(file, reference).getContentList().size();
+		BulkProcessor.Result result = BulkProcessor.process(Collections.nCopies(200, file), 50, same -> {
+			CustomProperties properties = new CustomProperties(same, reference);
+			assertEquals(lines, properties.getContentList().size());
+			CustomProperties.saveToFile(same, properties);
+		});
+		assertEquals(result.toString(), 200, result.getSucceededCount());
+	}
+}
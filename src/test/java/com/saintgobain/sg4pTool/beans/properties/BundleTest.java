@@ -0,0 +1,100 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * CustomPropertiesBundle.load against loading each locale file on its own
+ */
+public class BundleTest {
+
+	static final String[] LOCALES = {"de", "es", "fr", "fr_FR", "it", "ja", "zh"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.READER);
+	}
+
+	/**
+	 * a reference file, its locale files and files that are not part of its bundle
+	 * @return the reference file
+	 */
+	static File bundle(File dir, Random random, int size) throws IOException {
+		File reference = new File(dir, "messages.properties");
+		Files.write(reference.toPath(), ReferenceIndexTest.randomLines(random, size), StandardCharsets.ISO_8859_1);
+		for(String locale : LOCALES){
+			Files.write(new File(dir, "messages_" + locale + ".properties").toPath(), ReferenceIndexTest.randomLines(random, size), StandardCharsets.ISO_8859_1);
+		}
+		Files.write(new File(dir, "messages_.properties").toPath(), Arrays.asList("a=b"), StandardCharsets.ISO_8859_1);
+		Files.write(new File(dir, "messages_en.txt").toPath(), Arrays.asList("a=b"), StandardCharsets.ISO_8859_1);
+		Files.write(new File(dir, "other_en.properties").toPath(), Arrays.asList("a=b"), StandardCharsets.ISO_8859_1);
+		new File(dir, "messages_nl.properties").mkdir();
+		return reference;
+	}
+
+	static String dump(CustomProperties properties) throws IOException {
+		return properties.getProperties() + "|" + properties.getDuplicatedKeys() + "|" + properties.getContentList() + "|"
+				+ properties.getReferenceContentList() + "|" + properties.findKeysToTranslate() + "|" + properties.findBadKeys() + "|"
+				+ properties.writeOldContentAsString() + "|" + properties.writeContentAsString();
+	}
+
+	@Test
+	public void bundleMatchesLoadingEachFile() throws IOException {
+		Random random = new Random(1);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try{
+			for(CustomProperties.LoadMode loadMode : Arrays.asList(CustomProperties.LoadMode.READER, CustomProperties.LoadMode.NIO)){
+				CustomProperties.setDefaultLoadMode(loadMode);
+				for(int round = 0; round < 10; round++){
+					File dir = folder.newFolder();
+					File reference = bundle(dir, random, 10 + random.nextInt(300));
+					Map<String,CustomProperties> bundle = round % 2 == 0 ? CustomPropertiesBundle.load(dir, reference) : CustomPropertiesBundle.load(dir, reference, executor);
+					assertEquals(Arrays.asList(LOCALES), Arrays.asList(bundle.keySet().toArray()));
+					for(String locale : LOCALES){
+						CustomProperties alone = new CustomProperties(new File(dir, "messages_" + locale + ".properties"), reference);
+						assertEquals(locale, dump(alone), dump(bundle.get(locale)));
+					}
+				}
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void bundleFilesDoNotShareTheirEdits() throws IOException {
+		File dir = folder.newFolder();
+		File reference = bundle(dir, new Random(2), 50);
+		Map<String,CustomProperties> bundle = CustomPropertiesBundle.load(dir, reference);
+		String german = dump(bundle.get("de"));
+		bundle.get("fr").insertOrUpdate("k1", "added", "ajouté");
+		bundle.get("fr").setReferenceContentList(Arrays.asList("x=y"));
+		assertEquals(german, dump(bundle.get("de")));
+	}
+
+	@Test
+	public void failingFileFailsTheBundle() throws IOException {
+		File dir = folder.newFolder();
+		File reference = bundle(dir, new Random(3), 50);
+		Files.write(new File(dir, "messages_pt.properties").toPath(), Arrays.asList("a=\\u12"), StandardCharsets.ISO_8859_1);
+		assertThrows(IOException.class, () -> CustomPropertiesBundle.load(dir, reference));
+	}
+}
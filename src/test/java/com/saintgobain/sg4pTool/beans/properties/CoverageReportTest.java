@@ -0,0 +1,107 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * CustomPropertiesBundle.analyze against a report built from each locale file loaded on its own
+ */
+public class CoverageReportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static CoverageReport.Status status(CustomProperties properties, String key) {
+		String value = properties.getProperties().get(key);
+		return value == null ? CoverageReport.Status.MISSING : value.isEmpty() ? CoverageReport.Status.EMPTY : CoverageReport.Status.PRESENT;
+	}
+
+	@Test
+	public void reportMatchesEachFile() throws IOException {
+		Random random = new Random(1);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try{
+			for(int round = 0; round < 10; round++){
+				File dir = folder.newFolder();
+				File reference = BundleTest.bundle(dir, random, 10 + random.nextInt(300));
+				CoverageReport report = round % 2 == 0 ? CustomPropertiesBundle.analyze(dir, reference) : CustomPropertiesBundle.analyze(dir, reference, pool);
+				assertEquals(Arrays.asList(BundleTest.LOCALES), report.getLocales());
+
+				CustomProperties referenceAlone = new CustomProperties(reference, reference);
+				List<String> keys = new ArrayList<String>();
+				for(String line : referenceAlone.getReferenceContentList()){
+					String key = referenceAlone.getKeyFromString(line);
+					if(referenceAlone.isProperties(line) && !keys.contains(key)){
+						keys.add(key);
+					}
+				}
+				assertEquals(keys, report.getKeys());
+
+				StringBuilder counts = new StringBuilder();
+				Map<String,Map<String,CoverageReport.Status>> rows = new LinkedHashMap<String,Map<String,CoverageReport.Status>>();
+				for(String locale : BundleTest.LOCALES){
+					CustomProperties alone = new CustomProperties(new File(dir, "messages_" + locale + ".properties"), reference);
+					assertEquals(alone.findKeysToTranslate().toString(), report.getKeysToTranslate(locale).toString());
+					assertEquals(alone.findBadKeys().toString(), report.getBadKeys(locale).toString());
+					int[] count = new int[CoverageReport.Status.values().length];
+					for(String key : keys){
+						CoverageReport.Status status = status(alone, key);
+						assertEquals(status, report.getStatus(key, locale));
+						rows.computeIfAbsent(key, k -> new LinkedHashMap<String,CoverageReport.Status>()).put(locale, status);
+						count[status.ordinal()]++;
+					}
+					counts.append(locale);
+					for(CoverageReport.Status status : CoverageReport.Status.values()){
+						assertEquals(count[status.ordinal()], report.count(locale, status));
+						counts.append(' ').append(status).append('=').append(count[status.ordinal()]);
+					}
+					counts.append('\n');
+				}
+				for(String key : keys){
+					assertEquals(rows.get(key), report.getStatuses(key));
+				}
+				assertEquals(counts.toString(), report.toString());
+			}
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void unknownKeysAndLocales() throws IOException {
+		File dir = folder.newFolder();
+		File reference = BundleTest.bundle(dir, new Random(2), 50);
+		CoverageReport report = CustomPropertiesBundle.analyze(dir, reference);
+		assertNull(report.getStatus("unknown", "fr"));
+		assertNull(report.getStatus(report.getKeys().get(0), "nl"));
+		assertTrue(report.getStatuses("unknown").isEmpty());
+		assertEquals(0, report.count("nl", CoverageReport.Status.MISSING));
+		assertNull(report.getKeysToTranslate("nl"));
+		assertNull(report.getBadKeys("nl"));
+	}
+
+	@Test
+	public void emptyBundle() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		BaselineScenario.generate(reference, 3, 30, true);
+		CoverageReport report = CustomPropertiesBundle.analyze(dir, reference);
+		assertTrue(report.getLocales().isEmpty());
+		assertEquals("", report.toString());
+	}
+}
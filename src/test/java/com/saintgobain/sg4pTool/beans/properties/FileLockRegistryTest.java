@@ -0,0 +1,134 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * FileLockRegistry exclusion, sharing and cleanup, and loads racing with saves on the same file
+ */
+public class FileLockRegistryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.IN_PLACE);
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void writersExcludeEachOther() throws Exception {
+		File file = folder.newFile("a.properties");
+		AtomicInteger inside = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for(int i = 0; i < 4; i++){
+			futures.add(executor.submit(() -> {
+				for(int j = 0; j < 200; j++){
+					try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(file)){
+						if(inside.incrementAndGet() != 1){
+							overlaps.incrementAndGet();
+						}
+						Thread.yield();
+						inside.decrementAndGet();
+					}
+				}
+				return null;
+			}));
+		}
+		for(Future<?> future : futures){
+			future.get(60, TimeUnit.SECONDS);
+		}
+		assertEquals(0, overlaps.get());
+		assertEquals(0, FileLockRegistry.getQueueDepth(file));
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void readersShareAndWritersWait() throws Exception {
+		File file = folder.newFile("b.properties");
+		//another path to the same file
+		File alias = new File(new File(file.getParentFile(), "."), file.getName());
+		CountDownLatch writing = new CountDownLatch(1);
+		try(FileLockRegistry.Handle read = FileLockRegistry.lockForReading(file)){
+			Future<?> reader = executor.submit(() -> {
+				try(FileLockRegistry.Handle lock = FileLockRegistry.lockForReading(alias)){
+					return null;
+				}
+			});
+			reader.get(10, TimeUnit.SECONDS);
+			Future<?> writer = executor.submit(() -> {
+				try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(alias)){
+					writing.countDown();
+				}
+				return null;
+			});
+			assertFalse(writing.await(200, TimeUnit.MILLISECONDS));
+			assertEquals(2, FileLockRegistry.getQueueDepth(file));
+		}
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void writerCanRead() throws IOException {
+		File file = folder.newFile("c.properties");
+		try(FileLockRegistry.Handle write = FileLockRegistry.lockForWriting(file);
+				FileLockRegistry.Handle read = FileLockRegistry.lockForReading(file)){
+			assertEquals(2, FileLockRegistry.getQueueDepth(file));
+		}
+		assertEquals(0, FileLockRegistry.getQueueDepth(file));
+	}
+
+	@Test
+	public void loadsNeverSeePartialSaves() throws Exception {
+		for(CustomProperties.SaveMode saveMode : CustomProperties.SaveMode.values()){
+			CustomProperties.setDefaultSaveMode(saveMode);
+			File file = new File(folder.newFolder(), "d.properties");
+			List<String> lines = new ArrayList<String>();
+			for(int i = 0; i < 2000; i++){
+				lines.add("k" + i + "=v" + i);
+			}
+			Files.write(file.toPath(), lines, StandardCharsets.ISO_8859_1);
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for(int i = 0; i < 100; i++){
+				int value = i;
+				futures.add(executor.submit(() -> {
+					CustomProperties properties = new CustomProperties(file, file);
+					assertEquals(2000, properties.size());
+					properties.insertOrUpdate("k1", "k1", "x" + value);
+					CustomProperties.saveToFile(file, properties.writeContentAsString());
+					return null;
+				}));
+			}
+			for(Future<?> future : futures){
+				future.get(120, TimeUnit.SECONDS);
+			}
+			assertEquals(2000, new CustomProperties(file, file).size());
+			assertEquals(0, CustomProperties.getQueueDepth(file));
+		}
+	}
+}
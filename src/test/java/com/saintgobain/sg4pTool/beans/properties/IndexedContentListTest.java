@@ -0,0 +1,163 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * IndexedContentList against an ArrayList model, over random edits
+ */
+public class IndexedContentListTest {
+
+	private static final int KEYS = 20;
+
+	private static String key(String line) {
+		int separator = line.indexOf('=');
+		return separator < 0 ? line : line.substring(0, separator);
+	}
+
+	@Test
+	public void randomEditsMatchArrayList() {
+		Random random = new Random(1);
+		for(int round = 0; round < 100; round++){
+			IndexedContentList list = new IndexedContentList(IndexedContentListTest::key);
+			List<String> model = new ArrayList<String>();
+			if(random.nextBoolean()){
+				for(int i = random.nextInt(50); i > 0; i--){
+					model.add(line(random, i));
+				}
+				list.rebuild(model);
+			}
+			for(int op = 0; op < 300; op++){
+				edit(random, list, model, op);
+				assertEquals("round " + round + " op " + op, model, new ArrayList<String>(list));
+				if(op % 10 == 0){
+					assertIndexed(list, model);
+				}
+			}
+			assertIndexed(list, model);
+		}
+	}
+
+	@Test
+	public void copyIsIndependent() {
+		Random random = new Random(2);
+		IndexedContentList list = new IndexedContentList(IndexedContentListTest::key);
+		List<String> model = new ArrayList<String>();
+		for(int op = 0; op < 200; op++){
+			edit(random, list, model, op);
+		}
+		IndexedContentList copy = list.copy();
+		List<String> copyModel = new ArrayList<String>(model);
+		for(int op = 0; op < 200; op++){
+			edit(random, list, model, op);
+			edit(random, copy, copyModel, op);
+		}
+		assertEquals(model, new ArrayList<String>(list));
+		assertEquals(copyModel, new ArrayList<String>(copy));
+		assertIndexed(list, model);
+		assertIndexed(copy, copyModel);
+	}
+
+	@Test
+	public void retainNodesMatchesRemoveIf() {
+		Random random = new Random(3);
+		for(int round = 0; round < 50; round++){
+			IndexedContentList list = new IndexedContentList(IndexedContentListTest::key);
+			List<String> model = new ArrayList<String>();
+			for(int op = 0; op < 100; op++){
+				edit(random, list, model, op);
+			}
+			String removedKey = "k" + random.nextInt(KEYS);
+			int removed = list.retainNodes(node -> !node.key.equals(removedKey));
+			int expected = model.size();
+			model.removeIf(line -> key(line).equals(removedKey));
+			assertEquals(expected - model.size(), removed);
+			assertEquals(model, new ArrayList<String>(list));
+			assertIndexed(list, model);
+		}
+	}
+
+	private static String line(Random random, int value) {
+		return "k" + random.nextInt(KEYS) + "=" + value;
+	}
+
+	private static void edit(Random random, IndexedContentList list, List<String> model, int op) {
+		String line = line(random, op);
+		switch(random.nextInt(6)){
+			case 0:
+			case 1:{
+				int index = random.nextInt(model.size() + 1);
+				model.add(index, line);
+				list.add(index, line);
+				break;
+			}
+			case 2:
+				if(!model.isEmpty()){
+					int index = random.nextInt(model.size());
+					assertEquals(model.set(index, line), list.set(index, line));
+				}
+				break;
+			case 3:
+				if(!model.isEmpty()){
+					int index = random.nextInt(model.size());
+					assertEquals(model.remove(index), list.remove(index));
+				}
+				break;
+			case 4:{
+				int index = random.nextInt(model.size() + 1);
+				List<String> lines = new ArrayList<String>();
+				for(int i = random.nextInt(5); i > 0; i--){
+					lines.add(line(random, i));
+				}
+				model.addAll(index, lines);
+				list.addAll(index, lines);
+				break;
+			}
+			default:{
+				Iterator<String> iterator = list.iterator();
+				Iterator<String> modelIterator = model.iterator();
+				while(iterator.hasNext()){
+					assertEquals(modelIterator.next(), iterator.next());
+					if(random.nextInt(30) == 0){
+						iterator.remove();
+						modelIterator.remove();
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertIndexed(IndexedContentList list, List<String> model) {
+		assertEquals(model.size(), list.size());
+		for(int i = 0; i < model.size(); i++){
+			assertEquals(model.get(i), list.get(i));
+		}
+		for(int k = 0; k < KEYS; k++){
+			String key = "k" + k;
+			List<Integer> lines = new ArrayList<Integer>();
+			for(int i = 0; i < model.size(); i++){
+				if(key(model.get(i)).equals(key)){
+					lines.add(i);
+				}
+			}
+			int last = lines.isEmpty() ? -1 : lines.get(lines.size() - 1);
+			assertEquals(key, last, list.lastIndexOfKey(key));
+			assertEquals(key, !lines.isEmpty(), list.containsKey(key));
+			assertEquals(key, lines.size(), list.countOfKey(key));
+			List<IndexedContentList.Node> nodes = list.nodesOfKey(key);
+			assertEquals(key, lines.size(), nodes.size());
+			for(int i = 0; i < nodes.size(); i++){
+				assertEquals(key, (int) lines.get(i), list.rank(nodes.get(i)));
+				assertEquals(model.get(lines.get(i)), nodes.get(i).line());
+			}
+			assertTrue(key, lines.isEmpty() ? list.lastNodeOfKey(key) == null : list.rank(list.lastNodeOfKey(key)) == last);
+		}
+	}
+}
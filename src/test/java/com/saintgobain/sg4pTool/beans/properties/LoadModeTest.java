@@ -0,0 +1,83 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * LoadMode.NIO loads what LoadMode.READER loads, line terminators and lines across chunks included
+ */
+public class LoadModeTest {
+
+	private static final String[] CASES = {"", "a=b", "a=b\n", "a=b\r\nc=d\r\n", "a=b\rc=d\r", "\r", "\n", "\r\n\r",
+			"a=b\n\n\nc=\\u00e9\n  # x=y\n/-z=1\n=q\n\u00e9t\u00e9=\u00e0\n", "a=1\na=2\nb=3\na=4", "a\\\n=b\\=c\n"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.READER);
+	}
+
+	private static String dump(File file, File reference, CustomProperties.LoadMode loadMode) throws IOException {
+		CustomProperties.setDefaultLoadMode(loadMode);
+		CustomProperties properties = new CustomProperties(file, reference);
+		return properties.getProperties() + "|" + properties.getDuplicatedKeys() + "|" + properties.getContentList() + "|"
+				+ properties.getReferenceContentList() + "|" + properties.writeOldContentAsString() + "|" + properties.writeContentAsString();
+	}
+
+	private static void assertSameLoad(File file, File reference) throws IOException {
+		assertEquals(file.getName(), dump(file, reference, CustomProperties.LoadMode.READER), dump(file, reference, CustomProperties.LoadMode.NIO));
+	}
+
+	@Test
+	public void edgeCasesLoadTheSame() throws IOException {
+		File dir = folder.newFolder();
+		for(int i = 0; i < CASES.length; i++){
+			File file = new File(dir, "case" + i + ".properties");
+			Files.write(file.toPath(), CASES[i].getBytes(StandardCharsets.ISO_8859_1));
+			assertSameLoad(file, file);
+		}
+	}
+
+	@Test
+	public void generatedFilesLoadTheSame() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		BaselineScenario.generate(reference, 1, 500, true);
+		BaselineScenario.generate(file, 2, 500, false);
+		assertSameLoad(file, reference);
+	}
+
+	@Test
+	public void linesAcrossChunksLoadTheSame() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; content.length() < 3 * ByteLineReader.CHUNK_SIZE; i++){
+			content.append("key").append(i).append('=').append(i % 5 == 0 ? "x\\u4e2d" : "value").append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+		//a line longer than a chunk, ended by a lone \r
+		char[] longValue = new char[2 * ByteLineReader.CHUNK_SIZE + 7];
+		Arrays.fill(longValue, 'y');
+		content.append("long=").append(longValue).append('\r');
+		File file = new File(folder.newFolder(), "big.properties");
+		Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.ISO_8859_1));
+		assertSameLoad(file, file);
+	}
+
+	@Test
+	public void nioLoadGivesBaselineOutput() throws IOException {
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.NIO);
+		assertEquals(BaselineOutputTest.expected(), BaselineScenario.run(folder.newFolder()));
+	}
+}
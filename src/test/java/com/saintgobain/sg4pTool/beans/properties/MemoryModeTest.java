@@ -0,0 +1,120 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * MemoryMode.COMPACT gives what STANDARD gives, after loading in every load mode and after the same edits
+ */
+public class MemoryModeTest {
+
+	private static final String[] LINE_ENDS = {"\n", "\r\n", "\r"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.STANDARD);
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.READER);
+	}
+
+	private static String dump(CustomProperties properties) throws IOException {
+		StringBuilder builder = new StringBuilder(BundleTest.dump(properties));
+		builder.append(properties.findAllByNameLike("ey1", false)).append(properties.findKeysByNameLike("KEY2"));
+		for(String line : properties.getContentList()){
+			builder.append(line.length()).append(',');
+		}
+		return builder.toString();
+	}
+
+	private static void randomEdits(CustomProperties properties, Random random) throws IOException {
+		for(int i = 0; i < 50; i++){
+			List<String> content = properties.getContentList();
+			int index = random.nextInt(content.size());
+			String key = properties.getKeyFromString(content.get(index));
+			if(random.nextBoolean()){
+				properties.insertOrUpdate(key, "n" + random.nextInt(600), "nv" + i);
+			}else if(properties.isProperties(content.get(index))){
+				properties.modifyByKey(index, key, "mv" + i);
+			}
+		}
+	}
+
+	private static void write(File reference, File file, Random random) throws IOException {
+		try(Writer referenceWriter = new OutputStreamWriter(new FileOutputStream(reference), StandardCharsets.ISO_8859_1);
+				Writer fileWriter = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1)){
+			for(int i = 0; i < 500; i++){
+				String referenceLine;
+				switch(random.nextInt(12)){
+					case 0:
+						referenceLine = "# c" + i;
+						break;
+					case 1:
+						referenceLine = "";
+						break;
+					case 2:
+						referenceLine = "key" + random.nextInt(300) + "=d" + i;
+						break;
+					case 3:
+						referenceLine = "ke\\u0079" + i + "=\\u4e2d" + i;
+						break;
+					case 4:
+						referenceLine = "key" + i + "=a\\\\b\\tc";
+						break;
+					default:
+						referenceLine = "key" + i + "=v" + i;
+				}
+				referenceWriter.write(referenceLine + LINE_ENDS[random.nextInt(3)]);
+				int kind = random.nextInt(10);
+				String line = kind == 0 ? "# l" + i : kind == 1 ? "key" + random.nextInt(300) + "=ld" + i
+						: kind == 2 ? "key" + i + "=caf\\u00e9\\u6587" : kind < 5 ? "" : "key" + i + "=lv" + i + " é";
+				fileWriter.write(line + LINE_ENDS[random.nextInt(3)]);
+			}
+			if(random.nextBoolean()){
+				fileWriter.write("key499=last-no-eol");
+			}
+		}
+	}
+
+	@Test
+	public void compactMatchesStandard() throws IOException {
+		Random random = new Random(3);
+		File dir = folder.newFolder();
+		for(int round = 0; round < 20; round++){
+			File reference = new File(dir, "messages" + round + ".properties");
+			File file = new File(dir, "messages" + round + "_fr.properties");
+			write(reference, file, random);
+			for(CustomProperties.LoadMode loadMode : CustomProperties.LoadMode.values()){
+				CustomProperties.setDefaultLoadMode(loadMode);
+				CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.STANDARD);
+				CustomProperties standard = new CustomProperties(file, reference);
+				CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.COMPACT);
+				CustomProperties compact = new CustomProperties(file, reference);
+				assertEquals(round + " " + loadMode, dump(standard), dump(compact));
+				randomEdits(standard, new Random(round));
+				randomEdits(compact, new Random(round));
+				assertEquals(round + " " + loadMode, dump(standard), dump(compact));
+			}
+		}
+	}
+
+	@Test
+	public void compactGivesBaselineOutput() throws IOException {
+		CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.COMPACT);
+		assertEquals(BaselineOutputTest.expected(), BaselineScenario.run(folder.newFolder()));
+	}
+}
@@ -0,0 +1,159 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * What CustomPropertiesMetrics records against the calls made, the files whose lock wait is kept, and the histogram percentiles against exact ones
+ */
+public class MetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() throws Exception {
+		CustomPropertiesMetrics.setEnabled(false);
+		CustomPropertiesMetrics.setMaxLockWaitFiles(1000);
+		CustomPropertiesMetrics.reset();
+		CustomPropertiesMetrics.unregisterMBean();
+	}
+
+	private static String run(File file, File reference) throws IOException {
+		CustomProperties properties = new CustomProperties(file, reference);
+		String result = properties.findKeysToTranslate() + "|" + properties.findBadKeys() + "|" + properties.findKeysByNameLike("K99") + "|"
+				+ properties.findAllByNameLike("k5", false);
+		CustomProperties.saveToFile(file, properties);
+		return result + "|" + properties.writeContentAsString();
+	}
+
+	private static OperationStats stats(CustomPropertiesMetrics.Operation operation) {
+		return CustomPropertiesMetrics.snapshot().get(operation);
+	}
+
+	@Test
+	public void recordsTheCallsMade() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		BaselineScenario.generate(reference, 1, 300, true);
+		BaselineScenario.generate(file, 2, 300, false);
+		//saved once, so that the next saves write the same file
+		run(file, reference);
+		CustomPropertiesMetrics.reset();
+		String disabled = run(file, reference);
+		assertEquals(0, stats(CustomPropertiesMetrics.Operation.LOAD).getCount());
+
+		CustomPropertiesMetrics.setEnabled(true);
+		long lines = 0;
+		long bytes = 0;
+		for(int i = 0; i < 5; i++){
+			lines += new CustomProperties(file, reference).getContentList().size();
+			bytes += file.length();
+			assertEquals(disabled, run(file, reference));
+		}
+		OperationStats load = stats(CustomPropertiesMetrics.Operation.LOAD);
+		assertEquals(10, load.getCount());
+		assertEquals(2 * lines, load.getLines());
+		assertEquals(2 * bytes, load.getBytes());
+		assertEquals(10, stats(CustomPropertiesMetrics.Operation.LOAD_REFERENCE).getCount());
+		assertEquals(5, stats(CustomPropertiesMetrics.Operation.SAVE).getCount());
+		assertEquals(bytes, stats(CustomPropertiesMetrics.Operation.SAVE).getBytes());
+		assertEquals(5, stats(CustomPropertiesMetrics.Operation.SAVE_ESCAPE).getCount());
+		assertEquals(5, stats(CustomPropertiesMetrics.Operation.SAVE_WRITE).getCount());
+		assertEquals(bytes, stats(CustomPropertiesMetrics.Operation.SAVE_WRITE).getBytes());
+		assertTrue(stats(CustomPropertiesMetrics.Operation.SAVE_ESCAPE).getTotalNanos() + stats(CustomPropertiesMetrics.Operation.SAVE_WRITE).getTotalNanos()
+				<= stats(CustomPropertiesMetrics.Operation.SAVE).getTotalNanos());
+		assertEquals(5, stats(CustomPropertiesMetrics.Operation.FIND_KEYS_TO_TRANSLATE).getCount());
+		assertEquals(5, stats(CustomPropertiesMetrics.Operation.FIND_BAD_KEYS).getCount());
+		assertEquals(10, stats(CustomPropertiesMetrics.Operation.FIND_BY_NAME).getCount());
+		assertTrue(stats(CustomPropertiesMetrics.Operation.LOCK_WAIT).getCount() >= 15);
+		assertTrue(CustomPropertiesMetrics.snapshot().getLockWaitNanosByFile().containsKey(file.getCanonicalPath()));
+		for(OperationStats stats : CustomPropertiesMetrics.snapshot().getOperations().values()){
+			assertEquals(stats.getOperation(), stats.getCount(), Arrays.stream(stats.getHistogram()).sum());
+			assertTrue(stats.getOperation(), stats.getMaxNanos() <= stats.getTotalNanos());
+		}
+
+		CustomPropertiesMetrics.setEnabled(false);
+		run(file, reference);
+		assertEquals(10, stats(CustomPropertiesMetrics.Operation.LOAD).getCount());
+		CustomPropertiesMetrics.reset();
+		assertEquals(0, stats(CustomPropertiesMetrics.Operation.LOAD).getCount());
+		assertTrue(CustomPropertiesMetrics.snapshot().getLockWaitNanosByFile().isEmpty());
+	}
+
+	@Test
+	public void keepsTheFilesHavingWaitedTheMost() {
+		CustomPropertiesMetrics.setEnabled(true);
+		CustomPropertiesMetrics.setMaxLockWaitFiles(3);
+		long now = System.nanoTime();
+		for(int i = 0; i < 10; i++){
+			CustomPropertiesMetrics.recordLockWait("f" + i, now - (i % 2 == 0 ? 1000000L * i : 1000L * i));
+		}
+		CustomPropertiesMetrics.recordLockWait("f2", now - 20000000L);
+		assertEquals(new HashSet<String>(Arrays.asList("f2", "f6", "f8")), CustomPropertiesMetrics.snapshot().getLockWaitNanosByFile().keySet());
+		assertEquals(11, stats(CustomPropertiesMetrics.Operation.LOCK_WAIT).getCount());
+	}
+
+	@Test
+	public void percentilesBoundExactOnes() {
+		Random random = new Random(1);
+		for(int round = 0; round < 1000; round++){
+			long[] durations = new long[1 + random.nextInt(200)];
+			long[] histogram = new long[CustomPropertiesMetrics.BUCKETS];
+			long max = 0;
+			for(int i = 0; i < durations.length; i++){
+				durations[i] = random.nextInt(10) == 0 ? 0 : random.nextLong() >>> (1 + random.nextInt(63));
+				histogram[CustomPropertiesMetrics.BUCKETS - Long.numberOfLeadingZeros(durations[i])]++;
+				max = Math.max(max, durations[i]);
+			}
+			Arrays.sort(durations);
+			OperationStats stats = new OperationStats("TEST", durations.length, 0L, max, 0L, 0L, histogram);
+			for(double fraction : new double[]{0.0d, 0.5d, 0.9d, 0.99d, 1.0d}){
+				long exact = durations[(int) Math.max(0, Math.ceil(durations.length * fraction) - 1)];
+				long percentile = stats.percentile(fraction);
+				assertTrue(percentile >= exact);
+				assertTrue(percentile <= max);
+				assertTrue(exact == 0 ? percentile == 0 : percentile / 2 < exact);
+			}
+		}
+	}
+
+	@Test
+	public void readThroughJmx() throws Exception {
+		File file = folder.newFile("messages.properties");
+		CustomPropertiesMetrics.setEnabled(true);
+		CustomProperties.saveToFile(file, "a=1\n");
+		CustomPropertiesMetrics.registerMBean();
+		CustomPropertiesMetrics.registerMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(CustomPropertiesMetrics.OBJECT_NAME);
+		assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		CustomPropertiesMetricsMXBean proxy = JMX.newMXBeanProxy(server, name, CustomPropertiesMetricsMXBean.class);
+		assertEquals(stats(CustomPropertiesMetrics.Operation.SAVE), proxy.getOperations().get("SAVE"));
+		assertEquals(CustomPropertiesMetrics.snapshot().getLockWaitNanosByFile(), proxy.getLockWaitNanosByFile());
+		proxy.reset();
+		assertEquals(0, stats(CustomPropertiesMetrics.Operation.SAVE).getCount());
+		proxy.setEnabled(false);
+		assertFalse(CustomPropertiesMetrics.isEnabled());
+		CustomPropertiesMetrics.unregisterMBean();
+		assertFalse(server.isRegistered(name));
+	}
+}
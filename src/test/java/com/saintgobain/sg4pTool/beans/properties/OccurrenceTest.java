@@ -0,0 +1,175 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Occurrences of duplicated keys and dedupe against scans of the content lines
+ */
+public class OccurrenceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.STANDARD);
+	}
+
+	private static void write(File file, List<String> lines) throws IOException {
+		Files.write(file.toPath(), lines, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return line numbers of the properties lines having the key
+	 */
+	private static List<Integer> scan(CustomProperties properties, String key) {
+		List<Integer> lineNumbers = new ArrayList<Integer>();
+		List<String> content = properties.getContentList();
+		for(int i = 0; i < content.size(); i++){
+			if(properties.isProperties(content.get(i)) && properties.getKeyFromString(content.get(i)).equals(key)){
+				lineNumbers.add(i);
+			}
+		}
+		return lineNumbers;
+	}
+
+	private static void assertOccurrences(CustomProperties properties, String key) {
+		List<Integer> lineNumbers = scan(properties, key);
+		assertEquals(key, lineNumbers.size(), properties.getOccurrenceCount(key));
+		for(int i = 0; i < lineNumbers.size(); i++){
+			assertEquals(key, (int) lineNumbers.get(i), properties.getOccurrenceLineNumber(key, i));
+			assertEquals(key, properties.getValueFromString(properties.getContentList().get(lineNumbers.get(i))), properties.getOccurrenceValue(key, i));
+		}
+	}
+
+	/**
+	 * the content lines dedupe should leave: the last properties line of each duplicated key, with the value of the key
+	 */
+	private static List<String> deduped(CustomProperties properties) {
+		List<String> content = properties.getContentList();
+		Map<String,Integer> counts = new HashMap<String,Integer>();
+		Map<String,Integer> lastLines = new HashMap<String,Integer>();
+		for(int i = 0; i < content.size(); i++){
+			if(properties.isProperties(content.get(i))){
+				String key = properties.getKeyFromString(content.get(i));
+				counts.merge(key, 1, Integer::sum);
+				lastLines.put(key, i);
+			}
+		}
+		List<String> expected = new ArrayList<String>();
+		for(int i = 0; i < content.size(); i++){
+			String line = content.get(i);
+			String key = properties.getKeyFromString(line);
+			if(properties.isProperties(line) && (counts.get(key) > 1 || properties.getDuplicatedKeys().containsKey(key))){
+				if(lastLines.get(key) != i){
+					continue;
+				}
+				if(properties.containsKey(key)){
+					line = key + "=" + properties.getValueByKey(key);
+				}
+			}
+			expected.add(line);
+		}
+		return expected;
+	}
+
+	@Test
+	public void occurrencesAndDedupeMatchScans() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		for(int seed = 0; seed < 200; seed++){
+			Random random = new Random(seed);
+			List<String> referenceLines = new ArrayList<String>();
+			List<String> fileLines = new ArrayList<String>();
+			for(int i = 0; i < 60; i++){
+				int key = random.nextInt(25);
+				if(random.nextInt(8) == 0){
+					referenceLines.add(random.nextBoolean() ? "" : "# comment");
+				}
+				referenceLines.add("k" + key + "=ref" + i);
+				if(random.nextInt(3) > 0){
+					fileLines.add("k" + key + "=v" + i + "_" + random.nextInt(9));
+				}
+				if(random.nextInt(6) == 0){
+					fileLines.add("k" + random.nextInt(30) + "=w" + i);
+				}
+				if(random.nextInt(7) == 0){
+					//a line having the key, but not a properties line
+					referenceLines.add("k" + random.nextInt(25));
+				}
+			}
+			write(reference, referenceLines);
+			write(file, fileLines);
+			//values of each key in the file, the last one first
+			Map<String,List<String>> fileValues = new LinkedHashMap<String,List<String>>();
+			for(String line : fileLines){
+				int separator = line.indexOf('=');
+				fileValues.computeIfAbsent(line.substring(0, separator), key -> new ArrayList<String>()).add(0, line.substring(separator + 1));
+			}
+			for(CustomProperties.MemoryMode memoryMode : CustomProperties.MemoryMode.values()){
+				CustomProperties.setDefaultMemoryMode(memoryMode);
+				CustomProperties properties = new CustomProperties(file, reference);
+				for(Map.Entry<String,List<String>> values : fileValues.entrySet()){
+					if(values.getValue().size() > 1){
+						assertEquals(values.getValue(), new ArrayList<String>(properties.getDuplicatedValues().get(values.getKey())));
+					}
+				}
+				for(int i = 0; i < 40; i++){
+					String key = "k" + random.nextInt(27);
+					assertOccurrences(properties, key);
+					int occurrences = properties.getOccurrenceCount(key);
+					assertFalse(properties.modifyOccurrence(key, 0, null));
+					assertFalse(properties.modifyOccurrence(key, 0, ""));
+					int occurrence = random.nextInt(occurrences + 1);
+					String lastValue = properties.getValueByKey(key);
+					assertEquals(occurrence < occurrences, properties.modifyOccurrence(key, occurrence, "m" + i));
+					if(occurrence < occurrences){
+						assertEquals("m" + i, properties.getOccurrenceValue(key, occurrence));
+						assertEquals(occurrence == occurrences - 1 ? "m" + i : lastValue, properties.getValueByKey(key));
+					}
+					assertOccurrences(properties, key);
+					if(random.nextInt(5) == 0){
+						properties.insertOrUpdate(key, "n" + i, "x");
+					}
+				}
+				List<String> expected = deduped(properties);
+				assertEquals(properties.getContentList().size() - expected.size(), properties.dedupe());
+				assertEquals(expected, properties.getContentList());
+				assertTrue(properties.getDuplicatedKeys().isEmpty());
+				for(int i = 0; i < 27; i++){
+					assertTrue(properties.getOccurrenceCount("k" + i) <= 1);
+				}
+			}
+
+			CustomProperties before = new CustomProperties(file, reference);
+			CustomProperties.dedupeFile(file, reference);
+			CustomProperties after = new CustomProperties(file, reference);
+			assertTrue(after.getDuplicatedKeys().isEmpty());
+			for(String line : referenceLines){
+				if(after.isProperties(line)){
+					String key = after.getKeyFromString(line);
+					assertEquals(key, before.getValueByKey(key), after.getValueByKey(key));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The old content of a loaded file, read only when requested, is still the content it was loaded from after saves of this JVM
+ * <br> in between, it is kept on disk in the temp folder, only as long as an instance may still request it
+ */
+public class OldContentTest {
+
+	private static final String ORIGINAL = "a=un\\u00e9\r\nb=deux\n#c";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.IN_PLACE);
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void keptAcrossEverySave() throws Exception {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		write(reference, "a=1\nb=2\n");
+		write(file, ORIGINAL);
+		String expected = new CustomProperties(file, reference).writeOldContentAsString();
+		for(CustomProperties.SaveMode saveMode : CustomProperties.SaveMode.values()){
+			CustomProperties.setDefaultSaveMode(saveMode);
+			write(file, ORIGINAL);
+			CustomProperties saved = new CustomProperties(file, reference);
+			CustomProperties other = new CustomProperties(file, reference);
+			saved.insertOrUpdate("a", "c", "x");
+			CustomProperties.saveToFile(file, saved);
+			assertEquals(saveMode.name(), expected, saved.writeOldContentAsString());
+			assertEquals(saveMode.name(), expected, other.writeOldContentAsString());
+			saved.insertOrUpdate("a", "d", "y");
+			CustomProperties.saveToFile(file, saved);
+			assertEquals(saveMode.name(), expected, saved.writeOldContentAsString());
+
+			write(file, ORIGINAL);
+			CustomProperties versioned = new CustomProperties(file, reference);
+			CustomProperties.saveToFileWithVersioning(file, versioned);
+			assertEquals(saveMode.name(), expected, versioned.writeOldContentAsString());
+
+			write(file, ORIGINAL);
+			CustomProperties saveLater = new CustomProperties(file, reference);
+			CustomProperties.saveToFileAsync(file, "a=z\n").get(10, TimeUnit.SECONDS);
+			assertEquals(saveMode.name(), expected, saveLater.writeOldContentAsString());
+		}
+	}
+
+	@Test
+	public void lostWhenAnotherWriterChangedTheFile() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		write(reference, "a=1\n");
+		write(file, ORIGINAL);
+		CustomProperties properties = new CustomProperties(file, reference);
+		write(file, "a=22\n");
+		assertThrows(UncheckedIOException.class, properties::writeOldContentAsString);
+	}
+
+	@Test
+	public void eachInstanceKeepsWhatItLoaded() throws IOException {
+		Random random = new Random(1);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		write(reference, "a=1\n");
+		Files.write(file.toPath(), ReferenceIndexTest.randomLines(random, 50), StandardCharsets.ISO_8859_1);
+		List<CustomProperties> loaded = new ArrayList<CustomProperties>();
+		List<String> expected = new ArrayList<String>();
+		for(int round = 0; round < 200; round++){
+			switch(random.nextInt(4)){
+				case 0:
+					loaded.add(new CustomProperties(file, reference));
+					expected.add(new CustomProperties(file, reference).writeOldContentAsString());
+					break;
+				case 1:
+					if(!loaded.isEmpty()){
+						//read before the next save, or kept by it
+						int index = random.nextInt(loaded.size());
+						assertEquals(expected.get(index), loaded.get(index).writeOldContentAsString());
+					}
+					break;
+				case 2:
+					CustomProperties.setDefaultSaveMode(CustomProperties.SaveMode.values()[random.nextInt(2)]);
+					CustomProperties.saveToFile(file, String.join("\n", ReferenceIndexTest.randomLines(random, 50)));
+					break;
+				default:
+					if(!loaded.isEmpty()){
+						CustomProperties properties = loaded.get(random.nextInt(loaded.size()));
+						properties.insertOrUpdate("k1", "added" + round, "v");
+						CustomProperties.saveToFile(file, properties);
+					}
+			}
+		}
+		for(int i = 0; i < loaded.size(); i++){
+			assertEquals(expected.get(i), loaded.get(i).writeOldContentAsString());
+		}
+	}
+
+	private static int copies(File file) {
+		String[] names = new File(CustomProperties.getTempParentFolder(file)).list((dir, name) -> name.startsWith(file.getName()) && name.endsWith(".old"));
+		return names == null ? 0 : names.length;
+	}
+
+	@Test
+	public void copyDeletedOnceRead() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		write(reference, "a=1\n");
+		for(CustomProperties.SaveMode saveMode : CustomProperties.SaveMode.values()){
+			CustomProperties.setDefaultSaveMode(saveMode);
+			write(file, ORIGINAL);
+			String expected = new CustomProperties(file, reference).writeOldContentAsString();
+			CustomProperties first = new CustomProperties(file, reference);
+			CustomProperties second = new CustomProperties(file, reference);
+			CustomProperties.saveToFile(file, "a=2\n");
+			assertEquals(saveMode.name(), 1, copies(file));
+			//not copied again, the instances were given the first copy
+			CustomProperties.saveToFile(file, "a=3\n");
+			assertEquals(saveMode.name(), 1, copies(file));
+			assertEquals(saveMode.name(), expected, first.writeOldContentAsString());
+			assertEquals(saveMode.name(), 1, copies(file));
+			assertEquals(saveMode.name(), expected, second.writeOldContentAsString());
+			assertEquals(saveMode.name(), 0, copies(file));
+			assertEquals(saveMode.name(), expected, second.writeOldContentAsString());
+		}
+	}
+
+	@Test
+	public void collectedInstancesAreForgotten() throws Exception {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		File other = new File(dir, "messages_de.properties");
+		write(reference, "a=1\n");
+		write(file, ORIGINAL);
+		write(other, ORIGINAL);
+		assertNotNull(new CustomProperties(file, reference));
+		CustomProperties.saveToFile(file, "a=2\n");
+		assertEquals(1, copies(file));
+		for(int i = 0; i < 100 && copies(file) > 0; i++){
+			System.gc();
+			Thread.sleep(10);
+			//collected instances are forgotten by the next registration
+			assertNotNull(new CustomProperties(other, reference));
+		}
+		assertEquals(0, copies(file));
+		//nothing to keep for a collected instance
+		write(file, ORIGINAL);
+		assertNotNull(new CustomProperties(file, reference));
+		for(int i = 0; i < 100; i++){
+			System.gc();
+			Thread.sleep(10);
+		}
+		CustomProperties.saveToFile(file, "a=3\n");
+		assertEquals(0, copies(file));
+	}
+}
@@ -0,0 +1,131 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * LoadMode.PARSED loads what LoadMode.NIO loads, whether its parsed copy is missing, up to date, outdated or damaged
+ */
+public class ParsedLoadTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.READER);
+		CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.STANDARD);
+		CustomPropertiesMetrics.setEnabled(false);
+		CustomPropertiesMetrics.reset();
+	}
+
+	private static String load(File file, File reference, CustomProperties.LoadMode loadMode) throws IOException {
+		CustomProperties.setDefaultLoadMode(loadMode);
+		CustomProperties properties = new CustomProperties(file, reference);
+		return BundleTest.dump(properties) + "|" + properties.getReferenceValueByKey("key7");
+	}
+
+	private File[] files(long seed) throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		BaselineScenario.generate(reference, seed * 2 + 1, 300, true);
+		BaselineScenario.generate(file, seed * 2 + 2, 300, false);
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.ISO_8859_1)){
+			writer.write("lone=\\uD800x\nctrl=\\t\\n\\\\\nlat=\u00e9\u00ff\r\nkey1=\\u4e2d\rend");
+		}
+		return new File[]{file, reference};
+	}
+
+	@Test
+	public void coldAndWarmLoadsMatchNio() throws IOException {
+		for(int seed = 0; seed < 10; seed++){
+			File[] files = files(seed);
+			for(CustomProperties.MemoryMode memoryMode : CustomProperties.MemoryMode.values()){
+				CustomProperties.setDefaultMemoryMode(memoryMode);
+				String expected = load(files[0], files[1], CustomProperties.LoadMode.NIO);
+				ParsedSidecar.sidecarOf(files[0]).delete();
+				ParsedSidecar.sidecarOf(files[1]).delete();
+				assertEquals(expected, load(files[0], files[1], CustomProperties.LoadMode.PARSED));
+				assertTrue(ParsedSidecar.sidecarOf(files[0]).isFile());
+				assertEquals(expected, load(files[0], files[1], CustomProperties.LoadMode.PARSED));
+			}
+		}
+	}
+
+	@Test
+	public void changedFilesAreParsedAgain() throws IOException {
+		File[] files = files(1);
+		File file = files[0];
+		Files.write(file.toPath(), "key1=aaaa\n".getBytes(StandardCharsets.ISO_8859_1));
+		long lastModified = file.lastModified();
+		load(file, files[1], CustomProperties.LoadMode.PARSED);
+		//same size and same modification time, right after the copy was written
+		Files.write(file.toPath(), "key1=bbbb\n".getBytes(StandardCharsets.ISO_8859_1));
+		file.setLastModified(lastModified);
+		assertEquals("bbbb", new CustomProperties(file, files[1]).getValueByKey("key1"));
+		Files.write(file.toPath(), "key1=cc\n".getBytes(StandardCharsets.ISO_8859_1));
+		assertEquals("cc", new CustomProperties(file, files[1]).getValueByKey("key1"));
+	}
+
+	@Test
+	public void damagedCopiesAreIgnored() throws IOException {
+		Random random = new Random(1);
+		File[] files = files(2);
+		String expected = load(files[0], files[1], CustomProperties.LoadMode.NIO);
+		File sidecar = ParsedSidecar.sidecarOf(files[0]);
+		for(int round = 0; round < 200; round++){
+			assertEquals(expected, load(files[0], files[1], CustomProperties.LoadMode.PARSED));
+			byte[] copy = Files.readAllBytes(sidecar.toPath());
+			switch(random.nextInt(3)){
+				case 0:
+					copy[random.nextInt(copy.length)] ^= 1 << random.nextInt(8);
+					Files.write(sidecar.toPath(), copy);
+					break;
+				case 1:
+					try(RandomAccessFile raw = new RandomAccessFile(sidecar, "rw")){
+						raw.setLength(random.nextInt(copy.length));
+					}
+					break;
+				default:
+					Files.write(sidecar.toPath(), "garbage".getBytes(StandardCharsets.ISO_8859_1));
+			}
+			assertEquals("round " + round, expected, load(files[0], files[1], CustomProperties.LoadMode.PARSED));
+		}
+	}
+
+	@Test
+	public void unwritableCopyIsCounted() throws IOException {
+		File[] files = files(3);
+		//a directory where the copy should be
+		assertTrue(new File(ParsedSidecar.sidecarOf(files[0]), "x").mkdirs());
+		CustomPropertiesMetrics.setEnabled(true);
+		String expected = load(files[0], files[1], CustomProperties.LoadMode.NIO);
+		assertEquals(expected, load(files[0], files[1], CustomProperties.LoadMode.PARSED));
+		assertEquals(1, CustomPropertiesMetrics.snapshot().get(CustomPropertiesMetrics.Operation.PARSED_WRITE_FAILURE).getCount());
+	}
+
+	@Test
+	public void parsedLoadGivesBaselineOutput() throws IOException {
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.PARSED);
+		File dir = folder.newFolder();
+		assertEquals(BaselineOutputTest.expected(), BaselineScenario.run(dir));
+		//again, from the copies written by the first run
+		assertEquals(BaselineOutputTest.expected(), BaselineScenario.run(dir));
+	}
+}
@@ -0,0 +1,143 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * PropertiesComparator against matching the n-th occurrence of each key of both files, read whole in memory,
+ * with keys changed, added, dropped and moved one by one or in blocks
+ */
+public class PropertiesComparatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static boolean isProperties(String line) {
+		String trimmed = line.trim();
+		return line.indexOf('=') >= 0 && !trimmed.startsWith("#") && !trimmed.startsWith("=") && !trimmed.startsWith("/-");
+	}
+
+	/**
+	 * @return key -> {value, key of the line before} of each occurrence of the key, in line order
+	 */
+	private static Map<String,List<String[]>> occurrences(File file) throws IOException {
+		Map<String,List<String[]>> occurrences = new LinkedHashMap<String,List<String[]>>();
+		String previousKey = "";
+		try(BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)){
+			String line;
+			while((line = reader.readLine()) != null){
+				line = PropertiesLineParser.unescape(line);
+				int separator = line.indexOf('=');
+				String key = separator < 0 ? line : line.substring(0, separator);
+				if(isProperties(line)){
+					occurrences.computeIfAbsent(key, k -> new ArrayList<String[]>()).add(new String[]{line.substring(separator + 1), previousKey});
+				}
+				previousKey = key;
+			}
+		}
+		return occurrences;
+	}
+
+	private static List<String> expected(File file, File referenceFile) throws IOException {
+		Map<String,List<String[]>> inReference = occurrences(referenceFile);
+		Map<String,List<String[]>> inFile = occurrences(file);
+		List<String> expected = new ArrayList<String>();
+		for(Map.Entry<String,List<String[]>> key : inReference.entrySet()){
+			List<String[]> values = inFile.getOrDefault(key.getKey(), Collections.<String[]>emptyList());
+			for(int i = 0; i < key.getValue().size(); i++){
+				String[] reference = key.getValue().get(i);
+				if(i >= values.size()){
+					expected.add("MISSING|" + key.getKey() + "|" + reference[0] + "||" + reference[1]);
+				}else if(!values.get(i)[0].equals(reference[0])){
+					expected.add((values.get(i)[0].isEmpty() ? "EMPTY" : "CHANGED") + "|" + key.getKey() + "|" + reference[0] + "|" + values.get(i)[0] + "|" + reference[1]);
+				}
+			}
+		}
+		for(Map.Entry<String,List<String[]>> key : inFile.entrySet()){
+			int referenceCount = inReference.getOrDefault(key.getKey(), Collections.<String[]>emptyList()).size();
+			for(int i = referenceCount; i < key.getValue().size(); i++){
+				expected.add("ADDED|" + key.getKey() + "||" + key.getValue().get(i)[0] + "|" + key.getValue().get(i)[1]);
+			}
+		}
+		return expected;
+	}
+
+	@Test
+	public void differencesMatchOccurrences() throws IOException {
+		File dir = folder.newFolder();
+		File referenceFile = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		for(int round = 0; round < 300; round++){
+			Random random = new Random(round);
+			int size = 50 + random.nextInt(500);
+			List<String> reference = new ArrayList<String>();
+			for(int i = 0; i < size; i++){
+				int kind = random.nextInt(12);
+				reference.add(kind == 0 ? "# c" + i : kind == 1 ? "" : kind == 2 ? "k" + random.nextInt(size) + "=d" + i : kind == 3 ? "k" + i + "=caf\\u00e9" + i : "k" + i + "=v" + i);
+			}
+			List<String> lines = new ArrayList<String>();
+			for(String line : reference){
+				int kind = random.nextInt(20);
+				if(kind == 0){
+					continue;
+				}
+				if(kind == 1){
+					lines.add("extra" + random.nextInt(size) + "=x");
+				}
+				if(kind == 2 && line.contains("=")){
+					lines.add(line.substring(0, line.indexOf('=') + 1));
+				}else if(kind == 3 && line.contains("=")){
+					lines.add(line + "chg");
+				}else{
+					lines.add(kind == 4 ? line.replace("\\u00e9", "é") : line);
+				}
+			}
+			//move some blocks out of order
+			for(int moves = random.nextInt(4); moves > 0; moves--){
+				int from = random.nextInt(lines.size());
+				List<String> moved = lines.subList(from, Math.min(lines.size(), from + 1 + random.nextInt(20)));
+				List<String> block = new ArrayList<String>(moved);
+				moved.clear();
+				lines.addAll(random.nextInt(lines.size() + 1), block);
+			}
+			//add and drop whole blocks, the other file is then read alone until it catches up
+			for(int blocks = random.nextInt(3); blocks > 0; blocks--){
+				int at = random.nextInt(lines.size() + 1);
+				int length = 1 + random.nextInt(40);
+				if(random.nextBoolean()){
+					for(int i = 0; i < length; i++){
+						lines.add(at, "block" + blocks + "_" + i + "=b");
+					}
+				}else{
+					lines.subList(at, Math.min(lines.size(), at + length)).clear();
+				}
+			}
+			Files.write(referenceFile.toPath(), (String.join(random.nextBoolean() ? "\n" : "\r\n", reference) + "\n").getBytes(StandardCharsets.ISO_8859_1));
+			Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.ISO_8859_1));
+
+			List<String> found = new ArrayList<String>();
+			long count = PropertiesComparator.compare(file, referenceFile, (type, difference) -> found.add(type + "|" + difference.getKey() + "|"
+					+ difference.getOriginalValue() + "|" + difference.getDifferentValue() + "|" + difference.getTheKeyBeforeThis()));
+			assertEquals(found.size(), count);
+			List<String> expected = expected(file, referenceFile);
+			Collections.sort(found);
+			Collections.sort(expected);
+			assertEquals("round " + round, expected, found);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * PropertiesLineParser against the split based parsing it replaced, and its byte based parsing against its String based one
+ */
+public class PropertiesLineParserTest {
+
+	private static final String ALPHABET = "ab =#/-\\tnu0123456789ABCDEFéÿ";
+
+	private static String randomLine(Random random, int maxLength) {
+		StringBuilder line = new StringBuilder();
+		for(int i = random.nextInt(maxLength); i > 0; i--){
+			line.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return line.toString();
+	}
+
+	private static boolean splitIsProperties(String line) {
+		String trimmed = line.trim();
+		if(trimmed.startsWith("#") || trimmed.startsWith("/-") || trimmed.startsWith("=")){
+			return false;
+		}
+		return trimmed.contains("=");
+	}
+
+	private static String splitValue(String line) {
+		String[] split = line.split("=");
+		StringBuilder value = new StringBuilder();
+		for(int i = 1; i < split.length; i++){
+			value.append(split[i]);
+		}
+		return value.toString();
+	}
+
+	@Test
+	public void singleSeparatorLinesMatchSplit() {
+		Random random = new Random(1);
+		for(int i = 0; i < 100000; i++){
+			String line = randomLine(random, 12);
+			if(line.indexOf('=') != line.lastIndexOf('=') || line.replace("=", "").isEmpty() && !line.isEmpty()){
+				continue;
+			}
+			assertEquals(line, line.split("=")[0], PropertiesLineParser.key(line));
+			assertEquals(line, splitValue(line), PropertiesLineParser.value(line));
+			assertEquals(line, splitIsProperties(line), PropertiesLineParser.isProperties(line));
+		}
+	}
+
+	@Test
+	public void valueKeepsFollowingSeparators() {
+		assertEquals("a", PropertiesLineParser.key("a=b=c"));
+		assertEquals("b=c", PropertiesLineParser.value("a=b=c"));
+		assertEquals("=", PropertiesLineParser.value("a=="));
+		assertEquals("", PropertiesLineParser.key("==="));
+		assertEquals("==", PropertiesLineParser.value("==="));
+		assertFalse(PropertiesLineParser.isProperties("==="));
+		assertTrue(PropertiesLineParser.isProperties(" a = b"));
+		assertFalse(PropertiesLineParser.isProperties(" /-a=b"));
+	}
+
+	@Test
+	public void byteParsingMatchesStringParsing() {
+		Random random = new Random(2);
+		for(int i = 0; i < 100000; i++){
+			String raw = randomLine(random, 16);
+			byte[] bytes = ("xx" + raw + "yy").getBytes(StandardCharsets.ISO_8859_1);
+			int start = 2;
+			int end = bytes.length - 2;
+			String line;
+			try{
+				line = PropertiesLineParser.unescape(raw);
+			}catch(IllegalArgumentException e){
+				//malformed unicode escape, the original unescapeJava rejects it in both cases
+				try{
+					PropertiesLineParser.line(bytes, start, end);
+					fail(raw);
+				}catch(IllegalArgumentException expected){
+				}
+				continue;
+			}
+			assertEquals(raw, line, PropertiesLineParser.line(bytes, start, end));
+			int separatorIndex = PropertiesLineParser.separatorIndex(bytes, start, end);
+			if(separatorIndex == PropertiesLineParser.ESCAPED){
+				assertTrue(raw, raw.indexOf('\\') >= 0);
+				continue;
+			}
+			assertEquals(raw, line.indexOf('='), separatorIndex == -1 ? -1 : separatorIndex - start);
+			assertEquals(raw, PropertiesLineParser.isProperties(line), PropertiesLineParser.isProperties(bytes, start, separatorIndex));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * ReferenceContentCache hits, invalidation on change, LRU eviction, and loads with the cache giving what they give without it
+ */
+public class ReferenceContentCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		ReferenceContentCache.setMaximumSize(0);
+		ReferenceContentCache.resetCounters();
+	}
+
+	@After
+	public void tearDown() {
+		ReferenceContentCache.setMaximumSize(0);
+		ReferenceContentCache.resetCounters();
+	}
+
+	private void assertCounts(long hits, long misses) {
+		assertEquals("hits", hits, ReferenceContentCache.getHitCount());
+		assertEquals("misses", misses, ReferenceContentCache.getMissCount());
+	}
+
+	@Test
+	public void cachedLoadsMatchUncachedLoads() throws IOException {
+		Random random = new Random(1);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		Files.write(reference.toPath(), ReferenceIndexTest.randomLines(random, 300), StandardCharsets.ISO_8859_1);
+		Files.write(file.toPath(), ReferenceIndexTest.randomLines(random, 300), StandardCharsets.ISO_8859_1);
+		String expected = BundleTest.dump(new CustomProperties(file, reference));
+		ReferenceContentCache.setMaximumSize(4);
+		for(int i = 0; i < 5; i++){
+			CustomProperties properties = new CustomProperties(file, reference);
+			assertEquals(expected, BundleTest.dump(properties));
+			//the shared reference lines can not be modified through one instance
+			assertThrows(UnsupportedOperationException.class, () -> properties.getReferenceContentList().add("x=y"));
+		}
+		assertCounts(4, 1);
+	}
+
+	@Test
+	public void changedFilesAreReadAgain() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		Files.write(reference.toPath(), Arrays.asList("a=1", "b=2"), StandardCharsets.ISO_8859_1);
+		Files.write(file.toPath(), Arrays.asList("a=un"), StandardCharsets.ISO_8859_1);
+		ReferenceContentCache.setMaximumSize(4);
+		new CustomProperties(file, reference);
+		new CustomProperties(file, reference);
+		assertCounts(1, 1);
+		//changed by another process: other size
+		Files.write(reference.toPath(), Arrays.asList("a=1", "b=2", "c=3"), StandardCharsets.ISO_8859_1);
+		assertEquals("3", new CustomProperties(file, reference).getReferenceValueByKey("c"));
+		assertCounts(1, 2);
+		//changed by another process: same size, other modification time
+		long lastModified = reference.lastModified();
+		Files.write(reference.toPath(), Arrays.asList("a=1", "b=2", "c=4"), StandardCharsets.ISO_8859_1);
+		reference.setLastModified(lastModified + 2000);
+		assertEquals("4", new CustomProperties(file, reference).getReferenceValueByKey("c"));
+		assertCounts(1, 3);
+		//written by this JVM
+		CustomProperties.saveToFile(reference, "c=5\n");
+		assertEquals("5", new CustomProperties(file, reference).getReferenceValueByKey("c"));
+		assertCounts(1, 4);
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() throws IOException {
+		File dir = folder.newFolder();
+		File file = new File(dir, "messages_fr.properties");
+		Files.write(file.toPath(), Arrays.asList("a=un"), StandardCharsets.ISO_8859_1);
+		File[] references = new File[3];
+		for(int i = 0; i < references.length; i++){
+			references[i] = new File(dir, "reference" + i + ".properties");
+			Files.write(references[i].toPath(), Arrays.asList("a=" + i), StandardCharsets.ISO_8859_1);
+		}
+		ReferenceContentCache.setMaximumSize(2);
+		new CustomProperties(file, references[0]);
+		new CustomProperties(file, references[1]);
+		new CustomProperties(file, references[0]);
+		assertCounts(1, 2);
+		//evicts references[1], the least recently used
+		new CustomProperties(file, references[2]);
+		assertEquals(2, ReferenceContentCache.size());
+		new CustomProperties(file, references[0]);
+		assertCounts(2, 3);
+		new CustomProperties(file, references[1]);
+		assertCounts(2, 4);
+		//another path to the same file is the same entry
+		new CustomProperties(file, new File(new File(dir, "."), references[1].getName()));
+		assertCounts(3, 4);
+		ReferenceContentCache.setMaximumSize(1);
+		assertEquals(1, ReferenceContentCache.size());
+		ReferenceContentCache.setMaximumSize(0);
+		assertEquals(0, ReferenceContentCache.size());
+		assertFalse(ReferenceContentCache.isEnabled());
+		new CustomProperties(file, references[0]);
+		assertCounts(3, 4);
+	}
+}
@@ -0,0 +1,89 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * getReferenceValueByKey against a scan of the reference lines for the last line having the key
+ */
+public class ReferenceIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String scan(CustomProperties properties, List<String> lines, String key) {
+		String value = null;
+		for(String line : lines){
+			if(properties.getKeyFromString(line).equals(key)){
+				value = properties.getValueFromString(line);
+			}
+		}
+		return value;
+	}
+
+	static List<String> randomLines(Random random, int size) {
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i < size; i++){
+			int key = random.nextInt(size);
+			switch(random.nextInt(10)){
+				case 0:
+					lines.add("# k" + key + "=comment " + i);
+					break;
+				case 1:
+					lines.add("");
+					break;
+				case 2:
+					lines.add("k" + key);
+					break;
+				case 3:
+					lines.add("k" + key + "=");
+					break;
+				case 4:
+					lines.add("k" + key + "=caf\\u00e9 " + i);
+					break;
+				default:
+					lines.add("k" + key + "=v" + i);
+			}
+		}
+		return lines;
+	}
+
+	@Test
+	public void lookupsMatchScan() throws IOException {
+		Random random = new Random(1);
+		File dir = folder.newFolder();
+		for(int round = 0; round < 30; round++){
+			File reference = new File(dir, "messages.properties");
+			File file = new File(dir, "messages_fr.properties");
+			int size = 20 + random.nextInt(200);
+			Files.write(reference.toPath(), randomLines(random, size), StandardCharsets.ISO_8859_1);
+			Files.write(file.toPath(), randomLines(random, size), StandardCharsets.ISO_8859_1);
+			CustomProperties properties = new CustomProperties(file, reference);
+			assertLookups(properties, properties.getReferenceContentList(), size);
+			List<String> replaced = randomLines(random, size);
+			properties.setReferenceContentList(replaced);
+			assertLookups(properties, replaced, size);
+		}
+	}
+
+	private static void assertLookups(CustomProperties properties, List<String> lines, int size) {
+		for(int key = 0; key < size + 5; key++){
+			assertEquals(scan(properties, lines, "k" + key), properties.getReferenceValueByKey("k" + key));
+		}
+		for(String line : lines){
+			String key = properties.getKeyFromString(line);
+			assertEquals(line, scan(properties, lines, key), properties.getReferenceValueByKey(key));
+		}
+	}
+}
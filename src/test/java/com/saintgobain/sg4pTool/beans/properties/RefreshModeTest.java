@@ -0,0 +1,171 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * refresh() in each RefreshMode: when it reads the files again and what it gives
+ */
+public class RefreshModeTest {
+
+	private static final long WATCH_TIMEOUT_MILLIS = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File reference;
+
+	private File file;
+
+	private String referenceContent;
+
+	private String fileContent;
+
+	@Before
+	public void setUp() throws IOException {
+		File dir = folder.newFolder();
+		reference = new File(dir, "messages.properties");
+		file = new File(dir, "messages_fr.properties");
+		StringBuilder referenceLines = new StringBuilder();
+		StringBuilder fileLines = new StringBuilder();
+		for(int i = 0; i < 5000; i++){
+			referenceLines.append("key").append(i).append("=value ").append(i).append('\n');
+			if(i % 3 == 0){
+				fileLines.append("key").append(i).append("=valeur ").append(i).append('\n');
+			}
+		}
+		referenceContent = referenceLines.toString();
+		fileContent = fileLines.toString();
+		write(reference, referenceContent);
+		write(file, fileContent);
+	}
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultRefreshMode(CustomProperties.RefreshMode.RELOAD);
+		CustomProperties.setDefaultLoadMode(CustomProperties.LoadMode.READER);
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private static boolean reloaded(CustomProperties properties) throws IOException {
+		List<String> contentList = properties.getContentList();
+		properties.refresh();
+		return contentList != properties.getContentList();
+	}
+
+	@Test
+	public void reloadIsTheDefaultAndDropsGetterEdits() throws IOException {
+		assertEquals(CustomProperties.RefreshMode.RELOAD, CustomProperties.getDefaultRefreshMode());
+		CustomProperties properties = new CustomProperties(file, reference);
+		properties.getProperties().put("key0", "changed");
+		assertTrue(reloaded(properties));
+		assertEquals("valeur 0", properties.getProperties().get("key0"));
+	}
+
+	@Test
+	public void checkReloadsOnlyWhatChanged() throws IOException {
+		for(CustomProperties.LoadMode loadMode : CustomProperties.LoadMode.values()){
+			CustomProperties.setDefaultLoadMode(loadMode);
+			CustomProperties.setDefaultRefreshMode(CustomProperties.RefreshMode.CHECK);
+			CustomProperties properties = new CustomProperties(file, reference);
+			assertFalse(loadMode.name(), reloaded(properties));
+			//same size, right after the load: the modification time alone can not tell
+			write(file, fileContent.replace("valeur 0", "valeur X"));
+			assertTrue(loadMode.name(), reloaded(properties));
+			assertEquals("valeur X", properties.getValueByKey("key0"));
+			assertFalse(loadMode.name(), reloaded(properties));
+			//modified through this instance
+			properties.insertOrUpdate("key0", "key1", "v");
+			assertTrue(loadMode.name(), reloaded(properties));
+			assertNull(properties.getValueByKey("key1"));
+			write(reference, referenceContent + "new=1\n");
+			assertTrue(loadMode.name(), reloaded(properties));
+			assertEquals("1", properties.getReferenceValueByKey("new"));
+			//only touched: same checksum
+			file.setLastModified(file.lastModified() + 5000);
+			assertFalse(loadMode.name(), reloaded(properties));
+			write(reference, referenceContent);
+			write(file, fileContent);
+		}
+	}
+
+	@Test
+	public void watchSeesChanges() throws Exception {
+		CustomProperties.setDefaultRefreshMode(CustomProperties.RefreshMode.WATCH);
+		CustomProperties properties = new CustomProperties(file, reference);
+		assertFalse(reloaded(properties));
+		write(file, fileContent.replace("valeur 0", "valeur Y"));
+		assertTrue(reloadedWithin(properties));
+		assertEquals("valeur Y", properties.getValueByKey("key0"));
+		write(reference, referenceContent + "new=2\n");
+		assertTrue(reloadedWithin(properties));
+		assertEquals("2", properties.getReferenceValueByKey("new"));
+		properties.insertOrUpdate("key0", "key1", "v");
+		assertTrue(reloaded(properties));
+		assertNull(properties.getValueByKey("key1"));
+	}
+
+	@Test
+	public void watchedFromManyThreads() throws Exception {
+		CustomProperties.setDefaultRefreshMode(CustomProperties.RefreshMode.WATCH);
+		List<File> files = new ArrayList<File>();
+		for(int i = 0; i < 32; i++){
+			//a few files per directory
+			File dir = i % 4 == 0 ? folder.newFolder() : files.get(i - 1).getParentFile();
+			File watched = new File(dir, "m" + i + "_fr.properties");
+			write(watched, "a=" + i + "\n");
+			files.add(watched);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<CustomProperties>> loads = new ArrayList<Future<CustomProperties>>();
+		try{
+			for(File watched : files){
+				loads.add(pool.submit(() -> new CustomProperties(watched, reference)));
+			}
+			for(int i = 0; i < files.size(); i++){
+				CustomProperties properties = loads.get(i).get();
+				assertFalse(reloaded(properties));
+				write(files.get(i), "a=changed\n");
+				assertTrue(reloadedWithin(properties));
+				assertEquals("changed", properties.getValueByKey("a"));
+			}
+		}finally{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * the watch service sees the change some time after it is written
+	 */
+	private static boolean reloadedWithin(CustomProperties properties) throws Exception {
+		long deadline = System.currentTimeMillis() + WATCH_TIMEOUT_MILLIS;
+		while(System.currentTimeMillis() < deadline){
+			if(reloaded(properties)){
+				return true;
+			}
+			Thread.sleep(50);
+		}
+		return false;
+	}
+}
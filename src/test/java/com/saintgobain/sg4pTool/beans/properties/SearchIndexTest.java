@@ -0,0 +1,121 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Searches with the substring index against the same searches without it, through the same random edits
+ */
+public class SearchIndexTest {
+
+	/**
+	 * with letters whose case mapping changes their length or is locale dependent
+	 */
+	private static final String ALPHABET = "abcKkSsİiıßẞ_.-xyzABK01";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultSearchIndex(false);
+	}
+
+	private static String random(Random random, int length) {
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < length; i++){
+			builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return builder.toString();
+	}
+
+	private static String show(List<PropertiesDifferent> differences) {
+		StringBuilder builder = new StringBuilder();
+		for(PropertiesDifferent difference : differences){
+			builder.append(difference.getKey()).append('|').append(difference.getOriginalValue()).append('|')
+					.append(difference.getDifferentValue()).append('|').append(difference.getTheKeyBeforeThis()).append('\n');
+		}
+		return builder.toString();
+	}
+
+	private static void randomEdits(CustomProperties properties, Random random) throws IOException {
+		for(int i = 0; i < 20; i++){
+			List<String> content = properties.getContentList();
+			switch(random.nextInt(4)){
+				case 0:
+					properties.insertOrUpdate(properties.getKeyFromString(content.get(random.nextInt(content.size()))), random(random, 4) + "new", random(random, 4));
+					break;
+				case 1:
+					int index = random.nextInt(content.size());
+					properties.modifyByKey(index, properties.getKeyFromString(content.get(index)), random(random, 3));
+					break;
+				case 2:
+					content.remove(random.nextInt(content.size()));
+					break;
+				default:
+					List<PropertiesDifferent> differences = new ArrayList<PropertiesDifferent>();
+					for(int j = 0; j < 5; j++){
+						differences.add(new PropertiesDifferent(random(random, 5), "", random(random, 3), properties.getKeyFromString(content.get(random.nextInt(content.size())))));
+					}
+					properties.applyAll(differences);
+			}
+		}
+	}
+
+	@Test
+	public void indexedSearchesMatchScans() throws IOException {
+		Random random = new Random(42);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		List<String> referenceLines = new ArrayList<String>();
+		List<String> fileLines = new ArrayList<String>();
+		for(int i = 0; i < 3000; i++){
+			if(i % 25 == 0){
+				referenceLines.add("# comment " + random(random, 6));
+				continue;
+			}
+			String key = random(random, 3 + random.nextInt(8)) + i % 700;
+			referenceLines.add(key + "=" + random(random, 2 + random.nextInt(10)));
+			if(random.nextInt(3) > 0){
+				fileLines.add(key + "=" + random(random, 5));
+			}
+			if(random.nextInt(40) == 0){
+				fileLines.add(key + "=dup" + random(random, 3));
+			}
+		}
+		Files.write(reference.toPath(), referenceLines, StandardCharsets.UTF_8);
+		Files.write(file.toPath(), fileLines, StandardCharsets.UTF_8);
+		CustomProperties.setDefaultSearchIndex(false);
+		CustomProperties plain = new CustomProperties(file, reference);
+		CustomProperties.setDefaultSearchIndex(true);
+		CustomProperties indexed = new CustomProperties(file, reference);
+		for(int round = 0; round < 60; round++){
+			long seed = random.nextLong();
+			randomEdits(plain, new Random(seed));
+			randomEdits(indexed, new Random(seed));
+			assertEquals(plain.getContentList(), indexed.getContentList());
+			for(int i = 0; i < 40; i++){
+				String name = i % 5 == 0 ? random(random, 1 + random.nextInt(2)) : random(random, 3 + random.nextInt(3));
+				String value = i % 3 == 0 ? null : random(random, 1 + random.nextInt(4));
+				boolean keysToTranslateOnly = random.nextBoolean();
+				assertEquals(name, plain.findKeysByNameLike(name), indexed.findKeysByNameLike(name));
+				assertEquals(name + " " + value, show(plain.findAllByNameLikeAndReferenceValueLike(name, keysToTranslateOnly, value)),
+						show(indexed.findAllByNameLikeAndReferenceValueLike(name, keysToTranslateOnly, value)));
+			}
+			assertEquals(show(plain.findKeysToTranslate()), show(indexed.findKeysToTranslate()));
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A published snapshot answers as its source did at publication, whatever the source does afterwards
+ */
+public class SnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		CustomProperties.setDefaultMemoryMode(CustomProperties.MemoryMode.STANDARD);
+		CustomProperties.setDefaultSearchIndex(false);
+	}
+
+	/**
+	 * duplicated values are in a HashMap, sorted here since the copy of a snapshot may iterate in another order
+	 */
+	private static String dump(CustomProperties properties) throws IOException {
+		return properties.getProperties() + "|" + properties.getContentList() + "|" + properties.getDuplicatedKeys() + "|" + new TreeMap<String,Deque<String>>(properties.getDuplicatedValues()) + "|"
+				+ properties.findKeysToTranslate() + "|" + properties.findBadKeys() + "|" + properties.getEmptyKeyList() + "|" + properties.findAllByNameLike("key1", false) + "|"
+				+ properties.findAllByNameLikeAndReferenceValueLike("ey", false, "VALUE 1") + "|" + properties.findKeysByNameLike("KEY3") + "|"
+				+ properties.getKeysByValue("value 5") + "|" + properties.getKeysByReferenceValue("value 5") + "|" + properties.getValueByKey("key7") + "|"
+				+ properties.getReferenceValueByKey("key7") + "|" + properties.getOccurrenceCount("key2") + "|" + properties.getOccurrenceValue("key2", 0) + "|"
+				+ properties.size() + "|" + properties.writeContentAsString();
+	}
+
+	private static String dump(CustomPropertiesSnapshot snapshot) throws IOException {
+		StringWriter writer = new StringWriter();
+		snapshot.writeTo(writer);
+		assertEquals(snapshot.writeContentAsString(), writer.toString());
+		return snapshot.getProperties() + "|" + snapshot.getContentList() + "|" + snapshot.getDuplicatedKeys() + "|" + new TreeMap<String,Deque<String>>(snapshot.getDuplicatedValues()) + "|"
+				+ snapshot.findKeysToTranslate() + "|" + snapshot.findBadKeys() + "|" + snapshot.getEmptyKeyList() + "|" + snapshot.findAllByNameLike("key1", false) + "|"
+				+ snapshot.findAllByNameLikeAndReferenceValueLike("ey", false, "VALUE 1") + "|" + snapshot.findKeysByNameLike("KEY3") + "|"
+				+ snapshot.getKeysByValue("value 5") + "|" + snapshot.getKeysByReferenceValue("value 5") + "|" + snapshot.getValueByKey("key7") + "|"
+				+ snapshot.getReferenceValueByKey("key7") + "|" + snapshot.getOccurrenceCount("key2") + "|" + snapshot.getOccurrenceValue("key2", 0) + "|"
+				+ snapshot.size() + "|" + snapshot.writeContentAsString();
+	}
+
+	private File[] files(int size) throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		BaselineScenario.generate(reference, 1, size, true);
+		BaselineScenario.generate(file, 2, size, false);
+		return new File[]{file, reference};
+	}
+
+	@Test
+	public void snapshotsAnswerAsTheirSourceAtPublication() throws IOException {
+		File[] files = files(500);
+		for(CustomProperties.MemoryMode memoryMode : CustomProperties.MemoryMode.values()){
+			for(boolean searchIndex : new boolean[]{false, true}){
+				CustomProperties.setDefaultMemoryMode(memoryMode);
+				CustomProperties.setDefaultSearchIndex(searchIndex);
+				CustomProperties properties = new CustomProperties(files[0], files[1]);
+				assertNull(properties.getSnapshot());
+				Random random = new Random(3);
+				List<PropertiesDifferent> toTranslate = properties.findKeysToTranslate();
+				List<CustomPropertiesSnapshot> snapshots = new ArrayList<CustomPropertiesSnapshot>();
+				List<String> expected = new ArrayList<String>();
+				for(int round = 0; round < 20; round++){
+					for(int i = 0; i < 20 && !toTranslate.isEmpty(); i++){
+						PropertiesDifferent difference = toTranslate.remove(random.nextInt(toTranslate.size()));
+						properties.insertOrUpdate(difference.getTheKeyBeforeThis(), difference.getKey(), "tr " + round);
+					}
+					properties.insertOrUpdate("key" + random.nextInt(500), "key" + random.nextInt(500), "upd " + round);
+					CustomPropertiesSnapshot snapshot = properties.publishSnapshot();
+					assertSame(snapshot, properties.getSnapshot());
+					assertEquals(round + 1, snapshot.getVersion());
+					snapshots.add(snapshot);
+					expected.add(dump(properties));
+					properties.insertOrUpdate("key1", "zzz" + round, "after publish");
+					properties.getContentList().remove(0);
+				}
+				for(int i = 0; i < snapshots.size(); i++){
+					assertEquals(memoryMode + " " + searchIndex + " " + i, expected.get(i), dump(snapshots.get(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void duplicatedValuesAreCopied() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		Files.write(reference.toPath(), Arrays.asList("a=1", "b=2"), StandardCharsets.ISO_8859_1);
+		Files.write(file.toPath(), Arrays.asList("a=1", "b=first", "b=second", "b=third"), StandardCharsets.ISO_8859_1);
+		CustomProperties properties = new CustomProperties(file, reference);
+		CustomPropertiesSnapshot snapshot = properties.publishSnapshot();
+		String values = snapshot.getDuplicatedValues().toString();
+		assertEquals(properties.getDuplicatedValues().toString(), values);
+		assertNotSame(properties.getDuplicatedValues().get("b"), snapshot.getDuplicatedValues().get("b"));
+		properties.getDuplicatedValues().get("b").clear();
+		assertEquals(values, snapshot.getDuplicatedValues().toString());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getDuplicatedValues().remove("b"));
+	}
+
+	@Test
+	public void readersSeeWholeSnapshotsWhileTheSourceChanges() throws Exception {
+		File[] files = files(300);
+		CustomProperties properties = new CustomProperties(files[0], files[1]);
+		properties.publishSnapshot();
+		AtomicBoolean stop = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try{
+			List<Future<Long>> readers = new ArrayList<Future<Long>>();
+			for(int i = 0; i < 4; i++){
+				readers.add(executor.submit(() -> {
+					long reads = 0;
+					long lastVersion = 0;
+					while(!stop.get()){
+						CustomPropertiesSnapshot snapshot = properties.getSnapshot();
+						assertTrue(snapshot.getVersion() >= lastVersion);
+						lastVersion = snapshot.getVersion();
+						String first = snapshot.findKeysToTranslate() + "|" + snapshot.findAllByNameLike("w1", false) + "|" + snapshot.writeContentAsString();
+						String second = snapshot.findKeysToTranslate() + "|" + snapshot.findAllByNameLike("w1", false) + "|" + snapshot.writeContentAsString();
+						assertEquals(first, second);
+						reads++;
+					}
+					return reads;
+				}));
+			}
+			Future<?> writer = executor.submit(() -> {
+				for(int i = 0; i < 3000; i++){
+					properties.insertOrUpdate("key" + i % 300, "w" + i, "v" + i);
+					if(i % 100 == 0){
+						properties.publishSnapshot();
+					}
+				}
+				return null;
+			});
+			writer.get(60, TimeUnit.SECONDS);
+			stop.set(true);
+			for(Future<Long> reader : readers){
+				assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+			}
+		}finally{
+			stop.set(true);
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The table driven escaping against the String.format one it replaced, and the streamed writes against writeContentAsString()
+ */
+public class StreamingWriteTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String formatEscape(String input) {
+		StringBuilder b = new StringBuilder();
+		for(char c : input.toCharArray()){
+			if(c >= 128){
+				b.append("\\u").append(String.format("%04X", (int) c));
+			}else if(c == '\n'){
+				b.append("\\u000a");
+			}else if(c == '\r'){
+				b.append("\\u000d");
+			}else{
+				b.append(c);
+			}
+		}
+		return b.toString();
+	}
+
+	@Test
+	public void everyCharEscapesAsFormat() {
+		StringBuilder all = new StringBuilder();
+		for(int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++){
+			all.append((char) c);
+		}
+		assertEquals(formatEscape(all.toString()), CustomProperties.escapeUnicode(all.toString()));
+	}
+
+	@Test
+	public void streamedWritesMatchString() throws IOException {
+		Random random = new Random(1);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		BaselineScenario.generate(reference, 1, 2000, true);
+		CustomProperties properties = new CustomProperties(reference, reference);
+		for(int i = 0; i < 200; i++){
+			properties.insertOrUpdate("key" + random.nextInt(2000), "added" + i, randomValue(random, 40));
+		}
+		//a line longer than the write buffer
+		properties.insertOrUpdate("key1", "long", randomValue(random, 3 * EscapedContentWriter.BUFFER_SIZE));
+		String expected = properties.writeContentAsString();
+
+		StringWriter writer = new StringWriter();
+		properties.writeTo(writer);
+		assertEquals(expected, writer.toString());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		properties.writeTo(Channels.newChannel(out));
+		assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+
+		for(CustomProperties.SaveMode saveMode : CustomProperties.SaveMode.values()){
+			File streamed = new File(dir, saveMode + "_streamed.properties");
+			File string = new File(dir, saveMode + "_string.properties");
+			CustomProperties.saveToFile(streamed, properties, saveMode);
+			CustomProperties.saveToFile(string, expected, saveMode);
+			assertArrayEquals(Files.readAllBytes(string.toPath()), Files.readAllBytes(streamed.toPath()));
+		}
+	}
+
+	private static String randomValue(Random random, int maxLength) {
+		char[] value = new char[1 + random.nextInt(maxLength)];
+		for(int i = 0; i < value.length; i++){
+			switch(random.nextInt(4)){
+				case 0:
+					value[i] = (char) random.nextInt(Character.MAX_VALUE + 1);
+					break;
+				case 1:
+					value[i] = "\r\n\\=é中".charAt(random.nextInt(6));
+					break;
+				default:
+					value[i] = (char) (' ' + random.nextInt(95));
+			}
+		}
+		return new String(value);
+	}
+}
@@ -0,0 +1,131 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Lookups by value against scans of the properties and of the reference lines, through random edits and refreshes,
+ * and through changes made on the map returned by getProperties()
+ */
+public class ValueIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<String> scan(Map<String,String> properties, String value) {
+		List<String> keys = new ArrayList<String>();
+		for(Map.Entry<String,String> property : properties.entrySet()){
+			if(property.getValue() != null && property.getValue().equals(value)){
+				keys.add(property.getKey());
+			}
+		}
+		return keys;
+	}
+
+	private static List<String> scanReference(CustomProperties properties, List<String> lines, String value) {
+		List<String> keys = new ArrayList<String>();
+		for(String line : lines){
+			if(properties.isProperties(line) && properties.getValueFromString(line).equals(value)){
+				keys.add(properties.getKeyFromString(line));
+			}
+		}
+		return keys;
+	}
+
+	private static void randomEdit(CustomProperties properties, Random random) throws IOException {
+		switch(random.nextInt(4)){
+			case 0:
+				properties.insertOrUpdate("k" + random.nextInt(1500), "k" + (1500 + random.nextInt(300)), "w" + random.nextInt(40));
+				break;
+			case 1:
+				properties.insertOrUpdate("x", "k" + random.nextInt(1500), "w" + random.nextInt(40));
+				break;
+			case 2:
+				List<String> content = properties.getContentList();
+				int index = random.nextInt(content.size());
+				properties.modifyByKey(index, properties.getKeyFromString(content.get(index)), random.nextInt(10) == 0 ? null : "w" + random.nextInt(40));
+				break;
+			default:
+				properties.applyAll(Arrays.asList(new PropertiesDifferent("k" + random.nextInt(1800), "", "w" + random.nextInt(40), "k" + random.nextInt(1500))));
+		}
+	}
+
+	@Test
+	public void lookupsMatchScans() throws IOException {
+		Random random = new Random(7);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		List<String> referenceLines = new ArrayList<String>();
+		List<String> fileLines = new ArrayList<String>();
+		for(int i = 0; i < 2000; i++){
+			referenceLines.add(i % 17 == 0 ? "#c=v" + random.nextInt(5) : i % 29 == 0 ? "" : "k" + random.nextInt(1500) + "=v" + random.nextInt(50));
+			if(i % 3 > 0){
+				fileLines.add("k" + random.nextInt(1500) + "=w" + random.nextInt(40));
+			}
+		}
+		Files.write(reference.toPath(), referenceLines, StandardCharsets.ISO_8859_1);
+		Files.write(file.toPath(), fileLines, StandardCharsets.ISO_8859_1);
+		CustomProperties properties = new CustomProperties(file, reference);
+		for(int round = 0; round < 300; round++){
+			for(int i = 0; i < 5; i++){
+				randomEdit(properties, random);
+			}
+			if(round % 50 == 0 && round < 150){
+				properties.refresh();
+			}
+			//not read from the reference file anymore
+			if(round == 150){
+				referenceLines = ReferenceIndexTest.randomLines(random, 500);
+				properties.setReferenceContentList(referenceLines);
+			}
+			for(int i = 0; i < 20; i++){
+				String value = i == 0 ? null : "w" + random.nextInt(45);
+				assertEquals(value, scan(properties.getPropertiesView(), value), properties.getKeysByValue(value));
+				assertEquals(value, properties.getPropertiesView().containsValue(value), properties.containsValue(value));
+				String referenceValue = round > 150 && i % 2 == 0 ? "v" + random.nextInt(500) : "v" + random.nextInt(55);
+				assertEquals(referenceValue, scanReference(properties, referenceLines, referenceValue), properties.getKeysByReferenceValue(referenceValue));
+			}
+		}
+	}
+
+	@Test
+	public void changesOnTheReturnedMapAreSeen() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		File file = new File(dir, "messages_fr.properties");
+		Files.write(reference.toPath(), Arrays.asList("a=1", "b=2"), StandardCharsets.ISO_8859_1);
+		Files.write(file.toPath(), Arrays.asList("a=x", "b=y"), StandardCharsets.ISO_8859_1);
+		CustomProperties properties = new CustomProperties(file, reference);
+		assertEquals(Collections.singletonList("a"), properties.getKeysByValue("x"));
+		Map<String,String> map = properties.getProperties();
+		map.put("b", "x");
+		assertEquals(Arrays.asList("a", "b"), properties.getKeysByValue("x"));
+		properties.insertOrUpdate("b", "c", "z");
+		map.remove("a");
+		assertEquals(Collections.singletonList("b"), properties.getKeysByValue("x"));
+		assertTrue(properties.containsValue("z"));
+		map.put("c", "w");
+		assertFalse(properties.containsValue("z"));
+		//indexed again once loaded again
+		properties.refresh();
+		assertEquals(Collections.singletonList("a"), properties.getKeysByValue("x"));
+		assertTrue(properties.containsValue("y"));
+	}
+}
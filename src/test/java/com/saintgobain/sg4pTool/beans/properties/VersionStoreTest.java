@@ -0,0 +1,230 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Versions rebuilt by VersionStore against the contents stored, through deltas, bases, raw files, compaction and interrupted appends
+ */
+public class VersionStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		VersionStore.setDefaultMaxVersions(100);
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private static void randomEdits(Random random, List<String> lines) {
+		for(int edit = random.nextInt(20); edit >= 0; edit--){
+			int index = random.nextInt(lines.size() + 1);
+			switch(random.nextInt(4)){
+				case 0:
+					lines.add(index, "new" + random.nextInt(1000) + "=x");
+					break;
+				case 1:
+					if(index < lines.size()){
+						lines.remove(index);
+					}
+					break;
+				default:
+					if(index < lines.size()){
+						lines.set(index, lines.get(index) + "!");
+					}
+			}
+		}
+	}
+
+	@Test
+	public void versionsMatchStoredContents() throws IOException {
+		Random random = new Random(1);
+		File file = new File(folder.newFolder(), "messages_fr.properties");
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i < 500; i++){
+			lines.add(i % 10 == 0 ? "# comment " + i / 100 : "key" + i + "=value \\u00e9 " + i);
+		}
+		VersionStore.setDefaultMaxVersions(0);
+		VersionStore store = new VersionStore(file);
+		List<String> expected = new ArrayList<String>();
+		for(int version = 0; version < 120; version++){
+			randomEdits(random, lines);
+			if(version % 37 == 0){
+				Collections.shuffle(lines.subList(0, Math.min(50, lines.size())), random);
+			}
+			String content = String.join("\n", lines) + (version % 2 == 0 ? "\n" : "");
+			expected.add(content);
+			CustomProperties.saveToFileWithVersioning(file, content, "new content");
+		}
+		assertEquals(expected.size(), store.getVersionCount());
+		for(int version = 0; version < expected.size(); version++){
+			assertEquals(expected.get(version), store.getVersion(version));
+		}
+		List<Long> timestamps = store.getTimestamps();
+		assertEquals(expected.get(expected.size() - 1), store.getVersionAt(timestamps.get(timestamps.size() - 1)));
+		assertNull(store.getVersionAt(timestamps.get(0) - 1));
+
+		//interrupted append: the incomplete record is ignored and overwritten
+		int count = expected.size();
+		File storeFile = store.getStoreFile();
+		try(RandomAccessFile raw = new RandomAccessFile(storeFile, "rw")){
+			raw.setLength(storeFile.length() - 7);
+		}
+		assertEquals(count - 1, store.getVersionCount());
+		store.append("after crash\n");
+		assertEquals(count, store.getVersionCount());
+		assertEquals("after crash\n", store.getVersion(count - 1));
+		assertEquals(expected.get(count - 2), store.getVersion(count - 2));
+
+		store.setMaxVersions(10);
+		store.compact();
+		assertEquals(10, store.getVersionCount());
+		assertEquals(expected.get(count - 10), store.getVersion(0));
+		assertEquals("after crash\n", store.getVersion(9));
+
+		//compacted on append once enough versions expired
+		VersionStore other = new VersionStore(file);
+		other.setMaxVersions(10);
+		other.setSnapshotInterval(5);
+		for(int i = 0; i < 30; i++){
+			other.append("v" + i + "\n" + expected.get(i));
+			assertTrue(other.getVersionCount() <= 15);
+		}
+		assertEquals("v29\n" + expected.get(29), other.getVersion(other.getVersionCount() - 1));
+	}
+
+	@Test
+	public void rawFilesAndGarbageTails() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		write(reference, "a=1\n");
+		for(int seed = 0; seed < 60; seed++){
+			Random random = new Random(seed);
+			File file = new File(dir, "v" + seed + "_fr.properties");
+			VersionStore store = new VersionStore(file);
+			store.setMaxVersions(1 + random.nextInt(12));
+			store.setSnapshotInterval(1 + random.nextInt(6));
+			List<String> expected = new ArrayList<String>();
+			List<String> lines = new ArrayList<String>();
+			for(int i = 0; i < 50; i++){
+				lines.add("k" + i + "=v" + random.nextInt(5));
+			}
+			for(int version = 0; version < 25; version++){
+				for(int change = 0; change < 3; change++){
+					lines.set(random.nextInt(lines.size()), "k" + random.nextInt(60) + "=" + (random.nextBoolean() ? "caf\\u00e9" : "xé") + random.nextInt(9));
+				}
+				String content = String.join(random.nextBoolean() ? "\n" : "\r\n", lines) + (random.nextBoolean() ? "\n" : "");
+				if(random.nextBoolean()){
+					write(file, content);
+					store.appendFile(file);
+					expected.add(new CustomProperties(file, reference).writeOldContentAsString());
+				}else{
+					store.append(content);
+					expected.add(content);
+				}
+				if(random.nextInt(10) == 0){
+					try(OutputStream out = new FileOutputStream(store.getStoreFile(), true)){
+						out.write(new byte[]{2, 0, 0, 0, 0, 0, 0, 0, 0, 0x7f, -1, -1, -1, 1, 2, 3});
+					}
+				}
+			}
+			List<String> kept = expected.subList(expected.size() - store.getVersionCount(), expected.size());
+			for(int i = 0; i < kept.size(); i++){
+				assertEquals("seed " + seed + " version " + i, kept.get(i), store.getVersion(i));
+			}
+		}
+	}
+
+	@Test
+	public void savingPropertiesVersionsTheirOldContent() throws IOException {
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		write(reference, "a=1\nb=2\nc=3\n");
+		String[] contents = {"a=x\r\nb=caf\\u00e9\rc=\\t tab\\\\ \n\n#c\\u4e2d", "", "a=1", "a=1\n", "x\\", "\n\n"};
+		for(int i = 0; i < contents.length; i++){
+			File strings = new File(dir, "x" + i + "_fr.properties");
+			File streamed = new File(dir, "y" + i + "_fr.properties");
+			write(strings, contents[i]);
+			write(streamed, contents[i]);
+			CustomProperties first = new CustomProperties(strings, reference);
+			CustomProperties second = new CustomProperties(streamed, reference);
+			first.insertOrUpdate("a", "zz", "new");
+			second.insertOrUpdate("a", "zz", "new");
+			CustomProperties.saveToFileWithVersioning(strings, first.writeOldContentAsString(), first.writeContentAsString());
+			CustomProperties.saveToFileWithVersioning(streamed, second);
+			assertEquals(new VersionStore(strings).getVersion(0), new VersionStore(streamed).getVersion(0));
+			assertArrayEquals(Files.readAllBytes(strings.toPath()), Files.readAllBytes(streamed.toPath()));
+		}
+		File created = new File(dir, "new_fr.properties");
+		CustomProperties.saveToFileWithVersioning(created, "a=5\n");
+		assertEquals(0, new VersionStore(created).getVersionCount());
+	}
+
+	@Test
+	public void appendedFilesAreDeltasAgainstTheLastBase() throws IOException {
+		Random random = new Random(3);
+		File dir = folder.newFolder();
+		File reference = new File(dir, "messages.properties");
+		write(reference, "a=1\n");
+		for(boolean raw : new boolean[]{true, false}){
+			File file = new File(dir, (raw ? "raw" : "encoded") + "_fr.properties");
+			List<String> lines = new ArrayList<String>();
+			for(int i = 0; i < 2000; i++){
+				lines.add("key" + i + "=" + Long.toHexString(random.nextLong()));
+			}
+			VersionStore store = new VersionStore(file);
+			List<String> expected = new ArrayList<String>();
+			//the first version is a base, raw from a file or encoded from a String
+			write(file, String.join("\r\n", lines));
+			if(raw){
+				store.appendFile(file);
+			}else{
+				store.append(new CustomProperties(file, reference).writeOldContentAsString());
+			}
+			expected.add(new CustomProperties(file, reference).writeOldContentAsString());
+			long baseLength = store.getStoreFile().length();
+			for(int version = 0; version < 10; version++){
+				lines.set(random.nextInt(lines.size()), "changed" + version + "=caf\u00e9");
+				write(file, String.join("\r\n", lines) + "\n");
+				store.appendFile(file);
+				expected.add(new CustomProperties(file, reference).writeOldContentAsString());
+			}
+			assertTrue(store.getStoreFile().length() - baseLength < baseLength / 10);
+			//too many changes for a delta
+			for(int i = 0; i < lines.size(); i++){
+				lines.set(i, "key" + i + "=" + Long.toHexString(random.nextLong()));
+			}
+			write(file, String.join("\n", lines));
+			store.appendFile(file);
+			expected.add(new CustomProperties(file, reference).writeOldContentAsString());
+			assertTrue(store.getStoreFile().length() - baseLength > baseLength / 2);
+			assertEquals(expected.size(), store.getVersionCount());
+			for(int version = 0; version < expected.size(); version++){
+				assertEquals(expected.get(version), store.getVersion(version));
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.saintgobain.sg4pTool.beans.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * WriteBehindSaver merges the saves of a file, writes the latest content, and reports failures
+ * <br> a file waiting for its lock does not hold back the others, and its writes keep their order
+ */
+public class WriteBehindSaverTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void savesOfAFileAreMerged() throws Exception {
+		File dir = folder.newFolder();
+		File first = new File(dir, "x.properties");
+		File second = new File(dir, "y.properties");
+		WriteBehindSaver saver = new WriteBehindSaver(TimeUnit.MINUTES.toMillis(10));
+		CompletableFuture<Void> future = saver.save(first, "edit=0\n");
+		for(int i = 1; i < 100; i++){
+			assertSame(future, saver.save(new File(new File(dir, "."), first.getName()), "edit=" + i + "\n"));
+		}
+		CompletableFuture<Void> other = saver.save(second, "only=1\n");
+		assertEquals(2, saver.getPendingCount());
+		assertFalse(future.isDone());
+		assertFalse(first.exists());
+		saver.flush();
+		assertTrue(future.isDone() && other.isDone());
+		assertEquals(0, saver.getPendingCount());
+		assertEquals("edit=99\n", read(first));
+		assertEquals("only=1\n", read(second));
+		//a save asked after the write is a new one
+		CompletableFuture<Void> next = saver.save(first, "next=1\n");
+		assertFalse(next == future);
+		saver.close();
+		assertTrue(next.isDone());
+		assertEquals("next=1\n", read(first));
+		assertThrows(IllegalStateException.class, () -> saver.save(first, "x"));
+	}
+
+	@Test
+	public void savesAreWrittenAfterTheDelay() throws Exception {
+		File file = new File(folder.newFolder(), "x.properties");
+		try(WriteBehindSaver saver = new WriteBehindSaver(50)){
+			for(CustomProperties.SaveMode saveMode : CustomProperties.SaveMode.values()){
+				saver.save(file, saveMode + "=1\n", saveMode).get(10, TimeUnit.SECONDS);
+				assertEquals(saveMode + "=1\n", read(file));
+			}
+		}
+		CustomProperties.saveToFileAsync(file, "shared=1\n").get(10, TimeUnit.SECONDS);
+		assertEquals("shared=1\n", read(file));
+	}
+
+	@Test
+	public void failuresCompleteTheirSaves() throws Exception {
+		File dir = folder.newFolder();
+		File good = new File(dir, "x.properties");
+		File bad = new File(folder.newFile("not_a_directory"), "z.properties");
+		try(WriteBehindSaver saver = new WriteBehindSaver(TimeUnit.MINUTES.toMillis(10))){
+			CompletableFuture<Void> failing = saver.save(bad, "x=1\n");
+			CompletableFuture<Void> written = saver.save(good, "x=1\n");
+			assertThrows(IOException.class, saver::flush);
+			assertTrue(failing.isCompletedExceptionally());
+			assertFalse(written.isCompletedExceptionally());
+			assertEquals("x=1\n", read(good));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void filesAreWrittenIndependently() throws Exception {
+		File dir = folder.newFolder();
+		File blocked = new File(dir, "x.properties");
+		File free = new File(dir, "y.properties");
+		try(WriteBehindSaver saver = new WriteBehindSaver(0)){
+			CompletableFuture<Void> first;
+			CompletableFuture<Void> second;
+			try(FileLockRegistry.Handle lock = FileLockRegistry.lockForWriting(blocked)){
+				first = saver.save(blocked, "first=1\n");
+				while(saver.getPendingCount() > 0){
+					Thread.sleep(1);
+				}
+				//handed to the writers, waits for the first one
+				second = saver.save(blocked, "second=1\n");
+				saver.save(free, "free=1\n").get(10, TimeUnit.SECONDS);
+				assertEquals("free=1\n", read(free));
+				assertFalse(first.isDone() || second.isDone());
+			}
+			second.get(10, TimeUnit.SECONDS);
+			assertTrue(first.isDone());
+			assertEquals("second=1\n", read(blocked));
+		}
+	}
+}